@@ -0,0 +1,48 @@
+package inkball;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one Ball.update() for every ball on the board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BallBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    public int ballCount;
+
+    private List<Ball> balls;
+
+    // Balls get captured as the benchmark runs, so the board is rebuilt every iteration
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void setUp() {
+        Config config = BenchmarkFixtures.loadConfig();
+        Level level = BenchmarkFixtures.loadLevel(config, 0);
+        balls = BenchmarkFixtures.addBalls(level, ballCount, 42L);
+    }
+
+    @Benchmark
+    public void updateAllBalls() {
+        for (int i = 0; i < balls.size(); i++) {
+            balls.get(i).update();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package inkball;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shared setup for the benchmarks. Everything is built from fixed seeds so runs are comparable.
+ */
+final class BenchmarkFixtures {
+    static final String CONFIG_PATH = "config.json";
+    private static final char[] BALL_COLORS = {'0', '1', '2', '3', '4'};
+    private static final long GAME_SEED = 1L;
+    // Pixels between the samples of a generated stroke
+    private static final float STEP_LENGTH = 3;
+
+    private BenchmarkFixtures() {
+    }
+
+    static Config loadConfig() {
+        try {
+            Config config = Simulation.loadConfig(CONFIG_PATH);
+            config.seed = GAME_SEED;
+            return config;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Level loadLevel(Config config, int levelIndex) {
+        Level level = new Level(config.getLevelConfig(levelIndex), config, levelIndex);
+        level.loadFile();
+        return level;
+    }
+
+    /**
+     * Place balls on randomly chosen empty floor cells.
+     */
+    static List<Ball> addBalls(Level level, int count, long seed) {
+        Random random = new Random(seed);
+        List<Ball> added = new ArrayList<>(count);
+        while (added.size() < count) {
+            int row = random.nextInt(level.grid.length);
+            int col = random.nextInt(level.grid[row].length);
+            if (level.grid[row][col] != ' ') {
+                continue;
+            }
+            Ball ball = new Ball(col, row, BALL_COLORS[random.nextInt(BALL_COLORS.length)], level);
+            level.balls.add(ball);
+            added.add(ball);
+        }
+        return added;
+    }
+
+    /**
+     * Build a freehand-looking stroke: a random walk of equal short steps in random directions, turned back
+     * at the board's edges so no segment is clamped to nothing.
+     */
+    static PlayerLine buildLine(int segments, long seed) {
+        Random random = new Random(seed);
+        // Keep every sample, so the stroke has exactly the requested number of segments
+        PlayerLine line = new PlayerLine(App.WIDTH, App.HEIGHT, -1);
+        float x = App.WIDTH / 2.0f;
+        float y = App.TOPBAR + (App.HEIGHT - App.TOPBAR) / 2.0f;
+        line.addPoint(x, y);
+        for (int i = 0; i < segments; i++) {
+            double heading = random.nextDouble() * 2 * Math.PI;
+            float dx = (float) (STEP_LENGTH * Math.cos(heading));
+            float dy = (float) (STEP_LENGTH * Math.sin(heading));
+            x += x + dx < 0 || x + dx > App.WIDTH ? -dx : dx;
+            y += y + dy < App.TOPBAR || y + dy > App.HEIGHT ? -dy : dy;
+            line.addPoint(x, y);
+        }
+        return line;
+    }
+
+    /**
+     * Split the given number of segments evenly over several strokes.
+     */
+    static List<PlayerLine> buildLines(int totalSegments, int lineCount, long seed) {
+        List<PlayerLine> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            lines.add(buildLine(Math.max(1, totalSegments / lineCount), seed + i));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,65 @@
+package inkball;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.core.PVector;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Segment collision search for one ball against a single long stroke.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitboxBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int segmentCount;
+
+    private PlayerLine line;
+    private SegmentGrid grid;
+    private PVector missPosition;
+    private PVector hitPosition;
+    private PVector velocity;
+
+    @Setup
+    public void setUp() {
+        line = BenchmarkFixtures.buildLine(segmentCount, 7L);
+        List<Line> segments = line.getSegments();
+        // Outside the board, so every segment is tested and none hit
+        missPosition = new PVector(-1000, -1000);
+        hitPosition = segments.get(segments.size() - 1).getEnd();
+        velocity = new PVector(1, 1);
+        grid = new SegmentGrid(App.WIDTH, App.HEIGHT);
+        line.attach(grid);
+    }
+
+    @Benchmark
+    public Line findCollidingSegmentMiss() {
+        return Hitbox.findCollidingSegment(missPosition, velocity, line.getSegments());
+    }
+
+    @Benchmark
+    public Line findCollidingSegmentLastHit() {
+        return Hitbox.findCollidingSegment(hitPosition, velocity, line.getSegments());
+    }
+
+    @Benchmark
+    public Line segmentGridLastHit() {
+        return grid.findCollidingSegment(hitPosition.x, hitPosition.y, velocity.x, velocity.y);
+    }
+}
@@ -0,0 +1,42 @@
+package inkball;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Level construction plus Level.loadFile() for each of the bundled layouts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelLoadBenchmark {
+
+    @Param({"0", "1", "2"})
+    public int levelIndex;
+
+    private Config config;
+
+    @Setup
+    public void setUp() {
+        config = BenchmarkFixtures.loadConfig();
+    }
+
+    @Benchmark
+    public Level loadFile() {
+        return BenchmarkFixtures.loadLevel(config, levelIndex);
+    }
+}
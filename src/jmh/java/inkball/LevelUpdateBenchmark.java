@@ -0,0 +1,61 @@
+package inkball;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full Level.update() tick: ball physics, line collisions, timers and spawning.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelUpdateBenchmark {
+    private static final int LINE_COUNT = 10;
+
+    @Param({"1", "100", "1000", "10000"})
+    public int ballCount;
+
+    @Param({"10", "1000", "100000"})
+    public int segmentCount;
+
+    private Level level;
+    private List<PlayerLine> allLines;
+    private List<PlayerLine> playerLines;
+
+    // Balls are captured and lines consumed as the level runs, so the board is rebuilt every iteration
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void setUp() {
+        Config config = BenchmarkFixtures.loadConfig();
+        level = BenchmarkFixtures.loadLevel(config, 0);
+        level.ballQueue.clear();
+        BenchmarkFixtures.addBalls(level, ballCount, 42L);
+        allLines = BenchmarkFixtures.buildLines(segmentCount, LINE_COUNT, 7L);
+        playerLines = new ArrayList<>(allLines);
+    }
+
+    @Benchmark
+    public void update() {
+        // Put back lines consumed by the previous tick so every tick sees the same amount of ink
+        if (playerLines.size() != allLines.size()) {
+            playerLines.clear();
+            playerLines.addAll(allLines);
+        }
+        level.update(playerLines);
+    }
+}
@@ -0,0 +1,45 @@
+package inkball;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.core.PVector;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineBenchmark {
+
+    private Line segment;
+    private Line dot;
+    private PVector point;
+
+    @Setup
+    public void setUp() {
+        segment = new Line(new PVector(100, 100), new PVector(140, 130));
+        dot = new Line(new PVector(100, 100), new PVector(100, 100));
+        point = new PVector(120, 90);
+    }
+
+    @Benchmark
+    public float distanceToSegment() {
+        return segment.distanceToPoint(point);
+    }
+
+    @Benchmark
+    public float distanceToDot() {
+        return dot.distanceToPoint(point);
+    }
+}
@@ -20,9 +20,14 @@ public class AccelerationTiles extends Tile {
         }
     }
 
+    @Override
+    public String getSpriteName() {
+        return changeDirectionToString(direction);
+    }
+
     @Override
     public void draw(App app) {
-        PImage image = app.getSprite(changeDirectionToString(direction));
+        PImage image = app.getSprite(getSpriteName());
 
         if (image != null){
             app.image(image, x * App.CELLSIZE, y * App.CELLSIZE + App.TOPBAR);
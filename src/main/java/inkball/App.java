@@ -6,7 +6,11 @@ import processing.data.JSONObject;
 import processing.event.KeyEvent;
 import processing.event.MouseEvent;
 
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 
@@ -19,8 +23,8 @@ public class App extends PApplet {
 
     public static final int CELLAVG = 32;
     public static final int TOPBAR = 64;
-    public static int WIDTH = 576; //CELLSIZE*BOARD_WIDTH;
-    public static int HEIGHT = 640; //BOARD_HEIGHT*CELLSIZE+TOPBAR;
+    public static final int WIDTH = 576; //CELLSIZE*BOARD_WIDTH;
+    public static final int HEIGHT = 640; //BOARD_HEIGHT*CELLSIZE+TOPBAR;
     public static final int BOARD_WIDTH = WIDTH/CELLSIZE;
     public static final int BOARD_HEIGHT = 20;
 
@@ -30,12 +34,20 @@ public class App extends PApplet {
 
     public String configPath;
 
-    public static Random random = new Random();
     public int currentLevelScore;
 
-    private Config config;
-    private Level currentLevel;
-    int levelIndex = 0;
+    private Simulation simulation;
+    private long lastFrameNanos;
+    private final FrameProfiler profiler = new FrameProfiler();
+    private boolean showProfile;
+    // Whether the overlay was shown at any point, so the frame time summary is printed on exit
+    private boolean profileShown;
+
+    // Set with --record <file> to log every input event for later replay
+    String recordPath;
+    private InputRecorder recorder;
+    // Set with --profile <file> to time every frame and write the per-stage timings there on exit
+    String profilePath;
 
     public GameState gameState = GameState.PLAYING;
     public PlayerLine currentLine;
@@ -69,31 +81,53 @@ public class App extends PApplet {
     @Override
     public void setup() {
         frameRate(FPS);
+        readArgs();
 
         JSONObject loadedConfig = loadJSONObject(configPath);
 
         try {
-            this.config = new Config(loadedConfig);
-            JSONObject levelConfig = config.getLevelConfig(levelIndex);
-            currentLevel = new Level(levelConfig, config, levelIndex);
-            currentLevel.loadFile();
+            Config config = new Config(loadedConfig);
+            if (levelScores.length < config.levelConfigs.size()) {
+                levelScores = Arrays.copyOf(levelScores, config.levelConfigs.size());
+            }
+            context = new GameContext(WIDTH, HEIGHT, new RandomSource(config.seed), levelScores, sprites);
+            simulation = new Simulation(config, context);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        playerLines = simulation.playerLines;
+        lastFrameNanos = System.nanoTime();
+        if (profilePath != null) {
+            simulation.setProfiler(profiler);
+        }
 
-        String[] spriteNames = {
-                "ball0", "ball1", "ball2", "ball3", "ball4",
-                "entrypoint", "hole0", "hole1", "hole2", "hole3", "hole4",
-                "tile", "wall0", "wall1", "wall2", "wall3", "wall4",
-                "up","down","right","left"
-        };
+        if (recordPath != null) {
+            try {
+                recorder = new InputRecorder(new FileOutputStream(recordPath), simulation.getSeed());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
 
-        for (String spriteName : spriteNames) {
+        for (String spriteName : SpriteAtlas.SPRITE_NAMES) {
             getSprite(spriteName);
         }
+        atlas = SpriteAtlas.pack(this);
+    }
+
+    // This window's sprites, shared with its game context once setup has made one
+    private final Map<String, PImage> sprites = new HashMap<>();
+    private GameContext context;
+    private SpriteAtlas atlas;
+
+    /**
+     * The packed sprites, or null before setup or if a sprite is missing.
+     */
+    public SpriteAtlas getAtlas() {
+        return atlas;
     }
 
-    private static HashMap<String, PImage> sprites = new HashMap<>();
+
     public PImage getSprite(String s) {
         PImage result = sprites.get(s);
         if (result == null) {
@@ -128,32 +162,62 @@ public class App extends PApplet {
      */
 	@Override
     public void keyPressed(KeyEvent event){
+        if (recorder != null) {
+            try {
+                recorder.keyPressed(simulation.getTick(), event.getKey());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
         if (event.getKey() == 'r' || event.getKey() == 'R') {
             restartLevel();
         } else if (event.getKey() == ' ') {
             togglePause();
+        } else if (event.getKey() == 'p' || event.getKey() == 'P') {
+            toggleProfile();
+        } else if (event.getKey() == CODED) {
+            scroll(event.getKeyCode());
+        }
+    }
+
+    /**
+     * Move the view a cell at a time with the arrow keys on boards larger than the window.
+     */
+    private void scroll(int keyCode) {
+        Level level = simulation.getLevel();
+        if (keyCode == LEFT) {
+            level.scrollBy(-CELLSIZE, 0);
+        } else if (keyCode == RIGHT) {
+            level.scrollBy(CELLSIZE, 0);
+        } else if (keyCode == UP) {
+            level.scrollBy(0, -CELLSIZE);
+        } else if (keyCode == DOWN) {
+            level.scrollBy(0, CELLSIZE);
         }
     }
 
     private void restartLevel() {
         try {
-            if(gameState == GameState.GAME_OVER) {
-                levelIndex = 0;
-                levelScores[0] = 0;
-                levelScores[1] = 0;
-                levelScores[2] = 0;
-            }
-            JSONObject levelConfig = config.getLevelConfig(levelIndex);
-            currentLevel = new Level(levelConfig, config, levelIndex);
-            currentLevel.loadFile();
+            simulation.restartLevel();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
-        levelScores[levelIndex] = 0;
-        playerLines.clear();
         gameState = GameState.PLAYING;
     }
 
+    /**
+     * Show or hide the per-stage frame timings. Stages are only timed while they are shown or being written out.
+     */
+    public void toggleProfile() {
+        showProfile = !showProfile;
+        profileShown |= showProfile;
+        simulation.setProfiler(isProfiling() ? profiler : null);
+    }
+
+    private boolean isProfiling() {
+        return showProfile || profilePath != null;
+    }
+
     public void togglePause() {
         if (gameState == GameState.PLAYING) {
             gameState = GameState.PAUSED;
@@ -173,12 +237,11 @@ public class App extends PApplet {
     @Override
     public void mousePressed(MouseEvent e) {
         // create a new player-drawn line object
-            if (e.getButton() == LEFT) {
-                currentLine = new PlayerLine();
-                currentLine.addPoint(e.getX(), e.getY());
-            }else if (e.getButton() == RIGHT) {
-                removeLine(e.getX(), e.getY());
-            }
+        int x = boardX(e);
+        int y = boardY(e);
+        record(InputRecorder.MOUSE_PRESSED, e.getButton(), x, y);
+        simulation.mousePressed(e.getButton(), x, y);
+        currentLine = simulation.currentLine;
     }
 	
 	@Override
@@ -187,26 +250,53 @@ public class App extends PApplet {
 		
 		// remove player-drawn line object if right mouse button is held 
 		// and mouse position collides with the line
-            if(e.getButton() == LEFT && currentLine != null) {
-                currentLine.addPoint(e.getX(), e.getY());
-            }else if (e.getButton() == RIGHT) {
-                removeLine(e.getX(), e.getY());
-            }
+        int x = boardX(e);
+        int y = boardY(e);
+        record(InputRecorder.MOUSE_DRAGGED, e.getButton(), x, y);
+        simulation.mouseDragged(e.getButton(), x, y);
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
-        if (e.getButton() == LEFT && !(gameState == GameState.GAME_OVER)) {
-            if (e.getButton() == LEFT &&currentLine != null) {
-                playerLines.add(currentLine);
-                currentLine = null;
+        record(InputRecorder.MOUSE_RELEASED, e.getButton(), boardX(e), boardY(e));
+        simulation.mouseReleased(e.getButton());
+        currentLine = simulation.currentLine;
+    }
+
+    /**
+     * Mouse position in board pixels, which differ from window pixels once the view has scrolled.
+     * The top bar never scrolls.
+     */
+    private int boardX(MouseEvent e) {
+        return e.getX() + simulation.getLevel().getViewX();
+    }
+
+    private int boardY(MouseEvent e) {
+        return e.getY() < TOPBAR ? e.getY() : e.getY() + simulation.getLevel().getViewY();
+    }
+
+    // Positions are recorded in board pixels so a replay does not depend on where the view was
+    private void record(int type, int button, int x, int y) {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            long tick = simulation.getTick();
+            if (type == InputRecorder.MOUSE_PRESSED) {
+                recorder.mousePressed(tick, button, x, y);
+            } else if (type == InputRecorder.MOUSE_DRAGGED) {
+                recorder.mouseDragged(tick, button, x, y);
+            } else {
+                recorder.mouseReleased(tick, button, x, y);
             }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
         }
     }
 
 
     public void removeLine(float x, float y) {
-        playerLines.removeIf(line -> line.intersects(x, y));
+        simulation.removeLine(x, y);
     }
 
 
@@ -222,28 +312,50 @@ public class App extends PApplet {
         //----------------------------------
         //TODO
 
-        currentLevel.draw(this);
+        boolean profiling = isProfiling();
+        long start = profiling ? System.nanoTime() : 0;
+        simulation.getLevel().draw(this);
+        // Bake a slice of the next level's board while the current one plays out its ending
+        Level next = simulation.getPreloadedLevel();
+        if (next != null) {
+            next.bakeBoardStep(this, Level.BAKE_TILES_PER_FRAME);
+        }
+        if (profiling) {
+            profiler.add(FrameProfiler.Stage.DRAW, start);
+        }
 
+        long now = System.nanoTime();
+        profiler.recordFrame(now - lastFrameNanos);
         if (gameState == GameState.PLAYING) {
-            currentLevel.update(playerLines);
+            simulation.advance(now - lastFrameNanos);
 
-            if (currentLevel.isAnimationComplete) {
-                if (levelIndex < 3) {
-                    completeLevel();
-                } else {
-                    gameState = GameState.GAME_OVER;
-                }
-            } else if (currentLevel.timer == 0) {
+            if (simulation.isGameOver()) {
                 gameState = GameState.GAME_OVER;
             }
+        }
+        lastFrameNanos = now;
 
+        if (recorder != null) {
+            try {
+                recorder.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
         }
 
         //----------------------------------
         //display score
         //----------------------------------
         //TODO
+        start = profiling ? System.nanoTime() : 0;
         displayScore();
+        if (profiling) {
+            profiler.add(FrameProfiler.Stage.SCORE, start);
+            profiler.endFrame();
+        }
+        if (showProfile) {
+            displayProfile();
+        }
         
 		//----------------------------------
         //----------------------------------
@@ -258,34 +370,24 @@ public class App extends PApplet {
 
     }
 
-    public static int[] levelScores = new int[3];
+    public int[] levelScores = new int[3];
 
     public void displayScore() {
         fill(0);
         textSize(20);
-        if (currentLevel.score != 0) {
-            levelScores[levelIndex] = currentLevel.score;
-        }
-        int displayScore = Math.max(0, levelScores[0] + levelScores[1] + levelScores[2]);
+        int displayScore = calculateTotalScore();
         text("Score:   " + displayScore, width - 130, CELLHEIGHT - 7);
     }
 
-
-
-    void completeLevel() {
-        levelIndex++;
-        if (levelIndex < 3) {
-            try {
-                JSONObject levelConfig = config.getLevelConfig(levelIndex);
-                currentLevel = new Level(levelConfig, config, levelIndex);
-                currentLevel.loadFile();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        } else {
-            gameState = GameState.GAME_OVER;
+    private void displayProfile() {
+        String[] lines = profiler.summaryLines();
+        fill(255, 255, 255, 200);
+        rect(4, TOPBAR + 4, 400, lines.length * 16 + 8);
+        fill(0);
+        textSize(12);
+        for (int i = 0; i < lines.length; i++) {
+            text(lines[i], 10, TOPBAR + 20 + i * 16);
         }
-        playerLines.clear();
     }
 
     private void displayPauseMessage() {
@@ -301,8 +403,48 @@ public class App extends PApplet {
     }
 
 
+    @Override
+    public void dispose() {
+        if (profileShown || profilePath != null) {
+            System.out.println("Frame times: " + profiler.frameSummary());
+        }
+        if (profilePath != null) {
+            try (Writer out = new FileWriter(profilePath)) {
+                profiler.writeCsv(out);
+            } catch (IOException e) {
+                System.out.println("Could not write profile: " + e.getMessage());
+            }
+        }
+        if (recorder != null) {
+            try {
+                recorder.finish(simulation.getTick());
+                recorder.close();
+            } catch (IOException e) {
+                System.out.println("Could not finish recording: " + e.getMessage());
+            }
+            recorder = null;
+        }
+        super.dispose();
+    }
+
+    /**
+     * Pick up --record and --profile from the sketch arguments, which each window gets its own copy of.
+     */
+    private void readArgs() {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--record")) {
+                recordPath = args[i + 1];
+            } else if (args[i].equals("--profile")) {
+                profilePath = args[i + 1];
+            }
+        }
+    }
+
     public static void main(String[] args) {
-        PApplet.main("inkball.App");
+        PApplet.main("inkball.App", args);
     }
 
     public String getConfigPath() {
@@ -315,15 +457,25 @@ public class App extends PApplet {
         return height;
     }
     public Object getConfig() {
-        return config;
+        return simulation == null ? null : simulation.getConfig();
     }
     public Object getCurrentLevel() {
-        return currentLevel;
+        return simulation == null ? null : simulation.getLevel();
     }
     public int getLevelIndex() {
-        return levelIndex;
+        return simulation == null ? 0 : simulation.getLevelIndex();
+    }
+    public Simulation getSimulation() {
+        return simulation;
+    }
+    public GameContext getContext() {
+        return context;
     }
     public int calculateTotalScore() {
-        return Math.max(0, levelScores[0] + levelScores[1] + levelScores[2]);
+        int total = 0;
+        for (int levelScore : levelScores) {
+            total += levelScore;
+        }
+        return Math.max(0, total);
     }
 }
@@ -4,69 +4,36 @@ import processing.core.PImage;
 import processing.core.PVector;
 
 
+/**
+ * Handle to a ball whose state lives in a {@link BallStore}.
+ * A ball created on its own gets a single-slot store and moves into the level's store when added to it.
+ */
 public class Ball extends Tile {
-    private char ballColor;
-    public PVector position;
-    public PVector velocity;
-    public float radius;
-    public boolean captured;
-    public Hole attractingHole;
-    public float originalRadius;
+    BallStore store;
+    int slot;
 
 
     public Ball(int x, int y, char ballColor, Level level) {
         super(x, y, level);
-        this.ballColor = ballColor;
-        this.position = new PVector(x * App.CELLSIZE + App.CELLSIZE / 2, y * App.CELLSIZE + App.CELLSIZE / 2 + App.TOPBAR);
-        this.velocity = generateRandomVelocity();
-        this.originalRadius = (App.CELLSIZE / 2.0f ) - 4;
-        this.radius = originalRadius;
-        this.captured = false;
-        this.attractingHole = null;
+        PVector velocity = generateRandomVelocity();
+        this.store = new BallStore(level, 1);
+        this.slot = store.add(this,
+                x * App.CELLSIZE + App.CELLSIZE / 2,
+                y * App.CELLSIZE + App.CELLSIZE / 2 + App.TOPBAR,
+                velocity.x, velocity.y, ballColor);
     }
 
     PVector generateRandomVelocity() {
         float speed = 1.0f;
+        RandomSource random = level != null ? level.getRandom() : RandomSource.unseeded();
         return new PVector(
-                Math.random() < 0.5 ? -speed : speed,
-                Math.random() < 0.5 ? -speed : speed
+                random.nextBoolean() ? -speed : speed,
+                random.nextBoolean() ? -speed : speed
         );
     }
 
     public void update() {
-
-        if (captured) {
-            return;
-        }
-
-        checkAcceleration(position);
-        checkHoleAttraction();
-
-        PVector nextPosition = PVector.add(position, velocity);
-        checkCollisions(nextPosition);
-        position.set(nextPosition);
-
-        // Update x and y based on the new position
-        this.x = (int) (position.x / App.CELLSIZE);
-        this.y = (int) ((position.y - App.TOPBAR) / App.CELLSIZE);
-
-        updateRadius();
-
-    }
-
-    private void checkAcceleration(PVector position){
-        int cellX = (int) (position.x / App.CELLSIZE);
-        int cellY = (int) ((position.y - App.TOPBAR) / App.CELLSIZE);
-
-        char[][] grid = level.grid;
-        if (grid != null && cellY >= 0 && cellY < grid.length &&
-                cellX >= 0 && cellX < grid[cellY].length) {
-            char cell = grid[cellY][cellX];
-            if (cell == 'U' || cell == 'D' || cell == 'L' || cell == 'R'){
-                PVector velocityChange = changeDirectionToVelocity(cell);
-                this.velocity.add(velocityChange);
-            }
-        }
+        store.update(slot);
     }
 
     public PVector changeDirectionToVelocity(char direction) {
@@ -79,202 +46,58 @@ public class Ball extends Tile {
         }
     }
 
-
     public void checkHoleAttraction() {
-        Hole nearestHole = null;
-        float nearestDistance = 100.0f;
-        for (Tile tile : level.getTiles()) {
-            if (tile instanceof Hole) {
-                Hole hole = (Hole) tile;
-                float distance = PVector.dist(position, new PVector(hole.getCenterX(), hole.getCenterY()));
-                if (distance <= 32 && distance < nearestDistance) {
-                    nearestHole = hole;
-                    nearestDistance = distance;
-                }
-            }
-        }
-        attractingHole = nearestHole;
-
-        if (attractingHole != null) {
-            PVector holeCenter = new PVector(
-                    attractingHole.x * App.CELLSIZE + App.CELLSIZE,
-                    attractingHole.y * App.CELLSIZE + App.CELLSIZE + App.TOPBAR
-            );
-            PVector attractionVector = PVector.sub(holeCenter, position);
-            float distance = attractionVector.mag();
-
-            if (distance < 10) {
-                captured = true;
-                handleCapture();
-            } else if (distance < 32 ) {
-                attractionVector.normalize().mult(0.005f * distance);
-                velocity.add(attractionVector);
-            }
-        }
+        store.checkHoleAttraction(slot);
     }
 
     public void updateRadius() {
-        if (attractingHole != null) {
-            PVector holeCenter = new PVector(
-                    attractingHole.x * App.CELLSIZE + App.CELLSIZE,
-                    attractingHole.y * App.CELLSIZE + App.CELLSIZE + App.TOPBAR
-            );
-            float distance = PVector.dist(position, holeCenter);
-            float shrinkFactor = Math.max(0, Math.min(1, distance / 32));
-            radius = originalRadius * shrinkFactor;
-        } else {
-            radius = originalRadius;
-        }
+        store.updateRadius(slot);
     }
 
     public void handleCapture() {
-        if (!captured){
-            return;
-        }
-        boolean success = (attractingHole.getColor() == ballColor) ||
-                (ballColor == '0') ||
-                (attractingHole.getColor() == '0');
-
-        if (success) {
-            // Increase score
-            level.increaseScore(changeBallColorToString(this));
-        } else {
-            // Decrease score and respawn ball
-            level.decreaseScore(changeBallColorToString(this));
-            level.respawnBall(this);
-        }
+        store.handleCapture(slot);
     }
 
-    private void checkCollisions(PVector nextPosition) {
-        // Check edge collisions
-        if (nextPosition.x - radius < 0) {
-            nextPosition.x = radius;
-            velocity.x = Math.abs(velocity.x);
-        } else if (nextPosition.x + radius > App.WIDTH + 8) {
-            nextPosition.x = App.WIDTH - radius;
-            velocity.x = -Math.abs(velocity.x);
-        }
-
-        if (nextPosition.y - radius < App.TOPBAR) {
-            nextPosition.y = App.TOPBAR + radius;
-            velocity.y = Math.abs(velocity.y);
-        } else if (nextPosition.y + radius > App.HEIGHT + 8) {
-            nextPosition.y = App.HEIGHT - radius;
-            velocity.y = -Math.abs(velocity.y);
-        }
-
-        // Check wall collisions
-        int gridX = (int) (nextPosition.x / App.CELLSIZE);
-        int gridY = (int) ((nextPosition.y - App.TOPBAR) / App.CELLSIZE);
-
-        int[][] standardDirections = {
-                {0, -1},
-                {0, 1},
-                {-1, 0},
-                {1, 0}
-        };
-        for (int[] dir : standardDirections) {
-            int dx = dir[0];
-            int dy = dir[1];
-            boolean flag = true;
-            checkWallInCell(gridX + dx, gridY + dy, nextPosition, flag);
-        }
-        int[][] diagonalDirections = {
-                {-1, -1},
-                {-1, 1},
-                {1, -1},
-                {1, 1}
-        };
-        for (int[] dir : diagonalDirections) {
-            int dx = dir[0];
-            int dy = dir[1];
-            boolean flag = false;
-            checkWallInCell(gridX + dx, gridY + dy, nextPosition, flag);
-        }
+    public void setPosition(PVector newPosition) {
+        setPosition(newPosition.x, newPosition.y);
     }
 
-    private void checkWallInCell(int cellX, int cellY, PVector nextPosition, boolean flag) {
-        if (cellX < 0 || cellX >= App.BOARD_WIDTH || cellY < 0 || cellY >= App.BOARD_HEIGHT) {
-            return;
-        }
-
-        char[][] grid = level.grid;
-        if (grid != null && cellY >= 0 && cellY < grid.length &&
-                cellX >= 0 && cellX < grid[cellY].length) {
-            char cell = grid[cellY][cellX];
-
-            if (cell >= '1' && cell <= '4' || cell == 'X') {
-                float wallLeft = cellX * App.CELLSIZE - 2;
-                float wallRight = (cellX + 1) * App.CELLSIZE + 2;
-                float wallTop = cellY * App.CELLSIZE + App.TOPBAR - 2;
-                float wallBottom = (cellY + 1) * App.CELLSIZE + App.TOPBAR + 2;
-
-                // Check for collision
-                if (nextPosition.x + radius >= wallLeft && wallRight >= nextPosition.x - radius &&
-                        nextPosition.y + radius >= wallTop && wallBottom >= nextPosition.y - radius) {
-
-                    // Determine which side of the wall was hit
-                    float overlapLeft = nextPosition.x + radius - wallLeft;
-                    float overlapRight = wallRight - (nextPosition.x - radius);
-                    float overlapTop = nextPosition.y + radius - wallTop;
-                    float overlapBottom = wallBottom - (nextPosition.y - radius);
-
-                    final float overlapTolerance = 0.001f;// set the tolerance
-
-                    // Whether ball hits wall's corner
-                    if (Math.abs(overlapLeft - overlapRight) < overlapTolerance &&
-                            Math.abs(overlapTop - overlapBottom) < overlapTolerance) {
-                        // Ball hit the corner
-                        velocity.x *= -1;
-                        velocity.y *= -1;
-                        nextPosition.x = position.x;
-                        nextPosition.y = position.y;
-                    } else {
-
-                        // Find the smallest overlap
-                        float minOverlap = Math.min(Math.min(overlapLeft, overlapRight), Math.min(overlapTop, overlapBottom));
-
-                        // Adjust position and velocity based on the collision side
-                        if (minOverlap == overlapLeft || minOverlap == overlapRight) {
-                            velocity.x *= -1;
-                            nextPosition.x = position.x;
-                        } else {
-                            velocity.y *= -1;
-                            nextPosition.y = position.y;
-                        }
-
-                        // Change ball color if necessary
-                        if (cell != 'X' && ballColor != cell && flag) {
-                            this.ballColor = cell;
-                        }
-                    }
-                }
-            }
-        }
+    public void setPosition(float x, float y) {
+        store.posX[slot] = x;
+        store.posY[slot] = y;
     }
 
-    public void setPosition(PVector newPosition) {
-        this.position = newPosition.copy();
+    public void setVelocity(PVector newVelocity) {
+        setVelocity(newVelocity.x, newVelocity.y);
     }
 
-    public void setVelocity(PVector newVelocity) {
-        this.velocity = newVelocity.copy();
+    public void setVelocity(float x, float y) {
+        store.velX[slot] = x;
+        store.velY[slot] = y;
     }
 
     @Override
     public void draw(App app) {
-        if (captured) return;
+        if (getCaptured()) return;
 
-        PImage image = app.getSprite("ball" + ballColor);
+        SpriteAtlas atlas = app.getAtlas();
+        if (atlas != null) {
+            float radius = getRadius();
+            atlas.draw(app, SpriteAtlas.ball(getColorCode()), store.posX[slot] - radius, store.posY[slot] - radius, radius * 2, radius * 2);
+            return;
+        }
+
+        PImage image = app.getSprite("ball" + getColorCode());
 
         if (image != null){
+            float radius = getRadius();
             float drawRadius = radius * 2;
-            app.image(image, position.x - radius, position.y - radius, drawRadius, drawRadius);
+            app.image(image, store.posX[slot] - radius, store.posY[slot] - radius, drawRadius, drawRadius);
         }
     }
 
     public String changeBallColorToString(Ball ball) {
-        switch (ball.ballColor) {
+        switch (ball.getColorCode()) {
             case '0': return "grey";
             case '1': return "orange";
             case '2': return "blue";
@@ -285,27 +108,44 @@ public class Ball extends Tile {
     }
 
     public PVector getPosition() {
-        return position.copy();
+        return new PVector(store.posX[slot], store.posY[slot]);
     }
     public PVector getVelocity() {
-        return velocity.copy();
+        return new PVector(store.velX[slot], store.velY[slot]);
     }
     public boolean getCaptured() {
-        return this.captured;
+        return store.captured[slot];
+    }
+    public void setCaptured(boolean captured) {
+        store.captured[slot] = captured;
     }
 
     public int getX() {
-        return this.x;
+        return (int) (store.posX[slot] / App.CELLSIZE);
     }
     public int getY() {
-        return this.y;
+        return (int) ((store.posY[slot] - App.TOPBAR) / App.CELLSIZE);
     }
 
     public char getColorCode() {
-        return this.ballColor;
+        return store.color[slot];
     }
 
     public float getRadius() {
-        return this.radius;
+        return store.radius[slot];
+    }
+
+    public float getOriginalRadius() {
+        return store.originalRadius[slot];
+    }
+    public void setOriginalRadius(float originalRadius) {
+        store.originalRadius[slot] = originalRadius;
+    }
+
+    public Hole getAttractingHole() {
+        return store.attractingHole[slot];
+    }
+    public void setAttractingHole(Hole hole) {
+        store.attractingHole[slot] = hole;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,727 @@
+package inkball;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ball state kept in parallel primitive arrays, indexed by slot.
+ * Level.update steps the slots in order, so a tick walks contiguous memory instead of chasing Ball objects.
+ * Removal swaps the last ball into the freed slot, which keeps the live balls packed at the front.
+ */
+public class BallStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Level level;
+    private int size;
+
+    float[] posX;
+    float[] posY;
+    float[] velX;
+    float[] velY;
+    float[] radius;
+    float[] originalRadius;
+    char[] color;
+    boolean[] captured;
+    Hole[] attractingHole;
+    Ball[] handles;
+
+    // Per-tick scratch for the parallel step: pre-step state, captures and line hits waiting to be applied
+    float[] previousX;
+    float[] previousY;
+    float[] previousVelX;
+    float[] previousVelY;
+    boolean[] capturedThisTick;
+    Line[] pendingHit;
+    private static final int PARALLEL_CHUNK = 256;
+
+    // Up to this many pixels per tick on each axis the discrete overlap test cannot skip past a wall;
+    // faster balls are swept along their whole move instead
+    static final float DISCRETE_STEP_LIMIT = App.CELLSIZE / 8f;
+    private static final int MAX_BOUNCES = 4;
+    private static final float WALL_PADDING = 2;
+    private static final float CONTACT_OFFSET = 0.01f;
+    private static final float TIE_TOLERANCE = 1e-4f;
+
+    // Velocity change per tick on an acceleration tile, indexed by CollisionGrid direction
+    private static final float[] ACCELERATION_X = {0, 0, 0, -0.25f, 0.25f};
+    private static final float[] ACCELERATION_Y = {0, -0.25f, 0.25f, 0, 0};
+
+    // Bits of CollisionGrid.neighbourhood for the cells around the ball's cell
+    private static final int UP_LEFT = 1;
+    private static final int UP = 1 << 1;
+    private static final int UP_RIGHT = 1 << 2;
+    private static final int LEFT = 1 << 3;
+    private static final int RIGHT = 1 << 5;
+    private static final int DOWN_LEFT = 1 << 6;
+    private static final int DOWN = 1 << 7;
+    private static final int DOWN_RIGHT = 1 << 8;
+
+    private final List<Ball> view = new BallList();
+    // Scratch for sweeping fast balls on the calling thread; each parallel task has its own
+    private final float[] contact = new float[3];
+    private final float[] normal = new float[2];
+
+    public BallStore(Level level) {
+        this(level, INITIAL_CAPACITY);
+    }
+
+    public BallStore(Level level, int capacity) {
+        this.level = level;
+        capacity = Math.max(1, capacity);
+        posX = new float[capacity];
+        posY = new float[capacity];
+        velX = new float[capacity];
+        velY = new float[capacity];
+        radius = new float[capacity];
+        originalRadius = new float[capacity];
+        color = new char[capacity];
+        captured = new boolean[capacity];
+        attractingHole = new Hole[capacity];
+        handles = new Ball[capacity];
+        previousX = new float[capacity];
+        previousY = new float[capacity];
+        previousVelX = new float[capacity];
+        previousVelY = new float[capacity];
+        capturedThisTick = new boolean[capacity];
+        pendingHit = new Line[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * The balls in slot order, as a list. Adding moves a ball into this store, removing swap-removes it.
+     */
+    public List<Ball> asList() {
+        return view;
+    }
+
+    int add(Ball ball, float x, float y, float vx, float vy, char ballColor) {
+        ensureCapacity(size + 1);
+        int slot = size++;
+        posX[slot] = x;
+        posY[slot] = y;
+        velX[slot] = vx;
+        velY[slot] = vy;
+        originalRadius[slot] = (App.CELLSIZE / 2.0f) - 4;
+        radius[slot] = originalRadius[slot];
+        color[slot] = ballColor;
+        captured[slot] = false;
+        attractingHole[slot] = null;
+        handles[slot] = ball;
+        return slot;
+    }
+
+    /**
+     * Move a ball from whatever store it is in now into this one.
+     */
+    void adopt(Ball ball) {
+        BallStore from = ball.store;
+        if (from == this) {
+            return;
+        }
+        int oldSlot = ball.slot;
+        ensureCapacity(size + 1);
+        int slot = size++;
+        copySlot(from, oldSlot, this, slot);
+        handles[slot] = ball;
+        from.removeSlot(oldSlot);
+        ball.store = this;
+        ball.slot = slot;
+    }
+
+    /**
+     * Swap-remove a slot. The removed ball keeps its state in a store of its own, so its handle stays usable.
+     */
+    void remove(int slot) {
+        detach(slot);
+        removeSlot(slot);
+    }
+
+    /**
+     * Give the ball in a slot a store of its own holding a copy of its state. The slot itself is left as is.
+     */
+    private void detach(int slot) {
+        Ball ball = handles[slot];
+        BallStore detached = new BallStore(ball.level, 1);
+        detached.size = 1;
+        copySlot(this, slot, detached, 0);
+        detached.handles[0] = ball;
+        ball.store = detached;
+        ball.slot = 0;
+    }
+
+    private void removeSlot(int slot) {
+        int last = --size;
+        if (slot != last) {
+            copySlot(this, last, this, slot);
+            handles[slot] = handles[last];
+            handles[slot].slot = slot;
+        }
+        handles[last] = null;
+        attractingHole[last] = null;
+    }
+
+    /**
+     * Remove every captured ball, walking backwards so each swap brings in a ball that was already checked.
+     */
+    public void removeCaptured() {
+        for (int i = size - 1; i >= 0; i--) {
+            if (captured[i]) {
+                remove(i);
+            }
+        }
+    }
+
+    private static void copySlot(BallStore from, int fromSlot, BallStore to, int toSlot) {
+        to.posX[toSlot] = from.posX[fromSlot];
+        to.posY[toSlot] = from.posY[fromSlot];
+        to.velX[toSlot] = from.velX[fromSlot];
+        to.velY[toSlot] = from.velY[fromSlot];
+        to.radius[toSlot] = from.radius[fromSlot];
+        to.originalRadius[toSlot] = from.originalRadius[fromSlot];
+        to.color[toSlot] = from.color[fromSlot];
+        to.captured[toSlot] = from.captured[fromSlot];
+        to.attractingHole[toSlot] = from.attractingHole[fromSlot];
+    }
+
+    /**
+     * Copy the live slots into the snapshot, growing its arrays only when they are too small.
+     */
+    void saveTo(LevelSnapshot snapshot) {
+        if (snapshot.posX.length < size) {
+            int capacity = Math.max(size, snapshot.posX.length * 2);
+            snapshot.posX = new float[capacity];
+            snapshot.posY = new float[capacity];
+            snapshot.velX = new float[capacity];
+            snapshot.velY = new float[capacity];
+            snapshot.radius = new float[capacity];
+            snapshot.originalRadius = new float[capacity];
+            snapshot.color = new char[capacity];
+            snapshot.captured = new boolean[capacity];
+            snapshot.attractingHole = new Hole[capacity];
+            snapshot.handles = new Ball[capacity];
+        }
+        System.arraycopy(posX, 0, snapshot.posX, 0, size);
+        System.arraycopy(posY, 0, snapshot.posY, 0, size);
+        System.arraycopy(velX, 0, snapshot.velX, 0, size);
+        System.arraycopy(velY, 0, snapshot.velY, 0, size);
+        System.arraycopy(radius, 0, snapshot.radius, 0, size);
+        System.arraycopy(originalRadius, 0, snapshot.originalRadius, 0, size);
+        System.arraycopy(color, 0, snapshot.color, 0, size);
+        System.arraycopy(captured, 0, snapshot.captured, 0, size);
+        System.arraycopy(attractingHole, 0, snapshot.attractingHole, 0, size);
+        System.arraycopy(handles, 0, snapshot.handles, 0, size);
+        // Drop references to balls from an earlier, larger save so they can be collected
+        Arrays.fill(snapshot.attractingHole, size, Math.max(size, snapshot.ballCount), null);
+        Arrays.fill(snapshot.handles, size, Math.max(size, snapshot.ballCount), null);
+        snapshot.ballCount = size;
+    }
+
+    /**
+     * Put back the slots saved in the snapshot. The saved balls' handles point at their old slots again,
+     * whether they were captured since or not. Balls added since are dropped and detached like removed balls,
+     * so their handles never alias a slot that a later ball is added into.
+     */
+    void restoreFrom(LevelSnapshot snapshot) {
+        int count = snapshot.ballCount;
+        ensureCapacity(count);
+        for (int i = count; i < size; i++) {
+            detach(i);
+            handles[i] = null;
+            attractingHole[i] = null;
+        }
+        System.arraycopy(snapshot.posX, 0, posX, 0, count);
+        System.arraycopy(snapshot.posY, 0, posY, 0, count);
+        System.arraycopy(snapshot.velX, 0, velX, 0, count);
+        System.arraycopy(snapshot.velY, 0, velY, 0, count);
+        System.arraycopy(snapshot.radius, 0, radius, 0, count);
+        System.arraycopy(snapshot.originalRadius, 0, originalRadius, 0, count);
+        System.arraycopy(snapshot.color, 0, color, 0, count);
+        System.arraycopy(snapshot.captured, 0, captured, 0, count);
+        System.arraycopy(snapshot.attractingHole, 0, attractingHole, 0, count);
+        System.arraycopy(snapshot.handles, 0, handles, 0, count);
+        for (int i = 0; i < count; i++) {
+            handles[i].store = this;
+            handles[i].slot = i;
+        }
+        size = count;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= posX.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, posX.length * 2);
+        posX = Arrays.copyOf(posX, newCapacity);
+        posY = Arrays.copyOf(posY, newCapacity);
+        velX = Arrays.copyOf(velX, newCapacity);
+        velY = Arrays.copyOf(velY, newCapacity);
+        radius = Arrays.copyOf(radius, newCapacity);
+        originalRadius = Arrays.copyOf(originalRadius, newCapacity);
+        color = Arrays.copyOf(color, newCapacity);
+        captured = Arrays.copyOf(captured, newCapacity);
+        attractingHole = Arrays.copyOf(attractingHole, newCapacity);
+        handles = Arrays.copyOf(handles, newCapacity);
+        previousX = new float[newCapacity];
+        previousY = new float[newCapacity];
+        previousVelX = new float[newCapacity];
+        previousVelY = new float[newCapacity];
+        capturedThisTick = new boolean[newCapacity];
+        pendingHit = new Line[newCapacity];
+    }
+
+    /**
+     * Advance the ball in the given slot by one tick.
+     */
+    public void update(int i) {
+        if (step(i, contact, normal)) {
+            handleCapture(i);
+        }
+    }
+
+    /**
+     * Integrate one tick for slot i without touching anything outside the slot.
+     * The contact and normal arrays are scratch for a fast ball's sweep.
+     * @return true if the ball was captured during this step; scoring is left to the caller
+     */
+    boolean step(int i, float[] contact, float[] normal) {
+        if (captured[i]) {
+            return false;
+        }
+
+        checkAcceleration(i);
+        boolean capturedNow = attract(i);
+
+        if (needsSweep(velX[i], velY[i])) {
+            sweep(i, contact, normal);
+        } else {
+            float previousX = posX[i];
+            float previousY = posY[i];
+            posX[i] = previousX + velX[i];
+            posY[i] = previousY + velY[i];
+            checkCollisions(i, previousX, previousY);
+        }
+
+        updateRadius(i);
+        return capturedNow;
+    }
+
+    static boolean needsSweep(float vx, float vy) {
+        return Math.abs(vx) > DISCRETE_STEP_LIMIT || Math.abs(vy) > DISCRETE_STEP_LIMIT;
+    }
+
+    /**
+     * Move a fast ball along its velocity, stopping at each wall or board edge it touches and reflecting off it.
+     * Several bounces can happen within one tick; movement left over after the last allowed bounce is dropped.
+     */
+    private void sweep(int i, float[] contact, float[] normal) {
+        float remaining = 1;
+        for (int bounce = 0; bounce < MAX_BOUNCES && remaining > 0; bounce++) {
+            float dx = velX[i] * remaining;
+            float dy = velY[i] * remaining;
+            char wall = findFirstContact(i, dx, dy, contact, normal);
+            if (wall == 0) {
+                posX[i] += dx;
+                posY[i] += dy;
+                return;
+            }
+
+            float t = contact[0];
+            float nx = contact[1];
+            float ny = contact[2];
+            posX[i] += dx * t + nx * CONTACT_OFFSET;
+            posY[i] += dy * t + ny * CONTACT_OFFSET;
+            float dot = velX[i] * nx + velY[i] * ny;
+            velX[i] -= 2 * dot * nx;
+            velY[i] -= 2 * dot * ny;
+
+            // Like the discrete test, only a hit on a wall's side recolours the ball, not one on its corner
+            if ((nx == 0 || ny == 0) && wall >= '1' && wall <= '4') {
+                color[i] = wall;
+            }
+            remaining *= 1 - t;
+        }
+    }
+
+    /**
+     * Find the first board edge or wall the ball in slot i touches while moving by (dx, dy).
+     * @return the wall's colour code ('0' for grey walls, 'X' for an edge), or 0 if nothing is touched;
+     *         contact then holds the fraction of the move and the contact normal
+     */
+    private char findFirstContact(int i, float dx, float dy, float[] contact, float[] normal) {
+        float x = posX[i];
+        float y = posY[i];
+        float r = radius[i];
+        float right = level.getPixelWidth();
+        float bottom = level.getPixelHeight();
+        char hit = 0;
+        contact[0] = Float.POSITIVE_INFINITY;
+
+        // Board edges, at the positions the discrete test clamps to
+        if (dx < 0 && x + dx < r) {
+            hit = closer(hit, 'X', Math.max(0, (r - x) / dx), 1, 0, contact);
+        } else if (dx > 0 && x + dx > right - r) {
+            hit = closer(hit, 'X', Math.max(0, (right - r - x) / dx), -1, 0, contact);
+        }
+        if (dy < 0 && y + dy < App.TOPBAR + r) {
+            hit = closer(hit, 'X', Math.max(0, (App.TOPBAR + r - y) / dy), 0, 1, contact);
+        } else if (dy > 0 && y + dy > bottom - r) {
+            hit = closer(hit, 'X', Math.max(0, (bottom - r - y) / dy), 0, -1, contact);
+        }
+
+        CollisionGrid walls = level.collisionGrid;
+        if (walls == null) {
+            return hit;
+        }
+        float reach = r + WALL_PADDING;
+        int firstCol = Math.max(0, (int) Math.floor((Math.min(x, x + dx) - reach) / App.CELLSIZE));
+        int lastCol = Math.min(walls.getCols() - 1, (int) Math.floor((Math.max(x, x + dx) + reach) / App.CELLSIZE));
+        int firstRow = Math.max(0, (int) Math.floor((Math.min(y, y + dy) - reach - App.TOPBAR) / App.CELLSIZE));
+        int lastRow = Math.min(walls.getRows() - 1,
+                (int) Math.floor((Math.max(y, y + dy) + reach - App.TOPBAR) / App.CELLSIZE));
+        for (int row = firstRow; row <= lastRow; row++) {
+            if (!walls.anyWall(row, firstCol, lastCol)) {
+                continue;
+            }
+            for (int col = firstCol; col <= lastCol; col++) {
+                if (!walls.isWall(col, row)) {
+                    continue;
+                }
+                float t = Hitbox.sweepCircleBox(x, y, dx, dy, r,
+                        col * App.CELLSIZE - WALL_PADDING,
+                        row * App.CELLSIZE + App.TOPBAR - WALL_PADDING,
+                        (col + 1) * App.CELLSIZE + WALL_PADDING,
+                        (row + 1) * App.CELLSIZE + App.TOPBAR + WALL_PADDING,
+                        normal);
+                if (t >= 0) {
+                    hit = closer(hit, walls.getWallColor(col, row), t, normal[0], normal[1], contact);
+                }
+            }
+        }
+        return hit;
+    }
+
+    /**
+     * Keep whichever contact comes first. On a tie a flat side beats a corner, so a ball running along a
+     * row of wall cells is not deflected by the corners where they meet.
+     */
+    private static char closer(char hit, char cell, float t, float nx, float ny, float[] contact) {
+        float best = contact[0];
+        boolean side = nx == 0 || ny == 0;
+        boolean bestIsSide = contact[1] == 0 || contact[2] == 0;
+        if (hit == 0 || t < best - TIE_TOLERANCE || (t <= best + TIE_TOLERANCE && side && !bestIsSide)) {
+            contact[0] = t;
+            contact[1] = nx;
+            contact[2] = ny;
+            return cell;
+        }
+        return hit;
+    }
+
+    /**
+     * Step every slot across the given pool and look up each ball's line hit against the pre-tick lines.
+     * Nothing shared is modified: captures and hits are left in capturedThisTick and pendingHit
+     * for the caller to apply in slot order.
+     */
+    void stepAll(ForkJoinPool pool, SegmentGrid segmentGrid) {
+        pool.invoke(new StepTask(0, size, segmentGrid));
+    }
+
+    private void stepRange(int from, int to, SegmentGrid segmentGrid) {
+        float[] contact = new float[3];
+        float[] normal = new float[2];
+        for (int i = from; i < to; i++) {
+            previousX[i] = posX[i];
+            previousY[i] = posY[i];
+            previousVelX[i] = velX[i];
+            previousVelY[i] = velY[i];
+            capturedThisTick[i] = step(i, contact, normal);
+            pendingHit[i] = segmentGrid.findHit(previousX[i], previousY[i], previousVelX[i], previousVelY[i],
+                    radius[i], contact, normal);
+        }
+    }
+
+    private class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final SegmentGrid segmentGrid;
+
+        StepTask(int from, int to, SegmentGrid segmentGrid) {
+            this.from = from;
+            this.to = to;
+            this.segmentGrid = segmentGrid;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                stepRange(from, to, segmentGrid);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new StepTask(from, middle, segmentGrid), new StepTask(middle, to, segmentGrid));
+        }
+    }
+
+    private void checkAcceleration(int i) {
+        int cellX = (int) (posX[i] / App.CELLSIZE);
+        int cellY = (int) ((posY[i] - App.TOPBAR) / App.CELLSIZE);
+
+        CollisionGrid walls = level.collisionGrid;
+        if (walls != null) {
+            byte direction = walls.getAcceleration(cellX, cellY);
+            if (direction != CollisionGrid.NO_ACCELERATION) {
+                velX[i] += ACCELERATION_X[direction];
+                velY[i] += ACCELERATION_Y[direction];
+            }
+        }
+    }
+
+    void checkHoleAttraction(int i) {
+        if (attract(i)) {
+            handleCapture(i);
+        }
+    }
+
+    /**
+     * Pull the ball towards the nearest hole in range.
+     * @return true if the ball has just been captured
+     */
+    private boolean attract(int i) {
+        Hole nearestHole = null;
+        float nearestDistance = 100.0f;
+        Hole[] candidates = level.holesNear(posX[i], posY[i]);
+        for (int h = 0; h < candidates.length; h++) {
+            Hole hole = candidates[h];
+            float distance = distance(i, hole.getCenterX(), hole.getCenterY());
+            if (distance <= 32 && distance < nearestDistance) {
+                nearestHole = hole;
+                nearestDistance = distance;
+            }
+        }
+        attractingHole[i] = nearestHole;
+
+        if (nearestHole != null) {
+            float holeCenterX = nearestHole.x * App.CELLSIZE + App.CELLSIZE;
+            float holeCenterY = nearestHole.y * App.CELLSIZE + App.CELLSIZE + App.TOPBAR;
+            float attractionX = holeCenterX - posX[i];
+            float attractionY = holeCenterY - posY[i];
+            float distance = (float) Math.sqrt(attractionX * attractionX + attractionY * attractionY);
+
+            if (distance < 10) {
+                captured[i] = true;
+                return true;
+            } else if (distance < 32) {
+                float strength = 0.005f * distance;
+                velX[i] += attractionX / distance * strength;
+                velY[i] += attractionY / distance * strength;
+            }
+        }
+        return false;
+    }
+
+    private float distance(int i, float pointX, float pointY) {
+        float dx = posX[i] - pointX;
+        float dy = posY[i] - pointY;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    void updateRadius(int i) {
+        Hole hole = attractingHole[i];
+        if (hole != null) {
+            float distance = distance(i,
+                    hole.x * App.CELLSIZE + App.CELLSIZE,
+                    hole.y * App.CELLSIZE + App.CELLSIZE + App.TOPBAR
+            );
+            float shrinkFactor = Math.max(0, Math.min(1, distance / 32));
+            radius[i] = originalRadius[i] * shrinkFactor;
+        } else {
+            radius[i] = originalRadius[i];
+        }
+    }
+
+    void handleCapture(int i) {
+        if (!captured[i]) {
+            return;
+        }
+        char ballColor = color[i];
+        char holeColor = attractingHole[i].getColor();
+        boolean success = (holeColor == ballColor) ||
+                (ballColor == '0') ||
+                (holeColor == '0');
+
+        Ball ball = handles[i];
+        SimulationMetrics metrics = level.getMetrics();
+        if (metrics != null) {
+            metrics.captures.increment();
+        }
+        if (success) {
+            level.increaseScore(ball.changeBallColorToString(ball));
+        } else {
+            level.decreaseScore(ball.changeBallColorToString(ball));
+            level.respawnBall(ball);
+        }
+    }
+
+    /**
+     * Resolve edge and wall collisions for the position just integrated into slot i.
+     * A wall hit puts the ball back on its previous coordinate for the reflected axis.
+     */
+    private void checkCollisions(int i, float previousX, float previousY) {
+        float r = radius[i];
+        int right = level.getPixelWidth();
+        int bottom = level.getPixelHeight();
+
+        // Check edge collisions
+        if (posX[i] - r < 0) {
+            posX[i] = r;
+            velX[i] = Math.abs(velX[i]);
+        } else if (posX[i] + r > right + 8) {
+            posX[i] = right - r;
+            velX[i] = -Math.abs(velX[i]);
+        }
+
+        if (posY[i] - r < App.TOPBAR) {
+            posY[i] = App.TOPBAR + r;
+            velY[i] = Math.abs(velY[i]);
+        } else if (posY[i] + r > bottom + 8) {
+            posY[i] = bottom - r;
+            velY[i] = -Math.abs(velY[i]);
+        }
+
+        // Check wall collisions
+        int gridX = (int) (posX[i] / App.CELLSIZE);
+        int gridY = (int) ((posY[i] - App.TOPBAR) / App.CELLSIZE);
+
+        CollisionGrid walls = level.collisionGrid;
+        if (walls == null) {
+            return;
+        }
+        // One word read per row tells us which neighbours are walls; open floor skips all eight checks
+        int neighbours = walls.neighbourhood(gridX, gridY);
+        if ((neighbours & ~(1 << 4)) == 0) {
+            return;
+        }
+
+        // Edge neighbours first (these can recolour the ball), then diagonals
+        if ((neighbours & UP) != 0) {
+            checkWallInCell(i, walls, gridX, gridY - 1, true, previousX, previousY);
+        }
+        if ((neighbours & DOWN) != 0) {
+            checkWallInCell(i, walls, gridX, gridY + 1, true, previousX, previousY);
+        }
+        if ((neighbours & LEFT) != 0) {
+            checkWallInCell(i, walls, gridX - 1, gridY, true, previousX, previousY);
+        }
+        if ((neighbours & RIGHT) != 0) {
+            checkWallInCell(i, walls, gridX + 1, gridY, true, previousX, previousY);
+        }
+        if ((neighbours & UP_LEFT) != 0) {
+            checkWallInCell(i, walls, gridX - 1, gridY - 1, false, previousX, previousY);
+        }
+        if ((neighbours & DOWN_LEFT) != 0) {
+            checkWallInCell(i, walls, gridX - 1, gridY + 1, false, previousX, previousY);
+        }
+        if ((neighbours & UP_RIGHT) != 0) {
+            checkWallInCell(i, walls, gridX + 1, gridY - 1, false, previousX, previousY);
+        }
+        if ((neighbours & DOWN_RIGHT) != 0) {
+            checkWallInCell(i, walls, gridX + 1, gridY + 1, false, previousX, previousY);
+        }
+    }
+
+    /**
+     * Bounce off the wall in the given cell if the ball overlaps it. The caller has already checked it is a wall.
+     */
+    private void checkWallInCell(int i, CollisionGrid walls, int cellX, int cellY, boolean flag, float previousX, float previousY) {
+        char cell = walls.getWallColor(cellX, cellY);
+        float r = radius[i];
+        float nextX = posX[i];
+        float nextY = posY[i];
+        float wallLeft = cellX * App.CELLSIZE - 2;
+        float wallRight = (cellX + 1) * App.CELLSIZE + 2;
+        float wallTop = cellY * App.CELLSIZE + App.TOPBAR - 2;
+        float wallBottom = (cellY + 1) * App.CELLSIZE + App.TOPBAR + 2;
+
+        // Check for collision
+        if (nextX + r >= wallLeft && wallRight >= nextX - r &&
+                nextY + r >= wallTop && wallBottom >= nextY - r) {
+
+            // Determine which side of the wall was hit
+            float overlapLeft = nextX + r - wallLeft;
+            float overlapRight = wallRight - (nextX - r);
+            float overlapTop = nextY + r - wallTop;
+            float overlapBottom = wallBottom - (nextY - r);
+
+            final float overlapTolerance = 0.001f;
+
+            // Whether ball hits wall's corner
+            if (Math.abs(overlapLeft - overlapRight) < overlapTolerance &&
+                    Math.abs(overlapTop - overlapBottom) < overlapTolerance) {
+                velX[i] *= -1;
+                velY[i] *= -1;
+                posX[i] = previousX;
+                posY[i] = previousY;
+            } else {
+                float minOverlap = Math.min(Math.min(overlapLeft, overlapRight), Math.min(overlapTop, overlapBottom));
+
+                // Adjust position and velocity based on the collision side
+                if (minOverlap == overlapLeft || minOverlap == overlapRight) {
+                    velX[i] *= -1;
+                    posX[i] = previousX;
+                } else {
+                    velY[i] *= -1;
+                    posY[i] = previousY;
+                }
+
+                // Change ball color if necessary
+                if (cell != '0' && color[i] != cell && flag) {
+                    color[i] = cell;
+                }
+            }
+        }
+    }
+
+    private class BallList extends AbstractList<Ball> {
+        @Override
+        public Ball get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return handles[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void add(int index, Ball ball) {
+            if (index != size) {
+                throw new UnsupportedOperationException("Balls can only be appended");
+            }
+            adopt(ball);
+            modCount++;
+        }
+
+        @Override
+        public Ball remove(int index) {
+            Ball ball = get(index);
+            BallStore.this.remove(index);
+            modCount++;
+            return ball;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package inkball;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Level layout characters stored in square chunks of {@link #CHUNK_SIZE} cells.
+ * A chunk is only allocated once something other than floor is written into it,
+ * so a large board that is mostly empty costs memory only for the parts that have walls, holes and the like.
+ */
+public class ChunkedLayout {
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    public static final char FLOOR = ' ';
+
+    private final int cols;
+    private final int rows;
+    private final int chunkCols;
+    private final char[][] chunks;
+    private int populatedChunks;
+
+    public ChunkedLayout(int cols, int rows) {
+        if (cols < 0 || rows < 0) {
+            throw new IllegalArgumentException("Invalid layout size: " + cols + "x" + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.chunkCols = chunkCount(cols);
+        this.chunks = new char[chunkCols * chunkCount(rows)][];
+    }
+
+    /**
+     * Number of chunks needed to cover the given number of cells along one axis.
+     */
+    public static int chunkCount(int cells) {
+        return (cells + CHUNK_MASK) >>> CHUNK_SHIFT;
+    }
+
+    /**
+     * Copy a dense grid into chunks. Short rows are padded with floor.
+     */
+    public static ChunkedLayout of(char[][] grid) {
+        int cols = 0;
+        for (char[] row : grid) {
+            cols = Math.max(cols, row.length);
+        }
+        ChunkedLayout layout = new ChunkedLayout(cols, grid.length);
+        for (int row = 0; row < grid.length; row++) {
+            for (int col = 0; col < grid[row].length; col++) {
+                layout.set(col, row, grid[row][col]);
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Dense copy of the layout, one array per row.
+     */
+    public char[][] toArray() {
+        char[][] grid = new char[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                grid[row][col] = get(col, row);
+            }
+        }
+        return grid;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * The layout character at a cell; unset cells and cells outside the layout read as floor.
+     */
+    public char get(int col, int row) {
+        if (col < 0 || col >= cols || row < 0 || row >= rows) {
+            return FLOOR;
+        }
+        char[] chunk = chunks[(row >>> CHUNK_SHIFT) * chunkCols + (col >>> CHUNK_SHIFT)];
+        if (chunk == null) {
+            return FLOOR;
+        }
+        return chunk[((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK)];
+    }
+
+    public void set(int col, int row, char cell) {
+        if (col < 0 || col >= cols || row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Cell (" + col + ", " + row + ") is outside a "
+                    + cols + "x" + rows + " layout");
+        }
+        int index = (row >>> CHUNK_SHIFT) * chunkCols + (col >>> CHUNK_SHIFT);
+        char[] chunk = chunks[index];
+        if (chunk == null) {
+            if (cell == FLOOR) {
+                return;
+            }
+            chunk = new char[CHUNK_SIZE * CHUNK_SIZE];
+            Arrays.fill(chunk, FLOOR);
+            chunks[index] = chunk;
+            populatedChunks++;
+        }
+        chunk[((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK)] = cell;
+    }
+
+    /**
+     * The cells of a chunk, row by row, or null if it has not been allocated. Not a copy.
+     */
+    char[] getChunk(int chunkCol, int chunkRow) {
+        return isPopulated(chunkCol, chunkRow) ? chunks[chunkRow * chunkCols + chunkCol] : null;
+    }
+
+    /**
+     * Install the cells of a whole chunk, for loaders that already hold them chunk by chunk.
+     */
+    void putChunk(int chunkCol, int chunkRow, char[] cells) {
+        if (cells.length != CHUNK_SIZE * CHUNK_SIZE) {
+            throw new IllegalArgumentException("A chunk has " + CHUNK_SIZE * CHUNK_SIZE + " cells, not " + cells.length);
+        }
+        if (chunkCol < 0 || chunkCol >= chunkCols || chunkRow < 0 || chunkRow * chunkCols >= chunks.length) {
+            throw new IndexOutOfBoundsException("Chunk (" + chunkCol + ", " + chunkRow + ") is outside the layout");
+        }
+        int index = chunkRow * chunkCols + chunkCol;
+        if (chunks[index] == null) {
+            populatedChunks++;
+        }
+        chunks[index] = cells;
+    }
+
+    /**
+     * Whether the chunk at the given chunk coordinates has been allocated.
+     */
+    public boolean isPopulated(int chunkCol, int chunkRow) {
+        if (chunkCol < 0 || chunkCol >= chunkCols || chunkRow < 0 || chunkRow * chunkCols >= chunks.length) {
+            return false;
+        }
+        return chunks[chunkRow * chunkCols + chunkCol] != null;
+    }
+
+    public int getPopulatedChunks() {
+        return populatedChunks;
+    }
+
+    /**
+     * Collects cells for a layout whose size is only known once the last one has been read,
+     * such as one streamed from a file. Only non-floor cells need to be set.
+     */
+    public static class Builder {
+        // One array of chunks per band of CHUNK_SIZE rows, grown as wider cells arrive
+        private final List<char[][]> bands = new ArrayList<>();
+        private int populatedChunks;
+
+        public void set(int col, int row, char cell) {
+            if (col < 0 || row < 0) {
+                throw new IndexOutOfBoundsException("Cell (" + col + ", " + row + ") is outside the layout");
+            }
+            int band = row >>> CHUNK_SHIFT;
+            while (bands.size() <= band) {
+                bands.add(new char[0][]);
+            }
+            char[][] chunks = bands.get(band);
+            int chunkCol = col >>> CHUNK_SHIFT;
+            if (chunkCol >= chunks.length) {
+                if (cell == FLOOR) {
+                    return;
+                }
+                chunks = Arrays.copyOf(chunks, Math.max(chunkCol + 1, chunks.length * 2));
+                bands.set(band, chunks);
+            }
+            char[] chunk = chunks[chunkCol];
+            if (chunk == null) {
+                if (cell == FLOOR) {
+                    return;
+                }
+                chunk = new char[CHUNK_SIZE * CHUNK_SIZE];
+                Arrays.fill(chunk, FLOOR);
+                chunks[chunkCol] = chunk;
+                populatedChunks++;
+            }
+            chunk[((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK)] = cell;
+        }
+
+        /**
+         * A layout of the given size holding the cells set so far, none of which may lie outside it.
+         */
+        public ChunkedLayout build(int cols, int rows) {
+            ChunkedLayout layout = new ChunkedLayout(cols, rows);
+            for (int band = 0; band < bands.size(); band++) {
+                char[][] chunks = bands.get(band);
+                for (int chunkCol = 0; chunkCol < chunks.length; chunkCol++) {
+                    if (chunks[chunkCol] == null) {
+                        continue;
+                    }
+                    if (band >= chunkCount(rows) || chunkCol >= layout.chunkCols) {
+                        throw new IndexOutOfBoundsException("Cells were set outside a " + cols + "x" + rows + " layout");
+                    }
+                    layout.chunks[band * layout.chunkCols + chunkCol] = chunks[chunkCol];
+                }
+            }
+            layout.populatedChunks = populatedChunks;
+            return layout;
+        }
+    }
+}
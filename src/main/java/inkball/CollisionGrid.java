@@ -0,0 +1,242 @@
+package inkball;
+
+/**
+ * The parts of a level layout that ball physics reads, compiled into typed planes:
+ * one wall bit per cell, a colour nibble per cell and an acceleration code per cell.
+ * The planes are split into the same chunks as {@link ChunkedLayout}, and a chunk's planes are only
+ * allocated if it holds walls or acceleration tiles. Cells outside the layout read as open floor.
+ */
+public class CollisionGrid {
+    public static final byte NO_ACCELERATION = 0;
+    public static final byte UP = 1;
+    public static final byte DOWN = 2;
+    public static final byte LEFT = 3;
+    public static final byte RIGHT = 4;
+
+    private static final int SHIFT = ChunkedLayout.CHUNK_SHIFT;
+    private static final int SIZE = ChunkedLayout.CHUNK_SIZE;
+    private static final int MASK = SIZE - 1;
+
+    private final int cols;
+    private final int rows;
+    private final int chunkCols;
+    // Per chunk: one long of wall bits per chunk row, a colour nibble per cell and an acceleration code per cell
+    private final long[][] walls;
+    private final byte[][] wallColors;
+    private final byte[][] acceleration;
+
+    CollisionGrid(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.chunkCols = ChunkedLayout.chunkCount(cols);
+        int chunks = chunkCols * ChunkedLayout.chunkCount(rows);
+        this.walls = new long[chunks][];
+        this.wallColors = new byte[chunks][];
+        this.acceleration = new byte[chunks][];
+    }
+
+    /**
+     * Build the planes from a layout grid. Any of 'X' and '1' to '4' is a wall, with 'X' having colour 0.
+     */
+    public static CollisionGrid compile(char[][] grid) {
+        return compile(ChunkedLayout.of(grid));
+    }
+
+    /**
+     * Build the planes from a chunked layout, visiting only its populated chunks.
+     */
+    public static CollisionGrid compile(ChunkedLayout layout) {
+        CollisionGrid compiled = new CollisionGrid(layout.getCols(), layout.getRows());
+        for (int chunkRow = 0; chunkRow < ChunkedLayout.chunkCount(layout.getRows()); chunkRow++) {
+            for (int chunkCol = 0; chunkCol < compiled.chunkCols; chunkCol++) {
+                if (!layout.isPopulated(chunkCol, chunkRow)) {
+                    continue;
+                }
+                int lastRow = Math.min(layout.getRows(), (chunkRow + 1) << SHIFT);
+                int lastCol = Math.min(layout.getCols(), (chunkCol + 1) << SHIFT);
+                for (int row = chunkRow << SHIFT; row < lastRow; row++) {
+                    for (int col = chunkCol << SHIFT; col < lastCol; col++) {
+                        compiled.set(col, row, layout.get(col, row));
+                    }
+                }
+            }
+        }
+        return compiled;
+    }
+
+    private void set(int col, int row, char cell) {
+        if (cell == 'X') {
+            setWall(col, row, 0);
+        } else if (cell >= '1' && cell <= '4') {
+            setWall(col, row, cell - '0');
+        } else if (cell == 'U') {
+            setAcceleration(col, row, UP);
+        } else if (cell == 'D') {
+            setAcceleration(col, row, DOWN);
+        } else if (cell == 'L') {
+            setAcceleration(col, row, LEFT);
+        } else if (cell == 'R') {
+            setAcceleration(col, row, RIGHT);
+        }
+    }
+
+    /**
+     * Install one chunk's planes as they were stored by {@link CompiledLevel}. Either pair may be null.
+     */
+    void putChunk(int chunk, long[] wallBits, byte[] colors, byte[] directions) {
+        walls[chunk] = wallBits;
+        wallColors[chunk] = colors;
+        acceleration[chunk] = directions;
+    }
+
+    int getChunkCount() {
+        return walls.length;
+    }
+
+    long[] getWallPlane(int chunk) {
+        return walls[chunk];
+    }
+
+    byte[] getWallColorPlane(int chunk) {
+        return wallColors[chunk];
+    }
+
+    byte[] getAccelerationPlane(int chunk) {
+        return acceleration[chunk];
+    }
+
+    private int chunk(int col, int row) {
+        return (row >>> SHIFT) * chunkCols + (col >>> SHIFT);
+    }
+
+    private static int cellInChunk(int col, int row) {
+        return ((row & MASK) << SHIFT) | (col & MASK);
+    }
+
+    private void setWall(int col, int row, int color) {
+        int chunk = chunk(col, row);
+        if (walls[chunk] == null) {
+            walls[chunk] = new long[SIZE];
+            wallColors[chunk] = new byte[SIZE * SIZE / 2];
+        }
+        walls[chunk][row & MASK] |= 1L << col;
+        int cell = cellInChunk(col, row);
+        wallColors[chunk][cell >>> 1] |= (byte) (color << ((cell & 1) << 2));
+    }
+
+    private void setAcceleration(int col, int row, byte direction) {
+        int chunk = chunk(col, row);
+        if (acceleration[chunk] == null) {
+            acceleration[chunk] = new byte[SIZE * SIZE];
+        }
+        acceleration[chunk][cellInChunk(col, row)] = direction;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Number of chunks that hold walls or acceleration tiles.
+     */
+    public int getPopulatedChunks() {
+        int populated = 0;
+        for (int chunk = 0; chunk < walls.length; chunk++) {
+            if (walls[chunk] != null || acceleration[chunk] != null) {
+                populated++;
+            }
+        }
+        return populated;
+    }
+
+    public boolean isWall(int col, int row) {
+        if (col < 0 || col >= cols || row < 0 || row >= rows) {
+            return false;
+        }
+        long[] chunk = walls[chunk(col, row)];
+        return chunk != null && (chunk[row & MASK] & (1L << col)) != 0;
+    }
+
+    /**
+     * Colour code of a wall cell as the layout writes it, '0' to '4'.
+     */
+    public char getWallColor(int col, int row) {
+        byte[] colors = wallColors[chunk(col, row)];
+        if (colors == null) {
+            return '0';
+        }
+        int cell = cellInChunk(col, row);
+        return (char) ('0' + ((colors[cell >>> 1] >>> ((cell & 1) << 2)) & 0xF));
+    }
+
+    public byte getAcceleration(int col, int row) {
+        if (col < 0 || col >= cols || row < 0 || row >= rows) {
+            return NO_ACCELERATION;
+        }
+        byte[] chunk = acceleration[chunk(col, row)];
+        return chunk == null ? NO_ACCELERATION : chunk[cellInChunk(col, row)];
+    }
+
+    /**
+     * Walls in the 3x3 block centred on a cell. Bit (dy + 1) * 3 + (dx + 1) is set if the cell at
+     * offset (dx, dy) is a wall, so an open neighbourhood is a single zero test.
+     */
+    public int neighbourhood(int col, int row) {
+        return wallBits(col - 1, row - 1)
+                | wallBits(col - 1, row) << 3
+                | wallBits(col - 1, row + 1) << 6;
+    }
+
+    /**
+     * Three wall bits starting at the given cell, lowest bit first.
+     */
+    private int wallBits(int col, int row) {
+        if (row < 0 || row >= rows || col + 3 <= 0 || col >= cols) {
+            return 0;
+        }
+        if (col >= 0 && (col & MASK) <= SIZE - 3) {
+            long[] chunk = walls[chunk(col, row)];
+            return chunk == null ? 0 : (int) (chunk[row & MASK] >>> col) & 0b111;
+        }
+        // The three cells straddle a chunk boundary or the left edge of the board
+        int bits = 0;
+        for (int i = 0; i < 3; i++) {
+            if (isWall(col + i, row)) {
+                bits |= 1 << i;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Whether any cell from firstCol to lastCol inclusive in the row is a wall.
+     */
+    public boolean anyWall(int row, int firstCol, int lastCol) {
+        if (row < 0 || row >= rows) {
+            return false;
+        }
+        firstCol = Math.max(0, firstCol);
+        lastCol = Math.min(cols - 1, lastCol);
+        for (int chunkCol = firstCol >>> SHIFT; chunkCol <= lastCol >>> SHIFT && firstCol <= lastCol; chunkCol++) {
+            long[] chunk = walls[(row >>> SHIFT) * chunkCols + chunkCol];
+            if (chunk == null) {
+                continue;
+            }
+            long mask = -1L;
+            if (chunkCol == firstCol >>> SHIFT) {
+                mask &= -1L << firstCol;
+            }
+            if (chunkCol == lastCol >>> SHIFT) {
+                mask &= -1L >>> (63 - (lastCol & 63));
+            }
+            if ((chunk[row & MASK] & mask) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
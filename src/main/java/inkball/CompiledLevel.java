@@ -0,0 +1,380 @@
+package inkball;
+
+import processing.data.JSONArray;
+import processing.data.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A level compiled by {@link LevelCompiler} into one binary file: its config entry, its layout as
+ * chunk planes of one byte per cell, its {@link CollisionGrid} planes, and a table per kind of entity.
+ * The file is memory-mapped and the planes are copied out of it in bulk, so loading involves no text
+ * parsing and no per-cell decoding of walls or acceleration tiles.
+ * <pre>
+ *   int    magic "INKL", short version
+ *   int    time, int spawn_interval, double increase modifier, double decrease modifier
+ *   short  ball count, then a colour index byte per ball
+ *   int    cols, int rows
+ *   int    chunk count, then per populated chunk: int chunk col, int chunk row, a byte per cell
+ *   int    collision chunk count, then per chunk with walls or acceleration tiles: int chunk index,
+ *          byte planes; if it has walls a long of wall bits per row and a colour nibble per cell,
+ *          if it has acceleration tiles a direction byte per cell
+ *   per entity table (walls, spawners, acceleration tiles, holes, balls):
+ *          int count, then per entity: int col, int row, byte code
+ * </pre>
+ */
+public class CompiledLevel {
+    static final int MAGIC = 0x494E4B4C; // "INKL"
+    static final int VERSION = 2;
+    public static final String EXTENSION = ".inkl";
+
+    // Colour names in the order of their codes, so ball colours are stored as one byte
+    private static final String[] COLORS = {"grey", "orange", "blue", "green", "yellow"};
+    private static final int CHUNK_CELLS = ChunkedLayout.CHUNK_SIZE * ChunkedLayout.CHUNK_SIZE;
+    private static final int WALL_PLANES = 1;
+    private static final int ACCELERATION_PLANE = 2;
+    private static final int WALL_PLANES_SIZE = ChunkedLayout.CHUNK_SIZE * 8 + CHUNK_CELLS / 2;
+    private static final int ENTITY_SIZE = 4 + 4 + 1;
+    private static final int WALLS = 0;
+    private static final int SPAWNERS = 1;
+    private static final int ACCELERATION = 2;
+    private static final int HOLES = 3;
+    private static final int BALLS = 4;
+    private static final int TABLES = 5;
+    private static final String[] TABLE_NAMES = {"wall", "spawner", "acceleration tile", "hole", "ball"};
+
+    private final Path file;
+    private final ByteBuffer data;
+    private final JSONObject levelConfig;
+    private final int cols;
+    private final int rows;
+    private final int chunksStart;
+    private final int chunkCount;
+    private final int collisionStart;
+    private final int collisionCount;
+    private final int[] tableStart = new int[TABLES];
+    private final int[] tableCount = new int[TABLES];
+
+    private CompiledLevel(Path file, ByteBuffer data) throws IOException {
+        this.file = file;
+        this.data = data;
+        try {
+            if (data.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a compiled level");
+            }
+            int version = data.getShort(4);
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            levelConfig = new JSONObject();
+            levelConfig.setString("layout", file.toString());
+            levelConfig.setInt("time", data.getInt(6));
+            levelConfig.setInt("spawn_interval", data.getInt(10));
+            levelConfig.setDouble("score_increase_from_hole_capture_modifier", data.getDouble(14));
+            levelConfig.setDouble("score_decrease_from_wrong_hole_modifier", data.getDouble(22));
+            int ballCount = data.getShort(30) & 0xFFFF;
+            JSONArray balls = new JSONArray();
+            for (int i = 0; i < ballCount; i++) {
+                int color = data.get(32 + i);
+                if (color < 0 || color >= COLORS.length) {
+                    throw new IOException(file + " has unknown colour " + color + " for ball " + i);
+                }
+                balls.append(COLORS[color]);
+            }
+            levelConfig.setJSONArray("balls", balls);
+
+            int position = 32 + ballCount;
+            cols = data.getInt(position);
+            rows = data.getInt(position + 4);
+            chunkCount = data.getInt(position + 8);
+            chunksStart = position + 12;
+            if (cols <= 0 || rows <= 0) {
+                throw new IOException(file + " has an invalid layout size " + cols + "x" + rows);
+            }
+            int layoutChunkCols = ChunkedLayout.chunkCount(cols);
+            int layoutChunkRows = ChunkedLayout.chunkCount(rows);
+            if (chunkCount < 0 || chunkCount > (long) layoutChunkCols * layoutChunkRows) {
+                throw new IOException(file + " has " + chunkCount + " layout chunks for a " + cols + "x" + rows + " layout");
+            }
+            for (int i = 0; i < chunkCount; i++) {
+                int chunk = chunksStart + i * (8 + CHUNK_CELLS);
+                int chunkCol = data.getInt(chunk);
+                int chunkRow = data.getInt(chunk + 4);
+                if (chunkCol < 0 || chunkCol >= layoutChunkCols || chunkRow < 0 || chunkRow >= layoutChunkRows) {
+                    throw new IOException(file + " has layout chunk (" + chunkCol + ", " + chunkRow + ") outside its "
+                            + cols + "x" + rows + " layout");
+                }
+            }
+            position = chunksStart + chunkCount * (8 + CHUNK_CELLS);
+            collisionCount = data.getInt(position);
+            collisionStart = position + 4;
+            position = collisionStart;
+            int gridChunks = ChunkedLayout.chunkCount(cols) * ChunkedLayout.chunkCount(rows);
+            for (int i = 0; i < collisionCount; i++) {
+                int chunk = data.getInt(position);
+                if (chunk < 0 || chunk >= gridChunks) {
+                    throw new IOException(file + " has collision chunk " + chunk + " outside its " + cols + "x" + rows + " layout");
+                }
+                int planes = data.get(position + 4);
+                position += 5;
+                if ((planes & WALL_PLANES) != 0) {
+                    position += WALL_PLANES_SIZE;
+                }
+                if ((planes & ACCELERATION_PLANE) != 0) {
+                    position += CHUNK_CELLS;
+                }
+            }
+            for (int table = 0; table < TABLES; table++) {
+                tableCount[table] = data.getInt(position);
+                tableStart[table] = position + 4;
+                position = tableStart[table] + tableCount[table] * ENTITY_SIZE;
+            }
+            if (position != data.limit()) {
+                throw new IOException(file + " has " + (data.limit() - position) + " unexpected trailing bytes");
+            }
+            for (int table = 0; table < TABLES; table++) {
+                for (int i = 0; i < tableCount[table]; i++) {
+                    int entity = tableStart[table] + i * ENTITY_SIZE;
+                    int col = data.getInt(entity);
+                    int row = data.getInt(entity + 4);
+                    if (col < 0 || col >= cols || row < 0 || row >= rows) {
+                        throw new IOException(file + " has a " + TABLE_NAMES[table] + " at (" + col + ", " + row
+                                + ") outside its " + cols + "x" + rows + " layout");
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Map a compiled level file. The mapping stays valid after the channel is closed.
+     */
+    public static CompiledLevel open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CompiledLevel(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * The level's config entry, with its layout pointing at this file.
+     */
+    public JSONObject getLevelConfig() {
+        return levelConfig;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public ChunkedLayout readLayout() {
+        ChunkedLayout layout = new ChunkedLayout(cols, rows);
+        byte[] cells = new byte[CHUNK_CELLS];
+        for (int i = 0; i < chunkCount; i++) {
+            int position = chunksStart + i * (8 + CHUNK_CELLS);
+            ByteBuffer chunk = data.duplicate();
+            chunk.position(position + 8);
+            chunk.get(cells);
+            char[] chars = new char[CHUNK_CELLS];
+            for (int cell = 0; cell < CHUNK_CELLS; cell++) {
+                chars[cell] = (char) (cells[cell] & 0xFF);
+            }
+            layout.putChunk(data.getInt(position), data.getInt(position + 4), chars);
+        }
+        return layout;
+    }
+
+    /**
+     * The collision planes as the compiler built them, copied straight out of the mapped file.
+     */
+    public CollisionGrid readCollisionGrid() {
+        CollisionGrid grid = new CollisionGrid(cols, rows);
+        ByteBuffer planes = data.duplicate();
+        planes.position(collisionStart);
+        for (int i = 0; i < collisionCount; i++) {
+            int chunk = planes.getInt();
+            int flags = planes.get();
+            long[] walls = null;
+            byte[] colors = null;
+            byte[] directions = null;
+            if ((flags & WALL_PLANES) != 0) {
+                walls = new long[ChunkedLayout.CHUNK_SIZE];
+                planes.asLongBuffer().get(walls);
+                planes.position(planes.position() + walls.length * 8);
+                colors = new byte[CHUNK_CELLS / 2];
+                planes.get(colors);
+            }
+            if ((flags & ACCELERATION_PLANE) != 0) {
+                directions = new byte[CHUNK_CELLS];
+                planes.get(directions);
+            }
+            grid.putChunk(chunk, walls, colors, directions);
+        }
+        return grid;
+    }
+
+    /**
+     * Hand every entity to the handler, one kind at a time in layout order within each kind.
+     * Floor is not stored; it is every floor cell of the layout not covered by a hole.
+     */
+    public void readEntities(LevelParser.Handler handler) {
+        for (int table = 0; table < TABLES; table++) {
+            for (int i = 0; i < tableCount[table]; i++) {
+                int position = tableStart[table] + i * ENTITY_SIZE;
+                int col = data.getInt(position);
+                int row = data.getInt(position + 4);
+                char code = (char) (data.get(position + 8) & 0xFF);
+                switch (table) {
+                    case WALLS: handler.wall(col, row, code); break;
+                    case SPAWNERS: handler.spawner(col, row); break;
+                    case ACCELERATION: handler.acceleration(col, row, code); break;
+                    case HOLES: handler.hole(col, row, code); break;
+                    default: handler.ball(col, row, code); break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse a level's layout and write it, together with its config entry, in the compiled format.
+     * @throws LevelFormatException if the layout is invalid
+     */
+    public static void write(JSONObject levelConfig, Path layoutFile, OutputStream output) throws IOException {
+        EntityTables tables = new EntityTables();
+        ChunkedLayout layout = LevelParser.parse(layoutFile, tables);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(levelConfig.getInt("time"));
+        out.writeInt(levelConfig.getInt("spawn_interval"));
+        out.writeDouble(levelConfig.getDouble("score_increase_from_hole_capture_modifier"));
+        out.writeDouble(levelConfig.getDouble("score_decrease_from_wrong_hole_modifier"));
+        JSONArray balls = levelConfig.getJSONArray("balls");
+        out.writeShort(balls.size());
+        for (int i = 0; i < balls.size(); i++) {
+            out.writeByte(colorIndex(balls.getString(i)));
+        }
+
+        out.writeInt(layout.getCols());
+        out.writeInt(layout.getRows());
+        out.writeInt(layout.getPopulatedChunks());
+        byte[] cells = new byte[CHUNK_CELLS];
+        for (int chunkRow = 0; chunkRow < ChunkedLayout.chunkCount(layout.getRows()); chunkRow++) {
+            for (int chunkCol = 0; chunkCol < ChunkedLayout.chunkCount(layout.getCols()); chunkCol++) {
+                char[] chunk = layout.getChunk(chunkCol, chunkRow);
+                if (chunk == null) {
+                    continue;
+                }
+                for (int cell = 0; cell < CHUNK_CELLS; cell++) {
+                    cells[cell] = (byte) chunk[cell];
+                }
+                out.writeInt(chunkCol);
+                out.writeInt(chunkRow);
+                out.write(cells);
+            }
+        }
+
+        CollisionGrid grid = CollisionGrid.compile(layout);
+        out.writeInt(grid.getPopulatedChunks());
+        for (int chunk = 0; chunk < grid.getChunkCount(); chunk++) {
+            long[] walls = grid.getWallPlane(chunk);
+            byte[] directions = grid.getAccelerationPlane(chunk);
+            if (walls == null && directions == null) {
+                continue;
+            }
+            out.writeInt(chunk);
+            out.writeByte((walls != null ? WALL_PLANES : 0) | (directions != null ? ACCELERATION_PLANE : 0));
+            if (walls != null) {
+                for (long bits : walls) {
+                    out.writeLong(bits);
+                }
+                out.write(grid.getWallColorPlane(chunk));
+            }
+            if (directions != null) {
+                out.write(directions);
+            }
+        }
+
+        for (int table = 0; table < TABLES; table++) {
+            int count = tables.counts[table];
+            int[] entities = tables.entities[table];
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(entities[i * 3]);
+                out.writeInt(entities[i * 3 + 1]);
+                out.writeByte(entities[i * 3 + 2]);
+            }
+        }
+        out.flush();
+    }
+
+    private static int colorIndex(String color) {
+        for (int i = 0; i < COLORS.length; i++) {
+            if (COLORS[i].equalsIgnoreCase(color)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown color: " + color);
+    }
+
+    /**
+     * Collects parsed entities as (col, row, code) triples, one table per kind.
+     */
+    private static class EntityTables implements LevelParser.Handler {
+        final int[][] entities = new int[TABLES][48];
+        final int[] counts = new int[TABLES];
+
+        private void add(int table, int col, int row, char code) {
+            int[] list = entities[table];
+            int end = counts[table] * 3;
+            if (end + 3 > list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+                entities[table] = list;
+            }
+            list[end] = col;
+            list[end + 1] = row;
+            list[end + 2] = code;
+            counts[table]++;
+        }
+
+        @Override
+        public void wall(int col, int row, char color) {
+            add(WALLS, col, row, color);
+        }
+
+        @Override
+        public void spawner(int col, int row) {
+            add(SPAWNERS, col, row, 'S');
+        }
+
+        @Override
+        public void acceleration(int col, int row, char direction) {
+            add(ACCELERATION, col, row, direction);
+        }
+
+        @Override
+        public void hole(int col, int row, char color) {
+            add(HOLES, col, row, color);
+        }
+
+        @Override
+        public void ball(int col, int row, char color) {
+            add(BALLS, col, row, color);
+        }
+    }
+}
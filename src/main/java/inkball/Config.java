@@ -3,6 +3,9 @@ package inkball;
 import processing.data.JSONArray;
 import processing.data.JSONObject;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -12,11 +15,21 @@ public class Config {
     public List<JSONObject> levelConfigs = new ArrayList<>();
     public Map<String, Integer> score_increase = new HashMap<>();
     public Map<String, Integer> score_decrease = new HashMap<>();
+    // Seed for spawns and ball directions; an optional "seed" key makes every run repeat exactly
+    public long seed;
+    // How far in pixels a mouse sample may be from the simplified player line; an optional "line_tolerance" key
+    public float lineTolerance;
 
     public Config(JSONObject config){
         JSONArray levelsArray = config.getJSONArray("levels");
         for (int i = 0; i < levelsArray.size(); i++) {
-            levelConfigs.add(levelsArray.getJSONObject(i));
+            Object level = levelsArray.get(i);
+            if (level instanceof String) {
+                // A compiled level carries its own config entry
+                levelConfigs.add(readCompiledLevelConfig((String) level));
+            } else {
+                levelConfigs.add(levelsArray.getJSONObject(i));
+            }
         }
 
         JSONObject scoreIncrease = config.getJSONObject("score_increase_from_hole_capture");
@@ -32,6 +45,17 @@ public class Config {
             int value = scoreDecrease.getInt(keyString);
             score_decrease.put(keyString, value);
         }
+
+        this.seed = config.hasKey("seed") ? config.getLong("seed") : RandomSource.unseeded().getSeed();
+        this.lineTolerance = config.hasKey("line_tolerance") ? config.getFloat("line_tolerance") : PlayerLine.DEFAULT_TOLERANCE;
+    }
+
+    private static JSONObject readCompiledLevelConfig(String path) {
+        try {
+            return CompiledLevel.open(Paths.get(path)).getLevelConfig();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read compiled level " + path, e);
+        }
     }
 
     public JSONObject getLevelConfig(int levelIndex) {
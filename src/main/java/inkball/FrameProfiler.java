@@ -0,0 +1,151 @@
+package inkball;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times the stages of each frame. Stages can be timed many times a frame, and from several threads;
+ * the time is summed and recorded into the stage's histogram once the frame ends.
+ * Whole frame times are kept too, along with how many frames took longer than one and a half frame budgets,
+ * since the display had to show the previous frame again.
+ */
+public class FrameProfiler {
+
+    public enum Stage {
+        UPDATE("update"),
+        BALL_PHYSICS("ball physics"),
+        LINE_COLLISION("line collision"),
+        DRAW("draw"),
+        SPRITES("sprites"),
+        SCORE("score");
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final AtomicLongArray frameNanos = new AtomicLongArray(STAGES.length);
+    private final AtomicLongArray frameCalls = new AtomicLongArray(STAGES.length);
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final long frameBudgetNanos;
+
+    public FrameProfiler() {
+        this(1_000_000_000L / App.FPS);
+    }
+
+    /**
+     * @param frameBudgetNanos the time one frame is meant to take, such as a second divided by the frame rate
+     */
+    public FrameProfiler(long frameBudgetNanos) {
+        if (frameBudgetNanos <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive: " + frameBudgetNanos);
+        }
+        this.frameBudgetNanos = frameBudgetNanos;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Add time spent in a stage during the current frame.
+     * @param startNanos a {@link System#nanoTime()} taken when the stage started
+     */
+    public void add(Stage stage, long startNanos) {
+        frameNanos.addAndGet(stage.ordinal(), System.nanoTime() - startNanos);
+        frameCalls.incrementAndGet(stage.ordinal());
+    }
+
+    /**
+     * Record this frame's total for every stage that ran, and start the next frame.
+     */
+    public void endFrame() {
+        for (int i = 0; i < STAGES.length; i++) {
+            if (frameCalls.getAndSet(i, 0) > 0) {
+                histograms[i].record(Math.max(0, frameNanos.getAndSet(i, 0)));
+            }
+        }
+    }
+
+    /**
+     * Record how long a whole frame took, from the start of one frame to the start of the next.
+     */
+    public void recordFrame(long frameNanos) {
+        frameTimes.record(frameNanos);
+        if (frameNanos * 2 > frameBudgetNanos * 3) {
+            droppedFrames.incrementAndGet();
+        }
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public LatencyHistogram getFrameTimes() {
+        return frameTimes;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < STAGES.length; i++) {
+            frameNanos.set(i, 0);
+            frameCalls.set(i, 0);
+            histograms[i].reset();
+        }
+        frameTimes.reset();
+        droppedFrames.set(0);
+    }
+
+    /**
+     * One line summary of the whole frame times, in milliseconds.
+     */
+    public String frameSummary() {
+        return String.format(Locale.ROOT, "frames=%d dropped=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+                frameTimes.getCount(), droppedFrames.get(), frameTimes.getMeanNanos() / 1e6,
+                frameTimes.percentileNanos(0.5) / 1e6, frameTimes.percentileNanos(0.99) / 1e6,
+                frameTimes.getMaxNanos() / 1e6);
+    }
+
+    /**
+     * One line per stage with its p50, p99 and maximum in milliseconds, for the overlay.
+     */
+    public String[] summaryLines() {
+        String[] lines = new String[STAGES.length];
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = getHistogram(stage);
+            lines[stage.ordinal()] = String.format(Locale.ROOT, "%-14s p50 %6.3f  p99 %6.3f  max %6.3f ms",
+                    stage.label, histogram.percentileNanos(0.5) / 1e6,
+                    histogram.percentileNanos(0.99) / 1e6, histogram.getMaxNanos() / 1e6);
+        }
+        return lines;
+    }
+
+    /**
+     * Write one row per stage, with every timing in nanoseconds per frame.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("stage,frames,mean_ns,p50_ns,p90_ns,p99_ns,max_ns\n");
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = getHistogram(stage);
+            out.write(stage.name().toLowerCase(Locale.ROOT) + ','
+                    + histogram.getCount() + ','
+                    + histogram.getMeanNanos() + ','
+                    + histogram.percentileNanos(0.5) + ','
+                    + histogram.percentileNanos(0.9) + ','
+                    + histogram.percentileNanos(0.99) + ','
+                    + histogram.getMaxNanos() + '\n');
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,66 @@
+package inkball;
+
+import processing.core.PImage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything one game owns that used to be shared through statics on {@link App}: the window size,
+ * the random source that seeds each level, the score of every level and the sprite cache.
+ * Games with their own context can run side by side in one JVM without touching each other's state.
+ */
+public class GameContext {
+    public final int width;
+    public final int height;
+    public final RandomSource random;
+    public final int[] levelScores;
+    private final Map<String, PImage> sprites;
+
+    /**
+     * A context for a game of the given config in a window of the default size.
+     */
+    public GameContext(Config config) {
+        this(App.WIDTH, App.HEIGHT, new RandomSource(config.seed), new int[config.levelConfigs.size()]);
+    }
+
+    public GameContext(int width, int height, RandomSource random, int[] levelScores) {
+        this(width, height, random, levelScores, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param sprites cache of loaded sprites by name, kept by the context rather than copied
+     */
+    public GameContext(int width, int height, RandomSource random, int[] levelScores, Map<String, PImage> sprites) {
+        if (width <= 0 || height <= App.TOPBAR) {
+            throw new IllegalArgumentException("Window too small: " + width + "x" + height);
+        }
+        if (random == null || levelScores == null || sprites == null) {
+            throw new IllegalArgumentException("Random source, scores and sprites cannot be null");
+        }
+        this.width = width;
+        this.height = height;
+        this.random = random;
+        this.levelScores = levelScores;
+        this.sprites = sprites;
+    }
+
+    /**
+     * The cached sprite with the given name, or null if it has not been loaded.
+     */
+    public PImage getSprite(String name) {
+        return sprites.get(name);
+    }
+
+    public void putSprite(String name, PImage image) {
+        sprites.put(name, image);
+    }
+
+    public int getTotalScore() {
+        int total = 0;
+        for (int levelScore : levelScores) {
+            total += levelScore;
+        }
+        return Math.max(0, total);
+    }
+}
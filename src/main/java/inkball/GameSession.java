@@ -0,0 +1,239 @@
+package inkball;
+
+import processing.core.PVector;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * One client's game on a {@link SessionServer}. Input is decoded on the server's network thread and queued;
+ * the game itself is only touched by whichever carrier thread steps it, and never by two at once,
+ * since a session is only put back on the wheel once its step is over.
+ */
+class GameSession {
+    private static final int INITIAL_BUFFER = 256;
+
+    final SocketChannel channel;
+    private final Config config;
+    private final Executor loader;
+    private final Queue<Consumer<Simulation>> commands = new ConcurrentLinkedQueue<>();
+
+    private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER);
+    // Frames are encoded here; whatever the socket did not take is written before the next state
+    private ByteBuffer out = ByteBuffer.allocate(INITIAL_BUFFER);
+    private boolean pending;
+
+    // From the client's HELLO, read by the carrier thread that starts the game
+    private boolean helloReceived;
+    private long seed;
+    private int ticksPerSecond;
+
+    private Simulation simulation;
+    private long periodNanos;
+    long deadlineNanos;
+    private volatile boolean started;
+    volatile boolean closed;
+
+    // Ball positions in the last state sent, for the next delta
+    private int sentBalls = -1;
+    private int[] sentX = new int[0];
+    private int[] sentY = new int[0];
+
+    GameSession(SocketChannel channel, Config config, Executor loader) {
+        this.channel = channel;
+        this.config = config;
+        this.loader = loader;
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    Simulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * Take bytes read from the socket and decode every complete frame in them.
+     * Only one partial frame is ever kept, and frames over the size limit are refused, so the buffer stays bounded.
+     * @return true if these bytes completed the HELLO, so the game should be started
+     * @throws IllegalArgumentException if the client sent something malformed
+     */
+    boolean receive(ByteBuffer bytes) {
+        if (in.remaining() < bytes.remaining()) {
+            int needed = in.position() + bytes.remaining();
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, in.capacity() * 2));
+            in.flip();
+            grown.put(in);
+            in = grown;
+        }
+        in.put(bytes);
+        in.flip();
+        boolean start = false;
+        try {
+            int length;
+            while ((length = SessionProtocol.frameLength(in, SessionProtocol.MAX_CLIENT_FRAME)) > 0) {
+                int end = in.position() + 4 + length;
+                in.position(in.position() + 4);
+                start |= decode(in);
+                if (in.position() != end) {
+                    throw new IllegalArgumentException("Frame length does not match its contents");
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Frame ended early");
+        }
+        in.compact();
+        return start;
+    }
+
+    private boolean decode(ByteBuffer frame) {
+        int type = frame.get();
+        switch (type) {
+            case SessionProtocol.HELLO: {
+                if (helloReceived) {
+                    throw new IllegalArgumentException("Game already started");
+                }
+                seed = frame.getLong();
+                int rate = SessionProtocol.getCount(frame, 1000);
+                ticksPerSecond = rate == 0 ? Simulation.TICKS_PER_SECOND : rate;
+                helloReceived = true;
+                return true;
+            }
+            case SessionProtocol.STROKE: {
+                int count = SessionProtocol.getCount(frame, SessionProtocol.MAX_STROKE_POINTS);
+                if (count == 0) {
+                    throw new IllegalArgumentException("Empty stroke");
+                }
+                float[] points = new float[count * 2];
+                long x = 0;
+                long y = 0;
+                for (int i = 0; i < points.length; i += 2) {
+                    x += SessionProtocol.getZigZag(frame);
+                    y += SessionProtocol.getZigZag(frame);
+                    points[i] = x;
+                    points[i + 1] = y;
+                }
+                commands.add(game -> {
+                    game.beginLine(points[0], points[1]);
+                    for (int i = 2; i < points.length; i += 2) {
+                        game.extendLine(points[i], points[i + 1]);
+                    }
+                    game.endLine();
+                });
+                return false;
+            }
+            case SessionProtocol.ERASE: {
+                float x = SessionProtocol.getZigZag(frame);
+                float y = SessionProtocol.getZigZag(frame);
+                commands.add(game -> game.removeLine(x, y));
+                return false;
+            }
+            case SessionProtocol.RESTART:
+                commands.add(Simulation::restartLevel);
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown message type: " + type);
+        }
+    }
+
+    /**
+     * Load the game. Runs on a carrier thread, since reading the level file would stall the network thread.
+     */
+    void start(long nowNanos) {
+        GameContext context = new GameContext(App.WIDTH, App.HEIGHT, new RandomSource(seed),
+                new int[config.levelConfigs.size()]);
+        simulation = new Simulation(config, context, loader);
+        periodNanos = 1_000_000_000L / ticksPerSecond;
+        deadlineNanos = nowNanos + periodNanos;
+        started = true;
+    }
+
+    /**
+     * Apply queued input, run one tick and send the state, then move the deadline on by one period.
+     * A session that falls several periods behind skips ahead rather than running a burst of ticks.
+     */
+    void step(long nowNanos) throws IOException {
+        boolean changed = false;
+        Consumer<Simulation> command;
+        while ((command = commands.poll()) != null) {
+            command.accept(simulation);
+            changed = true;
+        }
+        changed |= simulation.tick();
+        if (flushPending() && (changed || sentBalls < 0)) {
+            sendState();
+        }
+        deadlineNanos += periodNanos;
+        if (nowNanos - deadlineNanos > 4 * periodNanos) {
+            deadlineNanos = nowNanos + periodNanos;
+        }
+    }
+
+    /**
+     * Write what is left of the previous frame.
+     * @return true once nothing is left, so a new frame can be sent
+     */
+    private boolean flushPending() throws IOException {
+        if (pending) {
+            channel.write(out);
+            pending = out.hasRemaining();
+        }
+        return !pending;
+    }
+
+    /**
+     * Write the current state. While an earlier frame is still partly unsent, new states are dropped,
+     * so a slow client gets fewer states rather than an ever growing buffer; deltas stay relative to
+     * the last state that was actually encoded.
+     */
+    private void sendState() throws IOException {
+        Level level = simulation.getLevel();
+        List<Ball> balls = level.balls;
+        int count = balls.size();
+        out.clear();
+        ensureCapacity(48 + count * 11);
+        boolean delta = count == sentBalls;
+        int start = SessionProtocol.beginFrame(out, SessionProtocol.STATE);
+        SessionProtocol.putVarLong(out, simulation.getTick());
+        SessionProtocol.putVarLong(out, simulation.getLevelIndex());
+        SessionProtocol.putZigZag(out, simulation.getTotalScore());
+        SessionProtocol.putVarLong(out, Math.max(0, level.timer));
+        out.put((byte) ((simulation.isGameOver() ? SessionProtocol.FLAG_GAME_OVER : 0)
+                | (delta ? SessionProtocol.FLAG_DELTA : 0)));
+        SessionProtocol.putVarLong(out, count);
+        if (sentX.length < count) {
+            sentX = new int[Math.max(count, sentX.length * 2)];
+            sentY = new int[sentX.length];
+        }
+        for (int i = 0; i < count; i++) {
+            Ball ball = balls.get(i);
+            PVector position = ball.getPosition();
+            int x = Math.round(position.x);
+            int y = Math.round(position.y);
+            out.put((byte) ball.getColorCode());
+            SessionProtocol.putZigZag(out, delta ? x - sentX[i] : x);
+            SessionProtocol.putZigZag(out, delta ? y - sentY[i] : y);
+            sentX[i] = x;
+            sentY[i] = y;
+        }
+        SessionProtocol.endFrame(out, start);
+        sentBalls = count;
+        out.flip();
+        channel.write(out);
+        pending = out.hasRemaining();
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (out.capacity() < bytes) {
+            out = ByteBuffer.allocate(Math.max(bytes, out.capacity() * 2));
+        }
+    }
+}
@@ -4,23 +4,263 @@ import processing.core.PVector;
 import java.util.List;
 
 public class Hitbox {
-    private static float BALL_RADIUS = App.CELLSIZE / 2.0f;
+    private static final float BALL_RADIUS = App.CELLSIZE / 2.0f;
 
     public static boolean checkCollision(PVector ballPosition, PVector ballVelocity, Line segment) {
-        PVector p1 = segment.getStart();
-        PVector p2 = segment.getEnd();
+        return checkCollision(ballPosition.x, ballPosition.y, ballVelocity.x, ballVelocity.y, segment);
+    }
+
+    public static boolean checkCollision(float x, float y, float vx, float vy, Line segment) {
+        return checkCollision(x + vx, y + vy, segment.getStartX(), segment.getStartY(),
+                segment.getEndX(), segment.getEndY(), segment.length());
+    }
+
+    /**
+     * Whether a ball whose next position is (nextX, nextY) collides with the segment from a to b of the given length.
+     */
+    public static boolean checkCollision(float nextX, float nextY, float ax, float ay, float bx, float by, float length) {
+        float dx1 = ax - nextX;
+        float dy1 = ay - nextY;
+        float dx2 = bx - nextX;
+        float dy2 = by - nextY;
+        float distanceP1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
+        float distanceP2 = (float) Math.sqrt(dx2 * dx2 + dy2 * dy2);
+
+        return (distanceP1 + distanceP2) < (length + BALL_RADIUS);
+    }
+
+    /**
+     * Distance from (px, py) to the closest point of the segment from a to b.
+     */
+    public static float distanceToSegment(float px, float py, float ax, float ay, float bx, float by) {
+        float abX = bx - ax;
+        float abY = by - ay;
+        float lengthSquared = abX * abX + abY * abY;
+        float t = 0;
+        if (lengthSquared != 0) {
+            t = ((px - ax) * abX + (py - ay) * abY) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+        float dx = px - (ax + abX * t);
+        float dy = py - (ay + abY * t);
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Furthest a ball's next position can be from a segment of the given length and still collide.
+     * The collision area is an ellipse around the segment, this is the distance to its furthest point plus a pixel of slack.
+     */
+    public static float collisionReach(float segmentLength) {
+        return (float) Math.sqrt(BALL_RADIUS * (BALL_RADIUS + segmentLength) / 2) + 1;
+    }
+
+    /**
+     * Earliest fraction of the move (dx, dy) at which a circle of radius r starting at (x, y) touches the box,
+     * or -1 if it doesn't touch it during the move. The contact normal, pointing out of the box, goes in normal.
+     */
+    public static float sweepCircleBox(float x, float y, float dx, float dy, float r,
+                                       float left, float top, float right, float bottom, float[] normal) {
+        float closestX = Math.max(left, Math.min(right, x));
+        float closestY = Math.max(top, Math.min(bottom, y));
+        float offsetX = x - closestX;
+        float offsetY = y - closestY;
+        float distanceSquared = offsetX * offsetX + offsetY * offsetY;
+        if (distanceSquared < r * r) {
+            // Already overlapping (a shrunken ball can grow back into a wall): push out if moving further in
+            float nx;
+            float ny;
+            if (distanceSquared > 0) {
+                float distance = (float) Math.sqrt(distanceSquared);
+                nx = offsetX / distance;
+                ny = offsetY / distance;
+            } else {
+                float toLeft = x - left;
+                float toRight = right - x;
+                float toTop = y - top;
+                float toBottom = bottom - y;
+                float nearest = Math.min(Math.min(toLeft, toRight), Math.min(toTop, toBottom));
+                nx = nearest == toLeft ? -1 : nearest == toRight ? 1 : 0;
+                ny = nx != 0 ? 0 : nearest == toTop ? -1 : 1;
+            }
+            if (dx * nx + dy * ny >= 0) {
+                return -1;
+            }
+            normal[0] = nx;
+            normal[1] = ny;
+            return 0;
+        }
+
+        // Ray against the box grown by r; the grown box's corners are rounded, so they are checked separately
+        float tEnter = Float.NEGATIVE_INFINITY;
+        float tExit = Float.POSITIVE_INFINITY;
+        float nx = 0;
+        float ny = 0;
+
+        if (dx == 0) {
+            if (x < left - r || x > right + r) {
+                return -1;
+            }
+        } else {
+            float t1 = (left - r - x) / dx;
+            float t2 = (right + r - x) / dx;
+            tEnter = Math.min(t1, t2);
+            tExit = Math.max(t1, t2);
+            nx = dx > 0 ? -1 : 1;
+        }
+        if (dy == 0) {
+            if (y < top - r || y > bottom + r) {
+                return -1;
+            }
+        } else {
+            float t1 = (top - r - y) / dy;
+            float t2 = (bottom + r - y) / dy;
+            float near = Math.min(t1, t2);
+            if (near > tEnter) {
+                tEnter = near;
+                nx = 0;
+                ny = dy > 0 ? -1 : 1;
+            }
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+        if (tEnter > tExit || tExit < 0 || tEnter > 1) {
+            return -1;
+        }
+
+        // Starting inside the grown box without overlapping means starting beside one of its rounded corners
+        float hitX = tEnter < 0 ? x : x + dx * tEnter;
+        float hitY = tEnter < 0 ? y : y + dy * tEnter;
+        boolean outsideX = hitX < left || hitX > right;
+        boolean outsideY = hitY < top || hitY > bottom;
+        if (outsideX && outsideY) {
+            float cornerX = hitX < left ? left : right;
+            float cornerY = hitY < top ? top : bottom;
+            return sweepCirclePoint(x, y, dx, dy, r, cornerX, cornerY, normal);
+        }
+        if (tEnter < 0) {
+            return -1;
+        }
+        normal[0] = nx;
+        normal[1] = ny;
+        return tEnter;
+    }
+
+    /**
+     * Earliest fraction of the move at which a circle of radius r touches the segment, or -1 if it doesn't.
+     * The contact normal points from the segment towards the circle.
+     */
+    public static float sweepCircleSegment(float x, float y, float dx, float dy, float r,
+                                           float ax, float ay, float bx, float by, float[] normal) {
+        float ex = bx - ax;
+        float ey = by - ay;
+        float lengthSquared = ex * ex + ey * ey;
+        if (lengthSquared == 0) {
+            return sweepCirclePoint(x, y, dx, dy, r, ax, ay, normal);
+        }
+        float length = (float) Math.sqrt(lengthSquared);
+        float nx = -ey / length;
+        float ny = ex / length;
+        float distance = (x - ax) * nx + (y - ay) * ny;
+        if (distance < 0) {
+            nx = -nx;
+            ny = -ny;
+            distance = -distance;
+        }
+
+        float approach = -(dx * nx + dy * ny);
+        if (distance >= r && approach > 0) {
+            float t = (distance - r) / approach;
+            if (t > 1) {
+                return -1;
+            }
+            float centerX = x + dx * t;
+            float centerY = y + dy * t;
+            float along = ((centerX - ax) * ex + (centerY - ay) * ey) / lengthSquared;
+            if (along >= 0 && along <= 1) {
+                normal[0] = nx;
+                normal[1] = ny;
+                return t;
+            }
+        } else if (distance < r) {
+            float along = ((x - ax) * ex + (y - ay) * ey) / lengthSquared;
+            if (along >= 0 && along <= 1) {
+                // Already touching the side: only count it if the circle is moving further in
+                if (approach <= 0) {
+                    return -1;
+                }
+                normal[0] = nx;
+                normal[1] = ny;
+                return 0;
+            }
+        }
 
-        float distanceP1 = PVector.dist(p1, PVector.add(ballPosition, ballVelocity));
-        float distanceP2 = PVector.dist(p2, PVector.add(ballPosition, ballVelocity));
-        float segmentLength = segment.length();
+        // The side was missed, so the circle can only touch one of the rounded ends
+        float tA = sweepCirclePoint(x, y, dx, dy, r, ax, ay, normal);
+        float normalAX = normal[0];
+        float normalAY = normal[1];
+        float tB = sweepCirclePoint(x, y, dx, dy, r, bx, by, normal);
+        if (tB >= 0 && (tA < 0 || tB < tA)) {
+            return tB;
+        }
+        normal[0] = normalAX;
+        normal[1] = normalAY;
+        return tA;
+    }
 
-        return (distanceP1 + distanceP2) < (segmentLength + BALL_RADIUS);
+    /**
+     * Earliest fraction of the move at which a circle of radius r touches the point, or -1 if it doesn't.
+     */
+    public static float sweepCirclePoint(float x, float y, float dx, float dy, float r,
+                                         float px, float py, float[] normal) {
+        float fx = x - px;
+        float fy = y - py;
+        float a = dx * dx + dy * dy;
+        float b = 2 * (fx * dx + fy * dy);
+        float c = fx * fx + fy * fy - r * r;
+        if (a == 0 || b >= 0) {
+            // Not moving, or moving away from the point
+            return -1;
+        }
+        float t;
+        if (c < 0) {
+            t = 0;
+        } else {
+            float discriminant = b * b - 4 * a * c;
+            if (discriminant < 0) {
+                return -1;
+            }
+            t = (-b - (float) Math.sqrt(discriminant)) / (2 * a);
+            if (t > 1) {
+                return -1;
+            }
+        }
+        float contactX = fx + dx * t;
+        float contactY = fy + dy * t;
+        float distance = (float) Math.sqrt(contactX * contactX + contactY * contactY);
+        if (distance == 0) {
+            return -1;
+        }
+        normal[0] = contactX / distance;
+        normal[1] = contactY / distance;
+        return t;
     }
 
     public static PVector calculateNewTrajectory(PVector ballPosition,PVector ballVelocity, Line segment) {
-        PVector normal = segment.getNormal(ballPosition);
-        float dotProduct = ballVelocity.dot(normal);
-        return PVector.sub(ballVelocity, PVector.mult(normal, 2 * dotProduct));
+        float[] velocity = new float[2];
+        reflect(ballPosition.x, ballPosition.y, ballVelocity.x, ballVelocity.y, segment, velocity);
+        return new PVector(velocity[0], velocity[1]);
+    }
+
+    /**
+     * Reflect the velocity of a ball at (x, y) off the segment, writing the new velocity into out.
+     * Gives the same floats as the PVector arithmetic of {@link #calculateNewTrajectory}.
+     */
+    public static void reflect(float x, float y, float vx, float vy, Line segment, float[] out) {
+        segment.normalAt(x, y, out);
+        float nx = out[0];
+        float ny = out[1];
+        float dotProduct = vx * nx + vy * ny;
+        out[0] = vx - nx * (2 * dotProduct);
+        out[1] = vy - ny * (2 * dotProduct);
     }
 
     public static Line findCollidingSegment(PVector ballPosition, PVector ballVelocity, List<Line> segments) {
@@ -11,9 +11,14 @@ public class Hole extends Tile {
         this.holeColor = holeColor;
     }
 
+    @Override
+    public String getSpriteName() {
+        return "hole" + holeColor;
+    }
+
     @Override
     public void draw(App app) {
-        PImage image = app.getSprite("hole" + holeColor);
+        PImage image = app.getSprite(getSpriteName());
 
         if (image != null){
             app.image(image, x * App.CELLSIZE, y * App.CELLSIZE + App.TOPBAR);
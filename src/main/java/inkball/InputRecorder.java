@@ -0,0 +1,99 @@
+package inkball;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the player's input as a compact binary log that {@link Replay} can play back.
+ * The log starts with the game seed, followed by one record per event:
+ * a type byte, the ticks since the previous record as a varint, then the event's payload.
+ * Mouse positions are in board pixels, written as zigzag varints so boards of any size fit.
+ */
+public class InputRecorder implements Closeable {
+    static final int MAGIC = 0x494E4B52; // "INKR"
+    static final int VERSION = 2;
+
+    static final int END = 0;
+    static final int MOUSE_PRESSED = 1;
+    static final int MOUSE_DRAGGED = 2;
+    static final int MOUSE_RELEASED = 3;
+    static final int KEY_PRESSED = 4;
+
+    private final DataOutputStream out;
+    private long lastTick;
+    private boolean finished;
+
+    public InputRecorder(OutputStream out, long seed) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeLong(seed);
+    }
+
+    public void mousePressed(long tick, int button, int x, int y) throws IOException {
+        writeMouse(MOUSE_PRESSED, tick, button, x, y);
+    }
+
+    public void mouseDragged(long tick, int button, int x, int y) throws IOException {
+        writeMouse(MOUSE_DRAGGED, tick, button, x, y);
+    }
+
+    public void mouseReleased(long tick, int button, int x, int y) throws IOException {
+        writeMouse(MOUSE_RELEASED, tick, button, x, y);
+    }
+
+    public void keyPressed(long tick, char key) throws IOException {
+        writeHeader(KEY_PRESSED, tick);
+        out.writeChar(key);
+    }
+
+    /**
+     * Mark the tick the session ended on, so a replay runs exactly as long as the recording.
+     */
+    public void finish(long tick) throws IOException {
+        if (!finished) {
+            writeHeader(END, tick);
+            finished = true;
+        }
+        out.flush();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeMouse(int type, long tick, int button, int x, int y) throws IOException {
+        writeHeader(type, tick);
+        out.writeByte(button);
+        writeVarLong((x << 1) ^ (x >> 31));
+        writeVarLong((y << 1) ^ (y >> 31));
+    }
+
+    private void writeHeader(int type, long tick) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Recording already finished");
+        }
+        if (tick < lastTick) {
+            throw new IllegalArgumentException("Tick went backwards: " + tick + " < " + lastTick);
+        }
+        out.writeByte(type);
+        writeVarLong(tick - lastTick);
+        lastTick = tick;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,96 @@
+package inkball;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of nanosecond timings with buckets that widen as values grow, in the style of HdrHistogram:
+ * every power of two is split into {@link #SUB_BUCKETS} equal buckets, so any value is kept to within about 3%.
+ * Recording is lock-free, so stages that run on several threads can share one histogram.
+ */
+public class LatencyHistogram {
+    public static final int SUB_BUCKET_BITS = 5;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below two sub-bucket ranges get a bucket each; every doubling above that adds SUB_BUCKETS more
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * The largest value that falls in the given bucket.
+     */
+    static long highestIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Timing cannot be negative: " + nanos);
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public long getMeanNanos() {
+        long samples = count.get();
+        return samples == 0 ? 0 : total.get() / samples;
+    }
+
+    /**
+     * The value that the given fraction of samples came in at or under, to the top of its bucket.
+     * @param fraction between 0 and 1, such as 0.99 for the 99th percentile
+     */
+    public long percentileNanos(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1: " + fraction);
+        }
+        long samples = count.get();
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * samples));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(max.get(), highestIn(bucket));
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+}
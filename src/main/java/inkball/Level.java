@@ -1,11 +1,15 @@
 package inkball;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
+import processing.core.PGraphics;
 import processing.core.PImage;
-import processing.core.PVector;
 import processing.data.JSONArray;
 import processing.data.JSONObject;
 
@@ -17,14 +21,49 @@ public class Level {
     int spawnTimer;
     private String layoutFile;
 
+    // Dense copy of the layout, only kept for boards that fit in a single chunk
     public char[][] grid;
+    private ChunkedLayout layout;
+    private int cols = App.BOARD_WIDTH;
+    private int rows = App.BOARD_HEIGHT - 2;
+    // Walls, wall colours and acceleration tiles of the grid, compiled for the physics step
+    public CollisionGrid collisionGrid;
     public List<Tile> tiles;
     private List<Spawner> spawners;
     public List<Ball> balls;
+    public BallStore ballStore;
     private List<Wall> walls;
     private List<Hole> holes;
     public List<AccelerationTiles> accelerationTiles;
     public List<String> ballQueue;
+    public SegmentGrid segmentGrid;
+
+    // Holes close enough to attract a ball in each cell, with a one-cell border around the board.
+    // Stored in layout-sized chunks that are only allocated near a hole
+    private static final Hole[] NO_HOLES = new Hole[0];
+    private static final float HOLE_ATTRACTION_RADIUS = 32;
+    private Hole[][][] holeChunks;
+    private int holeChunkCols;
+    private int holeTableCols;
+    private int holeTableRows;
+
+    // Opt-in parallel ball step, only used once there are enough balls to pay for the fork
+    private ForkJoinPool parallelPool;
+    private FrameProfiler profiler;
+    private SimulationMetrics metrics;
+    static final int PARALLEL_THRESHOLD = 512;
+    // Static tiles drawn into the board layer per frame, so baking a board never takes a whole frame
+    static final int BAKE_TILES_PER_FRAME = 96;
+    private PGraphics boardLayer;
+    // Tiles looked at so far while baking, and whether the layer is complete or cannot be made
+    private int bakedTiles;
+    private boolean boardBaked;
+    // Top-left of the visible part of the board, in board pixels
+    private int viewX;
+    private int viewY;
+    // Size of the window the board is shown in, top bar included
+    private int viewWidth = App.WIDTH;
+    private int viewHeight = App.HEIGHT;
     float[] displayOffsets;
     private boolean isMovingBalls = false;
     private int movementCounter = 0;
@@ -41,10 +80,15 @@ public class Level {
     public boolean isAnimationComplete;
 
     public int levelIndex;
+    private final RandomSource random;
 
 
 
     public Level(JSONObject levelConfig, Config config,int levelIndex) {
+        this(levelConfig, config, levelIndex, new RandomSource(config.seed));
+    }
+
+    public Level(JSONObject levelConfig, Config config, int levelIndex, RandomSource random) {
         this.time = levelConfig.getInt("time");
         this.spawnInterval = levelConfig.getInt("spawn_interval");
         this.layoutFile = levelConfig.getString("layout");
@@ -52,15 +96,18 @@ public class Level {
         this.timer = time *App.FPS;
         this.scoreManager = new ScoreManager(config, levelIndex);
         this.levelIndex = levelIndex;
+        this.random = random;
 
         tiles = new ArrayList<>();
         spawners = new ArrayList<>();
-        balls = new ArrayList<>();
+        ballStore = new BallStore(this);
+        balls = ballStore.asList();
         walls = new ArrayList<>();
         holes = new ArrayList<>();
         accelerationTiles = new ArrayList<>();
         ballQueue = new LinkedList<>();
         displayBall = new ArrayList<>();
+        segmentGrid = new SegmentGrid(viewWidth, viewHeight);
 
 
         JSONArray ballsArray = levelConfig.getJSONArray("balls");
@@ -88,70 +135,203 @@ public class Level {
         return this.layoutFile;
     }
 
+    /**
+     * Read the layout file, creating the level's tiles, walls, holes, spawners and balls.
+     * A {@link CompiledLevel} file is mapped and its collision planes are taken as stored; anything else
+     * is parsed as a text layout and compiled here.
+     * @throws LevelFormatException if the file is not a valid layout
+     */
     public void loadFile() {
-        String filePath = this.getLayoutFile();
-        List<String> lines = new ArrayList<>();
-
-        try (Scanner scanner = new Scanner(new File(filePath))) {
-            while (scanner.hasNextLine()) {
-                lines.add(scanner.nextLine().trim());
+        Path file = Paths.get(getLayoutFile());
+        CollisionGrid compiledGrid = null;
+        try {
+            if (getLayoutFile().endsWith(CompiledLevel.EXTENSION)) {
+                CompiledLevel compiled = CompiledLevel.open(file);
+                layout = compiled.readLayout();
+                compiledGrid = compiled.readCollisionGrid();
+                compiled.readEntities(new TileCreator());
+            } else {
+                layout = LevelParser.parse(file, new TileCreator());
             }
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             System.out.println("File not found: " + e.getMessage());
             return;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + getLayoutFile(), e);
         }
 
-        grid = new char[lines.size()][lines.get(0).length()];
-
-        for (int row = 0; row < lines.size(); row++) {
-            String line = lines.get(row);
-            for (int col = 0; col < line.length(); col++) {
-                char tileChar = line.charAt(col);
-                grid[row][col] = tileChar;
+        cols = layout.getCols();
+        rows = layout.getRows();
+        if (cols <= ChunkedLayout.CHUNK_SIZE && rows <= ChunkedLayout.CHUNK_SIZE) {
+            grid = layout.toArray();
+            createFloorTiles();
+        } else {
+            grid = null;
+        }
+        segmentGrid = new SegmentGrid(getPixelWidth(), getPixelHeight());
+        segmentGrid.setMetrics(metrics);
+        collisionGrid = compiledGrid != null ? compiledGrid : CollisionGrid.compile(layout);
+        buildHoleTable();
+    }
 
-                if (row > 0 && col > 0) {
-                    if (grid[row - 1][col] == 'H') {
-                        col++;
-                        System.out.println("Incremented col to: " + col);
-                        continue;
+    /**
+     * Record, for every cell, the holes whose centre is within attraction range of some point in that cell.
+     * Holes keep their layout order so ties resolve the same way a scan over the tiles would.
+     */
+    private void buildHoleTable() {
+        holeTableCols = cols + 2;
+        holeTableRows = rows + 2;
+        holeChunkCols = ChunkedLayout.chunkCount(holeTableCols);
+        holeChunks = new Hole[holeChunkCols * ChunkedLayout.chunkCount(holeTableRows)][][];
+
+        for (Hole hole : holes) {
+            // Attraction reaches at most two cells past the one holding the centre
+            int centreCol = (int) Math.floor(hole.getCenterX() / App.CELLSIZE) + 1;
+            int centreRow = (int) Math.floor((hole.getCenterY() - App.TOPBAR) / App.CELLSIZE) + 1;
+            for (int row = Math.max(0, centreRow - 3); row <= Math.min(holeTableRows - 1, centreRow + 3); row++) {
+                for (int col = Math.max(0, centreCol - 3); col <= Math.min(holeTableCols - 1, centreCol + 3); col++) {
+                    float left = (col - 1) * App.CELLSIZE;
+                    float top = (row - 1) * App.CELLSIZE + App.TOPBAR;
+                    float dx = Math.max(0, Math.max(left - hole.getCenterX(), hole.getCenterX() - (left + App.CELLSIZE)));
+                    float dy = Math.max(0, Math.max(top - hole.getCenterY(), hole.getCenterY() - (top + App.CELLSIZE)));
+                    if (dx * dx + dy * dy <= HOLE_ATTRACTION_RADIUS * HOLE_ATTRACTION_RADIUS + 1) {
+                        addNearbyHole(col, row, hole);
                     }
                 }
-                if (tileChar == 'S') {
-                    createSpawners(col, row);
-                } else if (tileChar == 'H') {
-                    if (col + 1 < line.length()) {
-                        char holeColor = line.charAt(col + 1);
-                        createHole(col, row, holeColor);
-                        col++;
-                    } else {
-                        System.out.println("Error: Hole at (" + col + ", " + row + ") does not have a color character.");
-                    }
-                } else if (tileChar == 'B') {
-                    Tile tile = new Tile(col, row, this);
-                    tiles.add(tile);
-                    if (col + 1 < line.length()) {
-                        char ballColor = line.charAt(col + 1);
-                        createBall(col, row, ballColor);
-                        col++;
-                        Tile tile1 = new Tile(col, row, this);
-                        tiles.add(tile1);
-                    } else {
-                        System.out.println("Error: Ball at (" + col + ", " + row + ") does not have a color character.");
-                    }
-                }else if (tileChar == '1' || tileChar == '2' || tileChar == '3' || tileChar == '4') {
-                    createWall(col, row, tileChar);
-                } else if (tileChar == 'X') {
-                    createWall(col, row, '0');
-                } else if (tileChar == 'U' || tileChar == 'D' || tileChar == 'L' || tileChar == 'R') {
-                    createAccelerationTiles(col, row, tileChar);
-                } else{
-                    Tile tile = new Tile(col, row, this);
-                    tiles.add(tile);
+            }
+        }
+    }
+
+    private void addNearbyHole(int col, int row, Hole hole) {
+        int chunkIndex = (row >>> ChunkedLayout.CHUNK_SHIFT) * holeChunkCols + (col >>> ChunkedLayout.CHUNK_SHIFT);
+        Hole[][] chunk = holeChunks[chunkIndex];
+        if (chunk == null) {
+            chunk = new Hole[ChunkedLayout.CHUNK_SIZE * ChunkedLayout.CHUNK_SIZE][];
+            holeChunks[chunkIndex] = chunk;
+        }
+        int cell = holeCell(col, row);
+        Hole[] nearby = chunk[cell] == null ? NO_HOLES : chunk[cell];
+        nearby = Arrays.copyOf(nearby, nearby.length + 1);
+        nearby[nearby.length - 1] = hole;
+        chunk[cell] = nearby;
+    }
+
+    private static int holeCell(int col, int row) {
+        return ((row & (ChunkedLayout.CHUNK_SIZE - 1)) << ChunkedLayout.CHUNK_SHIFT) | (col & (ChunkedLayout.CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Holes that could attract a ball at the given position.
+     */
+    public Hole[] holesNear(float x, float y) {
+        if (holeChunks == null) {
+            return NO_HOLES;
+        }
+        int col = (int) Math.floor(x / App.CELLSIZE) + 1;
+        int row = (int) Math.floor((y - App.TOPBAR) / App.CELLSIZE) + 1;
+        if (col < 0 || col >= holeTableCols || row < 0 || row >= holeTableRows) {
+            return NO_HOLES;
+        }
+        Hole[][] chunk = holeChunks[(row >>> ChunkedLayout.CHUNK_SHIFT) * holeChunkCols + (col >>> ChunkedLayout.CHUNK_SHIFT)];
+        if (chunk == null) {
+            return NO_HOLES;
+        }
+        Hole[] nearby = chunk[holeCell(col, row)];
+        return nearby == null ? NO_HOLES : nearby;
+    }
+
+    /**
+     * Width of the board in cells, from the layout file once it is loaded.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Height of the board in cells, from the layout file once it is loaded.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Right edge of the board in pixels.
+     */
+    public int getPixelWidth() {
+        return cols * App.CELLSIZE;
+    }
+
+    /**
+     * Bottom edge of the board in pixels, counting the top bar like {@link App#HEIGHT} does.
+     */
+    public int getPixelHeight() {
+        return rows * App.CELLSIZE + App.TOPBAR;
+    }
+
+    /**
+     * The layout character at a cell, or floor if the layout has not been loaded.
+     */
+    public char getCell(int col, int row) {
+        return layout == null ? ChunkedLayout.FLOOR : layout.get(col, row);
+    }
+
+    public ChunkedLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Give every floor cell a tile, including the two cells under each ball but not the cells a hole covers.
+     * Only done for boards that keep the dense grid; larger boards draw floor straight from the layout.
+     */
+    private void createFloorTiles() {
+        boolean[][] underHole = new boolean[rows][cols];
+        for (Hole hole : holes) {
+            for (int row = hole.y; row < Math.min(rows, hole.y + 2); row++) {
+                for (int col = hole.x; col < Math.min(cols, hole.x + 2); col++) {
+                    underHole[row][col] = true;
+                }
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                char cell = grid[row][col];
+                if ((cell == ChunkedLayout.FLOOR || cell == 'B') && !underHole[row][col]) {
+                    tiles.add(new Tile(col, row, this));
                 }
             }
         }
     }
 
+    /**
+     * Turns loaded entities into tiles.
+     */
+    private class TileCreator implements LevelParser.Handler {
+        @Override
+        public void wall(int col, int row, char color) {
+            createWall(col, row, color);
+        }
+
+        @Override
+        public void spawner(int col, int row) {
+            createSpawners(col, row);
+        }
+
+        @Override
+        public void acceleration(int col, int row, char direction) {
+            createAccelerationTiles(col, row, direction);
+        }
+
+        @Override
+        public void hole(int col, int row, char color) {
+            createHole(col, row, color);
+        }
+
+        @Override
+        public void ball(int col, int row, char color) {
+            createBall(col, row, color);
+        }
+    }
+
     private void createBall(int col, int row, char ballColor) {
         Ball ball = new Ball(col, row, ballColor, this);
         tiles.add(ball);
@@ -185,37 +365,50 @@ public class Level {
 
 
     List<PlayerLine> linesToRemove = new ArrayList<>();
-    List<Ball> ballsToRemove = new ArrayList<>();
+    // Scratch for sweeping fast balls against the lines, so the step allocates nothing
+    private final float[] sweepContact = new float[3];
+    private final float[] sweepNormal = new float[2];
+    // Scratch for the normal and new velocity of a ball bouncing off a line
+    private final float[] bounceScratch = new float[2];
 
     public void update(List<PlayerLine> playerLines){
         if (!isEndingLevel) {
-            for (Ball ball : balls) {
-                PVector originalPosition = ball.getPosition().copy();
-                PVector originalVelocity = ball.getVelocity().copy();
-
-                ball.update();
-
-
-                for (PlayerLine playerLine : playerLines) {
+            segmentGrid.sync(playerLines);
+            BallStore store = ballStore;
+            if (parallelPool != null && store.size() >= PARALLEL_THRESHOLD) {
+                updateBallsInParallel(store);
+            } else {
+                FrameProfiler profiler = this.profiler;
+                for (int i = 0; i < store.size(); i++) {
+                    float originalX = store.posX[i];
+                    float originalY = store.posY[i];
+                    float originalVelX = store.velX[i];
+                    float originalVelY = store.velY[i];
+
+                    long start = profiler != null ? System.nanoTime() : 0;
+                    store.update(i);
+                    if (profiler != null) {
+                        profiler.add(FrameProfiler.Stage.BALL_PHYSICS, start);
+                        start = System.nanoTime();
+                    }
 
-                    List<Line> segments = playerLine.getSegments();
-                    Line collidingSegment = Hitbox.findCollidingSegment(originalPosition, originalVelocity, segments);
+                    // Only segments near the ball's next position (or its whole move, for fast balls) are tested
+                    Line collidingSegment = segmentGrid.findHit(originalX, originalY, originalVelX, originalVelY,
+                            store.radius[i], sweepContact, sweepNormal);
 
                     if (collidingSegment != null) {
-                        PVector newVelocity = Hitbox.calculateNewTrajectory(originalPosition, originalVelocity, collidingSegment);
-                        ball.setVelocity(newVelocity);
-                        PVector adjustedPosition = originalPosition.copy().add(newVelocity.copy().normalize().mult(0.1f));
-                        ball.setPosition(adjustedPosition);
-                        linesToRemove.add(playerLine);
-                        break;
+                        consumeLine(store, i, originalX, originalY, originalVelX, originalVelY, collidingSegment);
+                    }
+                    if (profiler != null) {
+                        profiler.add(FrameProfiler.Stage.LINE_COLLISION, start);
                     }
                 }
-                if (ball.getCaptured()) {
-                    ballsToRemove.add(ball);
-                }
+            }
+            if (!linesToRemove.isEmpty()) {
                 playerLines.removeAll(linesToRemove);
+                linesToRemove.clear();
             }
-            balls.removeAll(ballsToRemove);
+            store.removeCaptured();
 
             if (timer != 0) {
                 timer--;
@@ -247,12 +440,117 @@ public class Level {
         }
     }
 
+    /**
+     * Step all balls on the parallel pool, then apply captures and line hits in slot order.
+     * Applying them serially gives the same score, respawn queue and consumed lines as the serial loop,
+     * whatever the number of cores.
+     */
+    private void updateBallsInParallel(BallStore store) {
+        // Steps on the pool include the search for line hits, so that is counted as physics here
+        long start = profiler != null ? System.nanoTime() : 0;
+        store.stepAll(parallelPool, segmentGrid);
+        if (profiler != null) {
+            profiler.add(FrameProfiler.Stage.BALL_PHYSICS, start);
+            start = System.nanoTime();
+        }
+        for (int i = 0; i < store.size(); i++) {
+            if (store.capturedThisTick[i]) {
+                store.handleCapture(i);
+            }
+            Line collidingSegment = store.pendingHit[i];
+            if (collidingSegment != null && collidingSegment.owner.getGrid() == null) {
+                // An earlier ball consumed that line this tick, so look again among the lines that are left
+                collidingSegment = segmentGrid.findHit(store.previousX[i], store.previousY[i],
+                        store.previousVelX[i], store.previousVelY[i], store.radius[i], sweepContact, sweepNormal);
+            }
+            store.pendingHit[i] = null;
+            if (collidingSegment != null) {
+                consumeLine(store, i, store.previousX[i], store.previousY[i],
+                        store.previousVelX[i], store.previousVelY[i], collidingSegment);
+            }
+        }
+        if (profiler != null) {
+            profiler.add(FrameProfiler.Stage.LINE_COLLISION, start);
+        }
+    }
+
+    private void consumeLine(BallStore store, int i, float x, float y, float velX, float velY, Line segment) {
+        bounceOffSegment(store, i, x, y, velX, velY, segment);
+        PlayerLine playerLine = segment.owner;
+        playerLine.detach();
+        linesToRemove.add(playerLine);
+        if (metrics != null) {
+            metrics.linesConsumed.increment();
+        }
+    }
+
+    /**
+     * Use the given pool to step balls in parallel on busy boards, or pass null to always step serially.
+     */
+    public void setParallelism(ForkJoinPool pool) {
+        this.parallelPool = pool;
+    }
+
+    /**
+     * Show the board in a window of the given size, keeping the view inside the board.
+     */
+    public void setViewSize(int width, int height) {
+        this.viewWidth = width;
+        this.viewHeight = height;
+        scrollBy(0, 0);
+    }
+
+    /**
+     * Time ball physics, line collisions and sprite drawing into the given profiler, or pass null to stop.
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Count captures, respawns, consumed lines and collision tests into the given metrics, or pass null to stop.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+        segmentGrid.setMetrics(metrics);
+    }
+
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reflect the ball off a player line and move it just off its pre-tick position.
+     */
+    private void bounceOffSegment(BallStore store, int i, float x, float y, float velX, float velY, Line segment) {
+        float[] normal = bounceScratch;
+        if (BallStore.needsSweep(velX, velY)) {
+            // A fast ball stops where it touched the line instead of going back to where the tick started
+            float t = Hitbox.sweepCircleSegment(x, y, velX, velY, store.radius[i],
+                    segment.getStartX(), segment.getStartY(), segment.getEndX(), segment.getEndY(), normal);
+            if (t >= 0) {
+                float dot = velX * normal[0] + velY * normal[1];
+                store.velX[i] = velX - 2 * dot * normal[0];
+                store.velY[i] = velY - 2 * dot * normal[1];
+                store.posX[i] = x + velX * t + normal[0] * 0.1f;
+                store.posY[i] = y + velY * t + normal[1] * 0.1f;
+                return;
+            }
+        }
+        Hitbox.reflect(x, y, velX, velY, segment, normal);
+        store.velX[i] = normal[0];
+        store.velY[i] = normal[1];
+        Line.normalize(normal[0], normal[1], normal);
+        store.posX[i] = x + normal[0] * 0.1f;
+        store.posY[i] = y + normal[1] * 0.1f;
+    }
+
     public void startLevelEndAnimation() {
         isEndingLevel = true;
         remainingTime = timer/App.FPS;
         yellowTiles = new ArrayList<>();
-        yellowTiles.add(new YellowTile(0, 0));
-        yellowTiles.add(new YellowTile(App.BOARD_WIDTH - 1, App.BOARD_HEIGHT - 3));
+        yellowTiles.add(new YellowTile(0, 0, cols, rows));
+        yellowTiles.add(new YellowTile(cols - 1, rows - 1, cols, rows));
         animationTimer = 0;
         isAnimationComplete = false;
     }
@@ -293,13 +591,16 @@ public class Level {
         if (!spawners.isEmpty() && !ballQueue.isEmpty()) {
             char ballColor = convertColorToChar(ballQueue.get(0));
             ballQueue.remove(0);
-            Random random = new Random();
             int randomIndex = random.nextInt(spawners.size());
             Spawner spawner = spawners.get(randomIndex);
             createBall(spawner.x, spawner.y, ballColor);
         }
     }
 
+    public RandomSource getRandom() {
+        return random;
+    }
+
     public void drawTimer(App app) {
 
         int seconds = timer / App.FPS;
@@ -321,9 +622,17 @@ public class Level {
 
 
 
+        SpriteAtlas atlas = app.getAtlas();
         int index = 0;
         for (String ballColor : displayBall) {
             char colorChar = convertColorToChar(ballColor);
+            if (atlas != null) {
+                int region = SpriteAtlas.ball(colorChar);
+                atlas.draw(app, region, startX + (index * spacing) - displayOffsets[index], y + 4,
+                        atlas.getWidth(region), atlas.getHeight(region));
+                index++;
+                continue;
+            }
             PImage ballImage = app.getSprite("ball" + colorChar);
             if (ballImage != null) {
                 app.image(ballImage, startX + (index * spacing) - displayOffsets[index], y + 4);
@@ -343,6 +652,9 @@ public class Level {
     }
 
     public void respawnBall(Ball ball) {
+        if (metrics != null) {
+            metrics.wrongHoleRespawns.increment();
+        }
         ballQueue.add(ball.changeBallColorToString(ball));
         displayBall.add(ball.changeBallColorToString(ball));
 
@@ -352,10 +664,258 @@ public class Level {
         return balls.isEmpty() && ballQueue.isEmpty();
     }
 
+    /**
+     * Save everything that changes as the level is played, with the given lines, into a new snapshot.
+     */
+    public LevelSnapshot snapshot(List<PlayerLine> playerLines) {
+        return snapshot(playerLines, new LevelSnapshot());
+    }
+
+    /**
+     * Save everything that changes as the level is played, with the given lines, into the given snapshot,
+     * reusing its buffers. The layout and the tiles it was built into are shared, not copied.
+     * @return the snapshot
+     */
+    public LevelSnapshot snapshot(List<PlayerLine> playerLines, LevelSnapshot into) {
+        into.level = this;
+        into.timer = timer;
+        into.spawnTimer = spawnTimer;
+        into.score = score;
+        into.isEndingLevel = isEndingLevel;
+        into.remainingTime = remainingTime;
+        into.animationTimer = animationTimer;
+        into.isAnimationComplete = isAnimationComplete;
+        into.isMovingBalls = isMovingBalls;
+        into.movementCounter = movementCounter;
+        into.randomState = random.getState();
+        into.tileCount = tiles.size();
+        ballStore.saveTo(into);
+
+        into.ballQueue.clear();
+        into.ballQueue.addAll(ballQueue);
+        into.displayBall.clear();
+        into.displayBall.addAll(displayBall);
+        if (into.displayOffsets.length != displayOffsets.length) {
+            into.displayOffsets = new float[displayOffsets.length];
+        }
+        System.arraycopy(displayOffsets, 0, into.displayOffsets, 0, displayOffsets.length);
+        if (yellowTiles == null) {
+            into.yellowTiles = null;
+        } else {
+            if (into.yellowTiles == null || into.yellowTiles.length != yellowTiles.size() * 2) {
+                into.yellowTiles = new int[yellowTiles.size() * 2];
+            }
+            for (int i = 0; i < yellowTiles.size(); i++) {
+                into.yellowTiles[i * 2] = yellowTiles.get(i).getX();
+                into.yellowTiles[i * 2 + 1] = yellowTiles.get(i).getY();
+            }
+        }
+
+        into.lines.clear();
+        into.lines.addAll(playerLines);
+        return into;
+    }
+
+    /**
+     * Put the level and the given lines back as they were when the snapshot was taken, in time proportional
+     * to the balls and lines rather than the board. Playing on from a restored level gives the same game as
+     * playing on from the snapshot did, random spawns included.
+     * @throws IllegalArgumentException if the snapshot was taken from another level
+     */
+    public void restore(LevelSnapshot snapshot, List<PlayerLine> playerLines) {
+        if (snapshot.level != this) {
+            throw new IllegalArgumentException("Snapshot was taken from another level");
+        }
+        timer = snapshot.timer;
+        spawnTimer = snapshot.spawnTimer;
+        score = snapshot.score;
+        isEndingLevel = snapshot.isEndingLevel;
+        remainingTime = snapshot.remainingTime;
+        animationTimer = snapshot.animationTimer;
+        isAnimationComplete = snapshot.isAnimationComplete;
+        isMovingBalls = snapshot.isMovingBalls;
+        movementCounter = snapshot.movementCounter;
+        random.setState(snapshot.randomState);
+        tiles.subList(snapshot.tileCount, tiles.size()).clear();
+        ballStore.restoreFrom(snapshot);
+
+        ballQueue.clear();
+        ballQueue.addAll(snapshot.ballQueue);
+        displayBall.clear();
+        displayBall.addAll(snapshot.displayBall);
+        if (displayOffsets.length != snapshot.displayOffsets.length) {
+            displayOffsets = new float[snapshot.displayOffsets.length];
+        }
+        System.arraycopy(snapshot.displayOffsets, 0, displayOffsets, 0, displayOffsets.length);
+        if (snapshot.yellowTiles == null) {
+            yellowTiles = null;
+        } else {
+            yellowTiles = new ArrayList<>();
+            for (int i = 0; i < snapshot.yellowTiles.length; i += 2) {
+                yellowTiles.add(new YellowTile(snapshot.yellowTiles[i], snapshot.yellowTiles[i + 1], cols, rows));
+            }
+        }
+
+        // Lines hit first in the order they were drawn, so every line is attached again in list order
+        for (PlayerLine line : playerLines) {
+            line.detach();
+        }
+        for (PlayerLine line : snapshot.lines) {
+            line.detach();
+        }
+        linesToRemove.clear();
+        playerLines.clear();
+        playerLines.addAll(snapshot.lines);
+        segmentGrid.sync(playerLines);
+    }
+
+    /**
+     * Render every static tile into an offscreen layer, or return null if the app has no sprite atlas
+     * or the board is too large to keep as one image.
+     */
+    PGraphics bakeBoard(App app) {
+        while (!bakeBoardStep(app, Integer.MAX_VALUE)) {
+            // Keep going until the layer is complete
+        }
+        return boardLayer;
+    }
+
+    /**
+     * Do one frame's share of rendering the static tiles into the board layer: create the layer,
+     * or draw up to maxTiles more tiles into it. The layer is only shown once it is complete, and the
+     * tiles are drawn by hand until then. The app warms a preloaded level this way during the
+     * end-of-level animation, so the frame that swaps it in has nothing left to bake.
+     * @return true once the layer is complete, or if the board is not kept as a layer
+     */
+    boolean bakeBoardStep(App app, int maxTiles) {
+        if (boardBaked) {
+            return true;
+        }
+        SpriteAtlas atlas = app.getAtlas();
+        if (atlas == null || grid == null) {
+            boardBaked = true;
+            return true;
+        }
+        if (boardLayer == null) {
+            boardLayer = app.createGraphics(getPixelWidth(), getPixelHeight());
+            return false;
+        }
+        int end = (int) Math.min(tiles.size(), (long) bakedTiles + maxTiles);
+        boardLayer.beginDraw();
+        for (; bakedTiles < end; bakedTiles++) {
+            Tile tile = tiles.get(bakedTiles);
+            if (tile instanceof Ball) {
+                continue;
+            }
+            int region = SpriteAtlas.indexOf(tile.getSpriteName());
+            if (region >= 0) {
+                atlas.draw(boardLayer, region, tile.x * App.CELLSIZE, tile.y * App.CELLSIZE + App.TOPBAR);
+            }
+        }
+        boardLayer.endDraw();
+        boardBaked = bakedTiles == tiles.size();
+        return boardBaked;
+    }
+
+    /**
+     * Draw floor and static tiles for the cells in view, straight from the layout.
+     * Used for boards too large to keep a tile per cell or a baked image of the whole board.
+     */
+    private void drawVisibleCells(App app) {
+        SpriteAtlas atlas = app.getAtlas();
+        int firstCol = viewX / App.CELLSIZE;
+        int firstRow = viewY / App.CELLSIZE;
+        int lastCol = Math.min(cols - 1, (viewX + viewWidth) / App.CELLSIZE);
+        int lastRow = Math.min(rows - 1, (viewY + viewHeight - App.TOPBAR) / App.CELLSIZE);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                float x = col * App.CELLSIZE;
+                float y = row * App.CELLSIZE + App.TOPBAR;
+                drawRegion(app, atlas, SpriteAtlas.TILE, x, y);
+                int region = staticRegion(layout.get(col, row));
+                if (region >= 0) {
+                    drawRegion(app, atlas, region, x, y);
+                }
+            }
+        }
+        // Holes cover two cells each way, so one starting just outside the view can still show
+        for (Hole hole : holes) {
+            if (hole.x >= firstCol - 1 && hole.x <= lastCol && hole.y >= firstRow - 1 && hole.y <= lastRow) {
+                int region = SpriteAtlas.indexOf(hole.getSpriteName());
+                if (region >= 0) {
+                    drawRegion(app, atlas, region, hole.x * App.CELLSIZE, hole.y * App.CELLSIZE + App.TOPBAR);
+                }
+            }
+        }
+    }
+
+    /**
+     * Atlas region for walls, spawners and acceleration tiles, or -1 for cells drawn as plain floor.
+     */
+    private static int staticRegion(char cell) {
+        switch (cell) {
+            case 'X': return SpriteAtlas.WALL;
+            case '1': case '2': case '3': case '4': return SpriteAtlas.WALL + (cell - '0');
+            case 'S': return SpriteAtlas.ENTRYPOINT;
+            case 'U': return SpriteAtlas.UP;
+            case 'D': return SpriteAtlas.DOWN;
+            case 'L': return SpriteAtlas.LEFT;
+            case 'R': return SpriteAtlas.RIGHT;
+            default: return -1;
+        }
+    }
+
+    private void drawRegion(App app, SpriteAtlas atlas, int region, float x, float y) {
+        if (atlas != null) {
+            atlas.draw(app, region, x, y, atlas.getWidth(region), atlas.getHeight(region));
+            return;
+        }
+        PImage image = app.getSprite(SpriteAtlas.SPRITE_NAMES[region]);
+        if (image != null) {
+            app.image(image, x, y);
+        }
+    }
+
+    /**
+     * Move the view over a board larger than the window, keeping it inside the board.
+     */
+    public void scrollBy(int dx, int dy) {
+        viewX = Math.max(0, Math.min(getPixelWidth() - viewWidth, viewX + dx));
+        viewY = Math.max(0, Math.min(getPixelHeight() - viewHeight, viewY + dy));
+    }
+
+    public int getViewX() {
+        return viewX;
+    }
+
+    public int getViewY() {
+        return viewY;
+    }
+
     public void draw(App app) {
-        // tiles
-        for (Tile tile : tiles) {
-            tile.draw(app);
+        // The board is drawn in board coordinates, shifted by the view and kept out of the top bar
+        boolean scrolled = viewX != 0 || viewY != 0;
+        if (scrolled) {
+            app.clip(0, App.TOPBAR, viewWidth, viewHeight - App.TOPBAR);
+            app.pushMatrix();
+            app.translate(-viewX, -viewY);
+        }
+
+        long start = profiler != null ? System.nanoTime() : 0;
+        // tiles never change during a level, so they are rendered once and drawn as a single image
+        if (bakeBoardStep(app, BAKE_TILES_PER_FRAME) && boardLayer != null) {
+            app.image(boardLayer, 0, 0);
+        } else if (grid == null && layout != null) {
+            drawVisibleCells(app);
+        } else {
+            for (Tile tile : tiles) {
+                if (!(tile instanceof Ball)) {
+                    tile.draw(app);
+                }
+            }
+        }
+        if (profiler != null) {
+            profiler.add(FrameProfiler.Stage.SPRITES, start);
         }
 
         //lines
@@ -367,18 +927,27 @@ public class Level {
         }
 
         //balls
+        start = profiler != null ? System.nanoTime() : 0;
         for (Ball ball : balls) {
             ball.draw(app);
         }
 
-        drawUpcomingBalls(app);
-        drawTimer(app) ;
-
         if (isEndingLevel) {
             for (YellowTile tile : yellowTiles) {
                 tile.draw(app);
             }
         }
+        if (profiler != null) {
+            profiler.add(FrameProfiler.Stage.SPRITES, start);
+        }
+
+        if (scrolled) {
+            app.popMatrix();
+            app.noClip();
+        }
+
+        drawUpcomingBalls(app);
+        drawTimer(app) ;
     }
 
     public int getLevelIndex() {
@@ -0,0 +1,62 @@
+package inkball;
+
+import processing.data.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * levelc: compiles every level of a config into a {@link CompiledLevel} file next to its layout,
+ * or into an output directory. List the compiled files in a config's "levels" array to load them.
+ */
+public class LevelCompiler {
+
+    /**
+     * The file a layout compiles to: the layout's name with its extension replaced, in the given directory.
+     */
+    public static Path outputFor(Path layoutFile, Path outputDir) {
+        String name = layoutFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String compiledName = (dot > 0 ? name.substring(0, dot) : name) + CompiledLevel.EXTENSION;
+        Path directory = outputDir != null ? outputDir : layoutFile.toAbsolutePath().getParent();
+        return directory.resolve(compiledName);
+    }
+
+    public static Path compile(JSONObject levelConfig, Path outputDir) throws IOException {
+        Path layoutFile = Paths.get(levelConfig.getString("layout"));
+        Path output = outputFor(layoutFile, outputDir);
+        try (OutputStream out = Files.newOutputStream(output)) {
+            CompiledLevel.write(levelConfig, layoutFile, out);
+        }
+        return output;
+    }
+
+    /**
+     * Usage: LevelCompiler [config.json] [output directory]
+     */
+    public static void main(String[] args) throws IOException {
+        String configPath = args.length > 0 ? args[0] : "config.json";
+        Path outputDir = args.length > 1 ? Paths.get(args[1]) : null;
+        if (outputDir != null) {
+            Files.createDirectories(outputDir);
+        }
+
+        Config config = Simulation.loadConfig(configPath);
+        for (JSONObject levelConfig : config.levelConfigs) {
+            String layout = levelConfig.getString("layout");
+            if (layout.endsWith(CompiledLevel.EXTENSION)) {
+                continue;
+            }
+            try {
+                Path output = compile(levelConfig, outputDir);
+                System.out.println(layout + " -> " + output + " (" + Files.size(output) + " bytes)");
+            } catch (LevelFormatException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+}
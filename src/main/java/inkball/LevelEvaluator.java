@@ -0,0 +1,295 @@
+package inkball;
+
+import processing.data.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Plays one level headless many times with a scripted player and reports how the games went,
+ * to tune a level's time, spawn interval and score modifiers without playing it by hand.
+ * Every game has its own {@link Level}, lines and random source, so games run in parallel without sharing state,
+ * and the report depends only on the seed, not on the number of threads.
+ */
+public class LevelEvaluator {
+
+    /**
+     * What the player does each tick. Lines added to the list are picked up by the level on its next update.
+     */
+    public interface Policy {
+        void act(Level level, List<PlayerLine> lines, RandomSource random, long tick);
+    }
+
+    public static final Policy NO_LINES = (level, lines, random, tick) -> { };
+
+    /**
+     * Every interval ticks, draw a short stroke somewhere on the board, keeping at most maxLines on it.
+     */
+    public static Policy randomStrokes(int interval, int maxLines, float tolerance) {
+        return (level, lines, random, tick) -> {
+            if (tick % interval != 0 || lines.size() >= maxLines) {
+                return;
+            }
+            PlayerLine line = new PlayerLine(level.getPixelWidth(), level.getPixelHeight(), tolerance);
+            float x = random.nextInt(level.getPixelWidth());
+            float y = App.TOPBAR + random.nextInt(level.getPixelHeight() - App.TOPBAR);
+            int dx = random.nextInt(9) - 4;
+            int dy = random.nextInt(9) - 4;
+            for (int i = 0; i < 12; i++) {
+                line.addPoint(x, y);
+                x += dx * 4 + random.nextInt(5) - 2;
+                y += dy * 4 + random.nextInt(5) - 2;
+            }
+            lines.add(line);
+        };
+    }
+
+    /**
+     * The policy with the given name: "none" or "random".
+     */
+    public static Policy policyFor(String name, Config config) {
+        switch (name) {
+            case "none": return NO_LINES;
+            case "random": return randomStrokes(Simulation.TICKS_PER_SECOND, 4, config.lineTolerance);
+            default: throw new IllegalArgumentException("Unknown policy: " + name + " (expected none or random)");
+        }
+    }
+
+    public static class GameResult {
+        public final int score;
+        public final long captures;
+        public final long wrongHoles;
+        public final boolean timedOut;
+        public final long ticks;
+
+        public GameResult(int score, long captures, long wrongHoles, boolean timedOut, long ticks) {
+            this.score = score;
+            this.captures = captures;
+            this.wrongHoles = wrongHoles;
+            this.timedOut = timedOut;
+            this.ticks = ticks;
+        }
+    }
+
+    private final Config config;
+    private final int levelIndex;
+    private final Policy policy;
+    private final long maxTicks;
+
+    /**
+     * @param maxTicks ticks after which an unfinished game counts as timed out, for levels whose timer never runs out
+     */
+    public LevelEvaluator(Config config, int levelIndex, Policy policy, long maxTicks) {
+        config.getLevelConfig(levelIndex);
+        this.config = config;
+        this.levelIndex = levelIndex;
+        this.policy = policy;
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Play one game until every ball is captured or time runs out. A finished level's score includes
+     * the point per remaining second that the end-of-level animation would add.
+     */
+    public GameResult play(long seed) {
+        RandomSource random = new RandomSource(seed);
+        Level level = new Level(config.getLevelConfig(levelIndex), config, levelIndex, random.split());
+        RandomSource playerRandom = random.split();
+        SimulationMetrics metrics = new SimulationMetrics();
+        level.setMetrics(metrics);
+        level.loadFile();
+
+        List<PlayerLine> lines = new ArrayList<>();
+        long tick = 0;
+        while (!level.isEndingLevel && level.timer != 0 && tick < maxTicks) {
+            policy.act(level, lines, playerRandom, tick);
+            level.update(lines);
+            tick++;
+        }
+        int score = level.score;
+        if (level.isEndingLevel) {
+            score += level.timer / App.FPS;
+        }
+        return new GameResult(score, metrics.captures.sum(), metrics.wrongHoleRespawns.sum(),
+                !level.isEndingLevel, tick);
+    }
+
+    /**
+     * Play the given number of games on a pool of the given size. Each game's seed is split from the given one
+     * in order, so the results come back the same whatever the pool size.
+     */
+    public Report evaluate(int games, long seed, int threads) {
+        if (games <= 0) {
+            throw new IllegalArgumentException("Need at least one game: " + games);
+        }
+        RandomSource seeds = new RandomSource(seed);
+        long[] gameSeeds = new long[games];
+        for (int i = 0; i < games; i++) {
+            gameSeeds[i] = seeds.split().getSeed();
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<GameResult> results = pool.submit(() -> IntStream.range(0, games).parallel()
+                    .mapToObj(i -> play(gameSeeds[i]))
+                    .collect(Collectors.toList())).get();
+            return new Report(results, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Evaluation was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Totals and distributions over a batch of games.
+     */
+    public static class Report {
+        public final List<GameResult> results;
+        public final long elapsedNanos;
+
+        public Report(List<GameResult> results, long elapsedNanos) {
+            this.results = results;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getTotalTicks() {
+            return results.stream().mapToLong(result -> result.ticks).sum();
+        }
+
+        public long getTimeouts() {
+            return results.stream().filter(result -> result.timedOut).count();
+        }
+
+        public long getCaptures() {
+            return results.stream().mapToLong(result -> result.captures).sum();
+        }
+
+        public long getWrongHoles() {
+            return results.stream().mapToLong(result -> result.wrongHoles).sum();
+        }
+
+        /**
+         * Fraction of captures that went into a hole that scores them, or 0 if nothing was captured.
+         */
+        public double getCaptureRate() {
+            long captures = getCaptures();
+            return captures == 0 ? 0 : (captures - getWrongHoles()) / (double) captures;
+        }
+
+        /**
+         * The score that the given fraction of games reached or fell below.
+         */
+        public int scorePercentile(double fraction) {
+            int[] scores = results.stream().mapToInt(result -> result.score).sorted().toArray();
+            int rank = (int) Math.ceil(fraction * scores.length) - 1;
+            return scores[Math.max(0, Math.min(scores.length - 1, rank))];
+        }
+
+        public double getMeanScore() {
+            return results.stream().mapToInt(result -> result.score).average().orElse(0);
+        }
+
+        public double getTicksPerSecond() {
+            return getTotalTicks() / Math.max(1e-9, elapsedNanos / 1e9);
+        }
+
+        public String format() {
+            int games = results.size();
+            return String.format(Locale.ROOT,
+                    "Games:        %d%n"
+                    + "Timeouts:     %d (%.1f%%)%n"
+                    + "Captures:     %.2f per game, %.1f%% into a scoring hole%n"
+                    + "Wrong holes:  %.2f per game%n"
+                    + "Score:        mean %.1f, min %d, p10 %d, p50 %d, p90 %d, max %d%n"
+                    + "Ticks:        %d (%.0f per second)%n",
+                    games,
+                    getTimeouts(), 100.0 * getTimeouts() / games,
+                    getCaptures() / (double) games, 100 * getCaptureRate(),
+                    getWrongHoles() / (double) games,
+                    getMeanScore(), scorePercentile(0), scorePercentile(0.1), scorePercentile(0.5),
+                    scorePercentile(0.9), scorePercentile(1),
+                    getTotalTicks(), getTicksPerSecond());
+        }
+    }
+
+    /**
+     * Override a value in a level's config entry, such as "spawn_interval=5" or "time=60".
+     */
+    static void override(JSONObject levelConfig, String assignment) {
+        int equals = assignment.indexOf('=');
+        if (equals <= 0) {
+            throw new IllegalArgumentException("Expected key=value, not " + assignment);
+        }
+        String key = assignment.substring(0, equals);
+        String value = assignment.substring(equals + 1);
+        try {
+            if (value.contains(".")) {
+                levelConfig.setDouble(key, Double.parseDouble(value));
+            } else {
+                levelConfig.setInt(key, Integer.parseInt(value));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number for " + key + ", not " + value);
+        }
+    }
+
+    /**
+     * Usage: LevelEvaluator [--config config.json] [--level 1] [--games 1000] [--policy none|random]
+     *                       [--threads n] [--seed n] [--set key=value]...
+     * Levels are numbered from 1, as in the game. Each --set overrides a value of the level's config entry.
+     */
+    public static void main(String[] args) throws IOException {
+        String configPath = "config.json";
+        int level = 1;
+        int games = 1000;
+        String policyName = "none";
+        int threads = Runtime.getRuntime().availableProcessors();
+        Long seed = null;
+        List<String> overrides = new ArrayList<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--config": configPath = value; break;
+                case "--level": level = Integer.parseInt(value); break;
+                case "--games": games = Integer.parseInt(value); break;
+                case "--policy": policyName = value; break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--set": overrides.add(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+        }
+
+        Config config = Simulation.loadConfig(configPath);
+        JSONObject levelConfig = config.getLevelConfig(level - 1);
+        for (String assignment : overrides) {
+            override(levelConfig, assignment);
+        }
+        long runSeed = seed != null ? seed : config.seed;
+        // Ten times the level's time, so a level whose timer is off still ends
+        long maxTicks = 10L * Math.max(1, levelConfig.getInt("time")) * Simulation.TICKS_PER_SECOND;
+
+        LevelEvaluator evaluator = new LevelEvaluator(config, level - 1, policyFor(policyName, config), maxTicks);
+        System.out.println("Level " + level + " (" + levelConfig.getString("layout") + "), policy " + policyName
+                + ", seed " + runSeed + ", " + threads + " threads" + (overrides.isEmpty() ? "" : ", " + String.join(" ", overrides)));
+        System.out.print(evaluator.evaluate(games, runSeed, threads).format());
+    }
+}
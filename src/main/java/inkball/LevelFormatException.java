@@ -0,0 +1,31 @@
+package inkball;
+
+/**
+ * A layout file that does not follow the level grammar. Lines and columns count from 1.
+ */
+public class LevelFormatException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String source;
+    private final int line;
+    private final int column;
+
+    public LevelFormatException(String source, int line, int column, String detail) {
+        super(source + ":" + line + ":" + column + ": " + detail);
+        this.source = source;
+        this.line = line;
+        this.column = column;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+}
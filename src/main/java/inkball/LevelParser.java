@@ -0,0 +1,224 @@
+package inkball;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+/**
+ * Single-pass reader for layout files. Each line is a row and each character a cell:
+ * <pre>
+ *   ' '              floor
+ *   'X', '1' - '4'   wall, grey or coloured
+ *   'S'              spawner
+ *   'U' 'D' 'L' 'R'  acceleration tile
+ *   'H' colour       hole, two cells wide; the two cells below it must be floor
+ *   'B' colour       ball on two floor cells
+ * </pre>
+ * where a colour is '0' to '4'. Every row must be as wide as the first; blank lines at the end are ignored.
+ * Entities are handed to a {@link Handler} as they are read, and the layout is built in chunks as it goes.
+ */
+public class LevelParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Receives the entities of a layout in reading order. Columns and rows count from 0.
+     */
+    public interface Handler {
+        default void floor(int col, int row) {
+        }
+
+        default void wall(int col, int row, char color) {
+        }
+
+        default void spawner(int col, int row) {
+        }
+
+        default void acceleration(int col, int row, char direction) {
+        }
+
+        default void hole(int col, int row, char color) {
+        }
+
+        default void ball(int col, int row, char color) {
+        }
+    }
+
+    private final String source;
+    private final Handler handler;
+    private final ChunkedLayout.Builder layout = new ChunkedLayout.Builder();
+
+    private int row;
+    private int col;
+    private int cols = -1;
+    private int blankLines;
+    // Start of a two-character token waiting for its colour, or 0
+    private char pending;
+    // Columns of the current row and the next one covered by the lower half of a hole
+    private BitSet covered = new BitSet();
+    private BitSet coveredNext = new BitSet();
+    // First covered column of the current row, so floor before it skips the covered lookup
+    private int coveredFrom = Integer.MAX_VALUE;
+
+    private LevelParser(String source, Handler handler) {
+        this.source = source;
+        this.handler = handler;
+    }
+
+    /**
+     * Read a layout file. Layouts are ASCII, so the bytes are taken as characters without decoding.
+     */
+    public static ChunkedLayout parse(Path file, Handler handler) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            LevelParser parser = new LevelParser(file.toString(), handler);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                for (int i = 0; i < count; i++) {
+                    parser.accept((char) (buffer[i] & 0xFF));
+                }
+            }
+            return parser.finish();
+        }
+    }
+
+    /**
+     * Read a layout to the end. The reader is not closed.
+     * @param source name used in error messages
+     * @throws LevelFormatException if the layout breaks the grammar
+     */
+    public static ChunkedLayout parse(Reader reader, String source, Handler handler) throws IOException {
+        return new LevelParser(source, handler).read(reader);
+    }
+
+    private ChunkedLayout read(Reader reader) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            for (int i = 0; i < count; i++) {
+                accept(buffer[i]);
+            }
+        }
+        return finish();
+    }
+
+    private void accept(char c) {
+        if (c == '\n') {
+            endLine();
+        } else if (c != '\r') {
+            cell(c);
+        }
+    }
+
+    private ChunkedLayout finish() {
+        if (col > 0 || pending != 0) {
+            endLine();
+        }
+        if (!covered.isEmpty()) {
+            throw error(row, covered.nextSetBit(0) + 1, "Hole runs off the bottom of the board");
+        }
+        if (row == 0) {
+            throw error(1, 1, "Layout is empty");
+        }
+        return layout.build(cols, row);
+    }
+
+    private void cell(char c) {
+        if (c == ' ' && pending == 0 && coveredFrom > col && blankLines == 0) {
+            // Plain floor, by far the most common cell, needs nothing else checked or stored
+            if (cols >= 0 && col >= cols) {
+                throw error(row + 1, col + 1, "Row is wider than the first row, which has " + cols + " cells");
+            }
+            handler.floor(col, row);
+            col++;
+            return;
+        }
+        if (blankLines > 0) {
+            throw error(row + 1, 1, "Blank line inside the layout");
+        }
+        if (cols >= 0 && col >= cols) {
+            throw error(row + 1, col + 1, "Row is wider than the first row, which has " + cols + " cells");
+        }
+        if (covered.get(col)) {
+            if (c != ' ') {
+                throw error(row + 1, col + 1, "Cell '" + c + "' is under the hole above it");
+            }
+            if (pending != 0) {
+                throw error(row + 1, col + 1, "Hole overlaps the hole above it");
+            }
+            col++;
+            return;
+        }
+        if (pending != 0) {
+            if (c < '0' || c > '4') {
+                throw error(row + 1, col + 1, "Expected a colour from 0 to 4 after '" + pending + "', found '" + c + "'");
+            }
+            int start = col - 1;
+            if (pending == 'H') {
+                handler.hole(start, row, c);
+                coveredNext.set(start, start + 2);
+            } else {
+                handler.floor(start, row);
+                handler.ball(start, row, c);
+                handler.floor(col, row);
+            }
+            pending = 0;
+            col++;
+            return;
+        }
+        switch (c) {
+            case ' ':
+                handler.floor(col, row);
+                break;
+            case 'X':
+                handler.wall(col, row, '0');
+                break;
+            case '1': case '2': case '3': case '4':
+                handler.wall(col, row, c);
+                break;
+            case 'S':
+                handler.spawner(col, row);
+                break;
+            case 'U': case 'D': case 'L': case 'R':
+                handler.acceleration(col, row, c);
+                break;
+            case 'H': case 'B':
+                pending = c;
+                break;
+            default:
+                throw error(row + 1, col + 1, "Unknown cell '" + c + "'");
+        }
+        if (c != ' ') {
+            layout.set(col, row, c);
+        }
+        col++;
+    }
+
+    private void endLine() {
+        if (pending != 0) {
+            throw error(row + 1, col + 1, "Expected a colour from 0 to 4 after '" + pending + "', found end of line");
+        }
+        if (col == 0) {
+            blankLines++;
+            return;
+        }
+        if (cols < 0) {
+            cols = col;
+        } else if (col < cols) {
+            throw error(row + 1, col + 1, "Row has " + col + " cells but the first row has " + cols);
+        }
+        BitSet swap = covered;
+        covered = coveredNext;
+        coveredNext = swap;
+        coveredNext.clear();
+        coveredFrom = covered.isEmpty() ? Integer.MAX_VALUE : covered.nextSetBit(0);
+        row++;
+        col = 0;
+    }
+
+    private LevelFormatException error(int line, int column, String detail) {
+        return new LevelFormatException(source, line, column, detail);
+    }
+}
@@ -0,0 +1,86 @@
+package inkball;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds and loads levels off the animation thread, so a level transition only has to swap in one that is ready.
+ * A level is fixed by its index and seed alone, so loading it early gives exactly the level a load on demand would.
+ */
+public class LevelPreloader {
+    private final Config config;
+    private final Executor executor;
+
+    public LevelPreloader(Config config, Executor executor) {
+        this.config = config;
+        this.executor = executor;
+    }
+
+    /**
+     * A single daemon thread for loading levels, so an unfinished preload never keeps the game running.
+     * The thread exits when it has been idle for a while, so simulations that are dropped do not leave threads behind.
+     */
+    public static ExecutorService backgroundExecutor() {
+        return backgroundExecutor(1);
+    }
+
+    /**
+     * Like {@link #backgroundExecutor()}, with the given number of threads for loading levels of many games at once.
+     */
+    public static ExecutorService backgroundExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "level-preloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Start loading a level. Nothing in the returned level is touched again until {@link #take} hands it over.
+     */
+    public Future<Level> load(int index, long seed) {
+        return CompletableFuture.supplyAsync(() -> {
+            Level level = new Level(config.getLevelConfig(index), config, index, new RandomSource(seed));
+            level.loadFile();
+            return level;
+        }, executor);
+    }
+
+    /**
+     * The loaded level, waiting for it if it is not ready yet. A failed load is rethrown as it would have been inline.
+     */
+    public static Level take(Future<Level> pending) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return pending.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package inkball;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parts of a {@link Level} that change as it is played: balls, the ball queue, timers, score, the
+ * end-of-level animation, the level's random state and the player's lines. Walls, holes, spawners and the
+ * layout never change during a level, so they stay shared with the level and are not copied.
+ *
+ * A snapshot can be filled again and again; its arrays only grow, so a bot that checkpoints every move
+ * allocates nothing once its snapshots are big enough.
+ */
+public class LevelSnapshot {
+    Level level;
+
+    int timer;
+    int spawnTimer;
+    int score;
+    boolean isEndingLevel;
+    int remainingTime;
+    int animationTimer;
+    boolean isAnimationComplete;
+    boolean isMovingBalls;
+    int movementCounter;
+    long randomState;
+    // Tiles only ever grow, by the balls spawned after the snapshot
+    int tileCount;
+
+    int ballCount;
+    float[] posX = new float[0];
+    float[] posY = new float[0];
+    float[] velX = new float[0];
+    float[] velY = new float[0];
+    float[] radius = new float[0];
+    float[] originalRadius = new float[0];
+    char[] color = new char[0];
+    boolean[] captured = new boolean[0];
+    Hole[] attractingHole = new Hole[0];
+    Ball[] handles = new Ball[0];
+
+    final List<String> ballQueue = new ArrayList<>();
+    final List<String> displayBall = new ArrayList<>();
+    float[] displayOffsets = new float[0];
+    // Corners of the end-of-level animation, x0, y0, x1, y1, or null before it starts
+    int[] yellowTiles;
+
+    // Lines are never changed once drawn, so the same line objects are kept
+    final List<PlayerLine> lines = new ArrayList<>();
+
+    /**
+     * The level this was taken from; a snapshot can only be restored into that level.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    public int getBallCount() {
+        return ballCount;
+    }
+
+    public int getTimer() {
+        return timer;
+    }
+
+    public int getScore() {
+        return score;
+    }
+}
@@ -3,71 +3,131 @@ package inkball;
 import processing.core.PVector;
 import processing.core.PApplet;
 
+/**
+ * One segment of a player line. Endpoints, length and normal are plain floats worked out once and never
+ * changed, so collision tests read them without any allocation; the PVector getters return fresh copies.
+ */
 public class Line {
-    private PVector start;
-    private PVector end;
-    private PVector normal;
+    private final float startX;
+    private final float startY;
+    private final float endX;
+    private final float endY;
+    private final float length;
+    // Dots have no direction of their own; theirs is worked out from the ball position when asked
+    private final float normalX;
+    private final float normalY;
+
+    // Set when the segment belongs to a PlayerLine, used to order collisions
+    PlayerLine owner;
+    int index;
 
     public Line(PVector start, PVector end) {
-        this.start = start;
-        this.end = end;
-        calculateNormal(null);
+        this.startX = start.x;
+        this.startY = start.y;
+        this.endX = end.x;
+        this.endY = end.y;
+        float dx = endX - startX;
+        float dy = endY - startY;
+        this.length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            normalX = 0;
+            normalY = 1;
+        } else {
+            float[] normal = new float[2];
+            normalize(-dy, dx, normal);
+            normalX = normal[0];
+            normalY = normal[1];
+        }
     }
 
-    private void calculateNormal(PVector ballPosition) {
-        PVector direction = PVector.sub(end, start);
-        if (direction.mag() == 0) {
-            // For zero-length lines (dots), set an arbitrary normal
-//            normal = PVector.sub(ballPosition, start).normalize();
-            if (ballPosition != null) {
-                normal = PVector.sub(ballPosition, start).normalize();
-            } else {
-                // If no ball position is provided, set a default normal
-                normal = new PVector(0, 1);
-            }
-        } else {
-            normal = new PVector(-direction.y, direction.x).normalize();
+    /**
+     * Normalise the direction into out the same way PVector.normalize() does.
+     */
+    static void normalize(float x, float y, float[] out) {
+        float magnitude = (float) Math.sqrt(x * x + y * y);
+        if (magnitude != 0 && magnitude != 1) {
+            x /= magnitude;
+            y /= magnitude;
         }
+        out[0] = x;
+        out[1] = y;
+    }
+
+    public boolean isDot() {
+        return length == 0;
     }
 
     public float distanceToPoint(PVector point) {
-        if (start.equals(end)) {
-            return PVector.dist(start, point);
-        }
-        PVector AP = PVector.sub(point, start);
-        PVector AB = PVector.sub(end, start);
-        float projection = AP.dot(AB) / AB.magSq();
-        projection = PApplet.constrain(projection, 0, 1);
-        PVector closest = PVector.add(start, PVector.mult(AB, projection));
-        return PVector.dist(point, closest);
+        return distanceToPoint(point.x, point.y);
+    }
+
+    public float distanceToPoint(float x, float y) {
+        return Hitbox.distanceToSegment(x, y, startX, startY, endX, endY);
     }
 
     public void draw(PApplet app) {
-        if (start.equals(end)) {
+        if (isDot()) {
             // Draw a point for zero-length lines (dots)
-            app.point(start.x, start.y);
+            app.point(startX, startY);
         } else {
-            app.line(start.x, start.y, end.x, end.y);
+            app.line(startX, startY, endX, endY);
         }
     }
 
     public PVector getStart() {
-        return start.copy();
+        return new PVector(startX, startY);
     }
     public PVector getEnd() {
-        return end.copy();
+        return new PVector(endX, endY);
     }
     public PVector getNormal(PVector ballPosition) {
-        if (start.equals(end)) {
-            // Recalculate normal for dots based on current ball position
-            calculateNormal(ballPosition);
+        if (ballPosition == null) {
+            return new PVector(normalX, normalY);
         }
-        return normal.copy();
+        float[] normal = new float[2];
+        normalAt(ballPosition.x, ballPosition.y, normal);
+        return new PVector(normal[0], normal[1]);
     }
+
+    /**
+     * Write the normal a ball at (x, y) bounces off into out. For a dot it points from the dot to the ball.
+     */
+    void normalAt(float x, float y, float[] out) {
+        if (isDot()) {
+            normalize(x - startX, y - startY, out);
+        } else {
+            out[0] = normalX;
+            out[1] = normalY;
+        }
+    }
+    float getStartX() {
+        return startX;
+    }
+    float getStartY() {
+        return startY;
+    }
+    float getEndX() {
+        return endX;
+    }
+    float getEndY() {
+        return endY;
+    }
+
+    /**
+     * Whether this segment comes before the other in drawing order: earlier line first,
+     * then earlier segment within the same line.
+     */
+    boolean precedes(Line other) {
+        if (owner != other.owner) {
+            return owner.getOrder() < other.owner.getOrder();
+        }
+        return index < other.index;
+    }
+
     public PVector getMidpoint() {
-        return PVector.add(start, end).div(2);
+        return new PVector((startX + endX) / 2, (startY + endY) / 2);
     }
     public float length() {
-        return PVector.dist(start, end);
+        return length;
     }
 }
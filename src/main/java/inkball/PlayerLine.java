@@ -3,24 +3,72 @@ package inkball;
 import processing.core.PApplet;
 import processing.core.PVector;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A line drawn by the player. Mouse samples are simplified as they arrive: the last segment is stretched
+ * to each new sample for as long as every sample it replaces stays within the tolerance of it,
+ * so a slow drag becomes a few long segments instead of hundreds of tiny ones.
+ */
 public class PlayerLine {
+    // Samples further than this from the simplified stroke start a new segment
+    public static final float DEFAULT_TOLERANCE = 1.0f;
+    // Split of the tolerance between distance across the segment and overshoot past its end, 0.8^2 + 0.6^2 = 1
+    private static final float ACROSS = 0.8f;
+    private static final float BEYOND = 0.6f;
+    private static final double ANGLE_EPSILON = 1e-6;
+    // Floats per segment in the packed point array
+    public static final int POINT_STRIDE = 4;
+
     private List<Line> segments;
+    private final List<Line> segmentsView;
+    // The segments' endpoints packed in drawing order, so whole-line scans read an array instead of objects
+    private float[] points = new float[8 * POINT_STRIDE];
+    private SegmentGrid grid;
+    private long order;
     private static final float LINE_THICKNESS = 10;
     private static final int LINE_COLOR = 0xFF000000;
 
     private static final float MIN_X = 0;
     private static final float MIN_Y = App.TOPBAR;
-    private static final float MAX_X = App.WIDTH;
-    private static final float MAX_Y = App.HEIGHT;
+    private final float maxX;
+    private final float maxY;
+    private final float tolerance;
+    // Directions from the last segment's start, relative to its first sample, that keep every sample it
+    // covers close enough; and the furthest of those samples from the start
+    private float referenceX;
+    private float referenceY;
+    private double minAngle;
+    private double maxAngle;
+    private float maxDistance;
 
     public PlayerLine() {
+        this(App.WIDTH, App.HEIGHT);
+    }
+
+    /**
+     * A line whose points must lie on a board with the given right and bottom edges in pixels.
+     */
+    public PlayerLine(float maxX, float maxY) {
+        this(maxX, maxY, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param tolerance how far in pixels a sample may end up from the simplified line;
+     *                  0 only merges samples that are in a straight line, and a negative value keeps every sample
+     */
+    public PlayerLine(float maxX, float maxY, float tolerance) {
         segments = new ArrayList<>();
+        segmentsView = Collections.unmodifiableList(segments);
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.tolerance = tolerance;
     }
 
     public void addPoint(float x, float y) {
-        if (x < MIN_X || x > MAX_X || y < MIN_Y || y > MAX_Y) {
+        if (x < MIN_X || x > maxX || y < MIN_Y || y > maxY) {
             return;
         }
 
@@ -31,15 +79,138 @@ public class PlayerLine {
             PVector lastPoint = lastSegment.getEnd();
 
             // Check if the new point is different from the last point
-            if (!newPoint.equals(lastPoint)) {
-                segments.add(new Line(lastPoint, newPoint));
+            if (newPoint.equals(lastPoint)) {
+                return;
+            }
+            // The first segment is the starting dot, so only later ones are stretched
+            if (segments.size() > 1 && canStretch(lastSegment, x, y)) {
+                replaceLastSegment(new Line(lastSegment.getStart(), newPoint));
+            } else {
+                addSegment(new Line(lastPoint, newPoint));
+                referenceX = x - lastPoint.x;
+                referenceY = y - lastPoint.y;
+                minAngle = Double.NEGATIVE_INFINITY;
+                maxAngle = Double.POSITIVE_INFINITY;
+                maxDistance = 0;
             }
+            Line stretching = segments.get(segments.size() - 1);
+            narrow(stretching.getStartX(), stretching.getStartY(), x, y);
         } else {
             // For the first point, create a segment with the same start and end point
-            segments.add(new Line(newPoint, newPoint));
+            addSegment(new Line(newPoint, newPoint));
         }
     }
 
+    /**
+     * Whether the last segment can be moved to end at (x, y) with every sample it covers still within the tolerance.
+     * Each covered sample allows the end a cone of directions, so only the cones' overlap has to be kept.
+     */
+    private boolean canStretch(Line last, float x, float y) {
+        if (tolerance < 0) {
+            return false;
+        }
+        float dx = x - last.getStartX();
+        float dy = y - last.getStartY();
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+        if (distance < maxDistance - tolerance * BEYOND) {
+            // The end would fall short of a sample by more than the tolerance allows
+            return false;
+        }
+        double angle = angleFromReference(dx, dy);
+        return angle >= minAngle - ANGLE_EPSILON && angle <= maxAngle + ANGLE_EPSILON;
+    }
+
+    /**
+     * Limit the directions the last segment can be stretched in to those that stay close to the sample (x, y).
+     */
+    private void narrow(float startX, float startY, float x, float y) {
+        float dx = x - startX;
+        float dy = y - startY;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+        maxDistance = Math.max(maxDistance, distance);
+        float across = tolerance * ACROSS;
+        if (distance <= across) {
+            return;
+        }
+        double angle = angleFromReference(dx, dy);
+        double spread = Math.asin(across / distance);
+        minAngle = Math.max(minAngle, angle - spread);
+        maxAngle = Math.min(maxAngle, angle + spread);
+    }
+
+    private double angleFromReference(float dx, float dy) {
+        return Math.atan2(referenceX * dy - referenceY * dx, referenceX * dx + referenceY * dy);
+    }
+
+    private void replaceLastSegment(Line segment) {
+        int last = segments.size() - 1;
+        if (grid != null) {
+            grid.remove(segments.get(last));
+        }
+        segment.owner = this;
+        segment.index = last;
+        segments.set(last, segment);
+        pack(last, segment);
+        if (grid != null) {
+            grid.insert(segment);
+        }
+    }
+
+    private void addSegment(Line segment) {
+        segment.owner = this;
+        segment.index = segments.size();
+        segments.add(segment);
+        pack(segment.index, segment);
+        if (grid != null) {
+            grid.insert(segment);
+        }
+    }
+
+    private void pack(int index, Line segment) {
+        int p = index * POINT_STRIDE;
+        if (p >= points.length) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[p] = segment.getStartX();
+        points[p + 1] = segment.getStartY();
+        points[p + 2] = segment.getEndX();
+        points[p + 3] = segment.getEndY();
+    }
+
+    /**
+     * Index this line's segments in the given grid and keep them indexed as points are added.
+     */
+    public void attach(SegmentGrid newGrid) {
+        if (grid == newGrid) {
+            return;
+        }
+        detach();
+        grid = newGrid;
+        order = newGrid.register(this);
+        for (Line segment : segments) {
+            newGrid.insert(segment);
+        }
+    }
+
+    public void detach() {
+        if (grid == null) {
+            return;
+        }
+        for (Line segment : segments) {
+            grid.remove(segment);
+        }
+        grid.unregister(this);
+        grid = null;
+    }
+
+    public SegmentGrid getGrid() {
+        return grid;
+    }
+
+    long getOrder() {
+        return order;
+    }
+
     public void draw(PApplet app) {
         app.stroke(LINE_COLOR);
         app.strokeWeight(LINE_THICKNESS);
@@ -49,17 +220,36 @@ public class PlayerLine {
     }
 
     public boolean intersects(float x, float y) {
-        PVector point = new PVector(x, y);
-        for (Line segment : segments) {
-            if (segment.distanceToPoint(point) < LINE_THICKNESS) {
+        for (int i = 0; i < segments.size(); i++) {
+            int p = i * POINT_STRIDE;
+            if (Hitbox.distanceToSegment(x, y, points[p], points[p + 1], points[p + 2], points[p + 3]) < LINE_THICKNESS) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * A read-only view of the segments in drawing order. It is not a copy, so it follows points added later.
+     */
     public List<Line> getSegments() {
-        return new ArrayList<>(segments);
+        return segmentsView;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public Line getSegment(int index) {
+        return segments.get(index);
+    }
+
+    /**
+     * Start and end of each segment as x1, y1, x2, y2, {@link #POINT_STRIDE} floats per segment.
+     * Not a copy, and only the first {@link #getSegmentCount()} segments are meaningful; do not modify.
+     */
+    float[] getPackedPoints() {
+        return points;
     }
 
 }
@@ -0,0 +1,89 @@
+package inkball;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Seeded source of game randomness. The same seed always gives the same spawns and ball directions.
+ * Not thread-safe: give each level its own source with {@link #split()}.
+ *
+ * The generator is the SplitMix64 of {@link java.util.SplittableRandom}, drawn exactly as it draws, but with
+ * its single word of state in reach so a level checkpoint can save and restore it.
+ */
+public class RandomSource {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    private long state;
+
+    public RandomSource(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    /**
+     * A source with a fresh seed, for when no seed has been chosen.
+     */
+    public static RandomSource unseeded() {
+        return new RandomSource(ThreadLocalRandom.current().nextLong());
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Where the source is in its sequence; a source set back to this state draws the same values again.
+     */
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1) {
+            // Reject the top of the range that would favour small values
+        }
+        return r;
+    }
+
+    public boolean nextBoolean() {
+        return nextInt() < 0;
+    }
+
+    /**
+     * A new source seeded from this one, so its sequence is fixed by this seed and how many draws came before.
+     */
+    public RandomSource split() {
+        return new RandomSource(mix64(nextState()));
+    }
+
+    private int nextInt() {
+        return mix32(nextState());
+    }
+
+    private long nextState() {
+        return state += GOLDEN_GAMMA;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+}
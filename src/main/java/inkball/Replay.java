@@ -0,0 +1,138 @@
+package inkball;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Plays an {@link InputRecorder} log back into a headless {@link Simulation} as fast as it will run.
+ * The simulation is seeded from the log, so it follows the same path as the recorded session.
+ */
+public class Replay {
+    private final DataInputStream in;
+    private final Simulation simulation;
+    private final long seed;
+
+    /**
+     * Read the log header and set up a simulation with the recorded seed. The config's seed is overwritten.
+     */
+    public Replay(Config config, InputStream input) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != InputRecorder.MAGIC) {
+            throw new IOException("Not an input recording");
+        }
+        int version = in.readUnsignedByte();
+        if (version != InputRecorder.VERSION) {
+            throw new IOException("Unsupported recording version: " + version);
+        }
+        this.seed = in.readLong();
+        config.seed = seed;
+        this.simulation = new Simulation(config);
+    }
+
+    /**
+     * Apply every recorded event at its tick, running the ticks in between.
+     * @return the number of events applied
+     */
+    public int run() throws IOException {
+        long tick = 0;
+        int events = 0;
+        while (true) {
+            int type = in.read();
+            if (type == -1) {
+                // The session ended without finishing the log; stop at the last event
+                break;
+            }
+            tick += readVarLong();
+            simulation.run(tick - simulation.getTick());
+            if (type == InputRecorder.END) {
+                break;
+            }
+            apply(type);
+            events++;
+        }
+        return events;
+    }
+
+    private void apply(int type) throws IOException {
+        switch (type) {
+            case InputRecorder.MOUSE_PRESSED:
+            case InputRecorder.MOUSE_DRAGGED:
+            case InputRecorder.MOUSE_RELEASED:
+                int button = in.readUnsignedByte();
+                float x = readPosition();
+                float y = readPosition();
+                if (type == InputRecorder.MOUSE_PRESSED) {
+                    simulation.mousePressed(button, x, y);
+                } else if (type == InputRecorder.MOUSE_DRAGGED) {
+                    simulation.mouseDragged(button, x, y);
+                } else {
+                    simulation.mouseReleased(button);
+                }
+                break;
+            case InputRecorder.KEY_PRESSED:
+                char key = in.readChar();
+                // Pausing only stops the clock, which the recorded ticks already reflect
+                if (key == 'r' || key == 'R') {
+                    simulation.restartLevel();
+                }
+                break;
+            default:
+                throw new IOException("Unknown event type: " + type);
+        }
+    }
+
+    private int readPosition() throws IOException {
+        int zigzag = (int) readVarLong();
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Replay a recording headless and print where it ended up.
+     * Usage: Replay recording.inkr [config.json]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: Replay <recording> [config]");
+            System.exit(2);
+        }
+        String configPath = args.length > 1 ? args[1] : "config.json";
+
+        try (InputStream input = new FileInputStream(args[0])) {
+            Replay replay = new Replay(Simulation.loadConfig(configPath), input);
+            long start = System.nanoTime();
+            int events = replay.run();
+            long elapsed = System.nanoTime() - start;
+
+            Simulation simulation = replay.getSimulation();
+            System.out.println("Seed:       " + replay.getSeed());
+            System.out.println("Events:     " + events);
+            System.out.println("Ticks:      " + simulation.getTick());
+            System.out.println("Level:      " + (simulation.getLevelIndex() + 1));
+            System.out.println("Score:      " + simulation.getTotalScore());
+            System.out.printf("Replayed in %.1f ms%n", elapsed / 1e6);
+        }
+    }
+}
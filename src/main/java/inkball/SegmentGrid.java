@@ -0,0 +1,252 @@
+package inkball;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid of player-line segments, bucketed by board cell.
+ * Each segment is stored in every cell its collision reach overlaps, so the segments that can
+ * collide with a ball are exactly the ones in the bucket under the ball's next position.
+ * Buckets are kept in the same chunks as {@link ChunkedLayout}, and a chunk is only allocated once a
+ * segment reaches it, so a large board costs memory for where lines are drawn rather than for its area.
+ */
+public class SegmentGrid {
+    private static final int SHIFT = ChunkedLayout.CHUNK_SHIFT;
+    private static final int MASK = ChunkedLayout.CHUNK_SIZE - 1;
+
+    private final int cols;
+    private final int rows;
+    private final int chunkCols;
+    private final List<Line>[][] chunks;
+    private final Map<PlayerLine, Boolean> attachedLines = new IdentityHashMap<>();
+    private long nextOrder;
+    private SimulationMetrics metrics;
+
+    public SegmentGrid(int width, int height) {
+        this.cols = Math.max(1, (width + App.CELLSIZE - 1) / App.CELLSIZE);
+        this.rows = Math.max(1, (height + App.CELLSIZE - 1) / App.CELLSIZE);
+        this.chunkCols = ChunkedLayout.chunkCount(cols);
+        this.chunks = newChunkTable(chunkCols * ChunkedLayout.chunkCount(rows));
+    }
+
+    // Java cannot create arrays of a generic type, so these create raw ones and cast them
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Line>[][] newChunkTable(int chunkCount) {
+        return new List[chunkCount][];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Line>[] newChunk() {
+        return new List[ChunkedLayout.CHUNK_SIZE * ChunkedLayout.CHUNK_SIZE];
+    }
+
+    /**
+     * Number of chunks that have held a segment.
+     */
+    public int getPopulatedChunks() {
+        int populated = 0;
+        for (List<Line>[] chunk : chunks) {
+            if (chunk != null) {
+                populated++;
+            }
+        }
+        return populated;
+    }
+
+    private static int cellInChunk(int c, int r) {
+        return ((r & MASK) << SHIFT) | (c & MASK);
+    }
+
+    /**
+     * The bucket for a cell, or null if nothing has been stored there.
+     */
+    private List<Line> bucket(int c, int r) {
+        List<Line>[] chunk = chunks[(r >>> SHIFT) * chunkCols + (c >>> SHIFT)];
+        return chunk == null ? null : chunk[cellInChunk(c, r)];
+    }
+
+    private List<Line> createBucket(int c, int r) {
+        int index = (r >>> SHIFT) * chunkCols + (c >>> SHIFT);
+        if (chunks[index] == null) {
+            chunks[index] = newChunk();
+        }
+        List<Line>[] chunk = chunks[index];
+        int cell = cellInChunk(c, r);
+        if (chunk[cell] == null) {
+            chunk[cell] = new ArrayList<>(4);
+        }
+        return chunk[cell];
+    }
+
+    /**
+     * Make sure the grid holds exactly the given lines, attaching new ones in list order.
+     */
+    public void sync(List<PlayerLine> playerLines) {
+        for (int i = 0; i < playerLines.size(); i++) {
+            PlayerLine line = playerLines.get(i);
+            if (line.getGrid() != this) {
+                line.attach(this);
+            }
+        }
+        if (attachedLines.size() != playerLines.size()) {
+            // Lines were removed from the list without being detached
+            Map<PlayerLine, Boolean> present = new IdentityHashMap<>();
+            for (PlayerLine line : playerLines) {
+                present.put(line, Boolean.TRUE);
+            }
+            for (PlayerLine line : new ArrayList<>(attachedLines.keySet())) {
+                if (!present.containsKey(line)) {
+                    line.detach();
+                }
+            }
+        }
+    }
+
+    long register(PlayerLine line) {
+        attachedLines.put(line, Boolean.TRUE);
+        return nextOrder++;
+    }
+
+    void unregister(PlayerLine line) {
+        attachedLines.remove(line);
+    }
+
+    /**
+     * Count collision tests into the given metrics, or pass null to stop.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getLineCount() {
+        return attachedLines.size();
+    }
+
+    void insert(Line segment) {
+        float reach = Hitbox.collisionReach(segment.length());
+        int minCol = column(Math.min(segment.getStartX(), segment.getEndX()) - reach);
+        int maxCol = column(Math.max(segment.getStartX(), segment.getEndX()) + reach);
+        int minRow = row(Math.min(segment.getStartY(), segment.getEndY()) - reach);
+        int maxRow = row(Math.max(segment.getStartY(), segment.getEndY()) + reach);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                createBucket(c, r).add(segment);
+            }
+        }
+    }
+
+    void remove(Line segment) {
+        float reach = Hitbox.collisionReach(segment.length());
+        int minCol = column(Math.min(segment.getStartX(), segment.getEndX()) - reach);
+        int maxCol = column(Math.max(segment.getStartX(), segment.getEndX()) + reach);
+        int minRow = row(Math.min(segment.getStartY(), segment.getEndY()) - reach);
+        int maxRow = row(Math.max(segment.getStartY(), segment.getEndY()) + reach);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                List<Line> bucket = bucket(c, r);
+                if (bucket != null) {
+                    bucket.remove(segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Segments that may collide with a ball whose next position is (x, y).
+     */
+    public List<Line> query(float x, float y) {
+        List<Line> bucket = bucket(column(x), row(y));
+        return bucket == null ? Collections.emptyList() : bucket;
+    }
+
+    /**
+     * Find the segment a ball collides with, preferring the earliest drawn line and,
+     * within a line, the earliest segment, the same order a full scan would report.
+     */
+    public Line findCollidingSegment(float x, float y, float vx, float vy) {
+        List<Line> candidates = query(x + vx, y + vy);
+        if (metrics != null && !candidates.isEmpty()) {
+            metrics.collisionTests.add(candidates.size());
+        }
+        Line best = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Line segment = candidates.get(i);
+            if (best != null && !segment.precedes(best)) {
+                continue;
+            }
+            if (Hitbox.checkCollision(x, y, vx, vy, segment)) {
+                best = segment;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The segment a ball hits this tick: swept along the whole move for balls too fast for the
+     * next-position test, which is used otherwise.
+     * @param contact scratch for the sweep, at least three floats
+     * @param normal scratch for the sweep, at least two floats
+     */
+    public Line findHit(float x, float y, float vx, float vy, float radius, float[] contact, float[] normal) {
+        if (BallStore.needsSweep(vx, vy)) {
+            return findSweptSegment(x, y, vx, vy, radius, contact, normal);
+        }
+        return findCollidingSegment(x, y, vx, vy);
+    }
+
+    /**
+     * The segment a ball of the given radius touches first while moving by (vx, vy), preferring the earliest
+     * drawn line on ties. The fraction of the move and the contact normal are written to contact;
+     * normal is scratch.
+     */
+    public Line findSweptSegment(float x, float y, float vx, float vy, float radius, float[] contact, float[] normal) {
+        // Segments are only bucketed as far as their collision reach, which for short segments is less than
+        // a ball radius, so the cells within a radius of the centre's path are searched as well
+        int firstCol = column(Math.min(x, x + vx) - radius);
+        int lastCol = column(Math.max(x, x + vx) + radius);
+        int firstRow = row(Math.min(y, y + vy) - radius);
+        int lastRow = row(Math.max(y, y + vy) + radius);
+        Line best = null;
+        float bestTime = Float.POSITIVE_INFINITY;
+        int tests = 0;
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                List<Line> bucket = bucket(c, r);
+                if (bucket == null) {
+                    continue;
+                }
+                tests += bucket.size();
+                for (int i = 0; i < bucket.size(); i++) {
+                    Line segment = bucket.get(i);
+                    float t = Hitbox.sweepCircleSegment(x, y, vx, vy, radius,
+                            segment.getStartX(), segment.getStartY(), segment.getEndX(), segment.getEndY(), normal);
+                    if (t < 0 || t > bestTime || (t == bestTime && !segment.precedes(best))) {
+                        continue;
+                    }
+                    best = segment;
+                    bestTime = t;
+                    contact[0] = t;
+                    contact[1] = normal[0];
+                    contact[2] = normal[1];
+                }
+            }
+        }
+        if (metrics != null && tests > 0) {
+            metrics.collisionTests.add(tests);
+        }
+        return best;
+    }
+
+    private int column(float x) {
+        int c = (int) Math.floor(x / App.CELLSIZE);
+        return Math.max(0, Math.min(cols - 1, c));
+    }
+
+    private int row(float y) {
+        int r = (int) Math.floor(y / App.CELLSIZE);
+        return Math.max(0, Math.min(rows - 1, r));
+    }
+}
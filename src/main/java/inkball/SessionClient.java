@@ -0,0 +1,250 @@
+package inkball;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Plays one game on a {@link SessionServer}, decoding the states it sends back.
+ * {@link #main} instead opens many connections at once to load test a server on the same machine.
+ */
+public class SessionClient implements Closeable {
+
+    /**
+     * One tick of a game, with ball positions in whole board pixels.
+     */
+    public static class State {
+        public long tick;
+        public int levelIndex;
+        public int score;
+        public int timer;
+        public boolean gameOver;
+        public int balls;
+        public char[] colors = new char[0];
+        public int[] x = new int[0];
+        public int[] y = new int[0];
+    }
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(SessionProtocol.MAX_CLIENT_FRAME + 4);
+    private ByteBuffer in = ByteBuffer.allocate(4096);
+    private final State state = new State();
+
+    public SessionClient(int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        channel.socket().setTcpNoDelay(true);
+        in.flip();
+    }
+
+    /**
+     * Start the game, to be stepped at the given rate, or the game's own rate for 0.
+     */
+    public void hello(long seed, int ticksPerSecond) throws IOException {
+        out.clear();
+        int start = SessionProtocol.beginFrame(out, SessionProtocol.HELLO);
+        out.putLong(seed);
+        SessionProtocol.putVarLong(out, ticksPerSecond);
+        SessionProtocol.endFrame(out, start);
+        write();
+    }
+
+    /**
+     * Draw a line through the given board pixels, laid out x0, y0, x1, y1 and so on.
+     */
+    public void stroke(int... points) throws IOException {
+        out.clear();
+        SessionProtocol.putStroke(out, points);
+        write();
+    }
+
+    public void erase(int x, int y) throws IOException {
+        out.clear();
+        int start = SessionProtocol.beginFrame(out, SessionProtocol.ERASE);
+        SessionProtocol.putZigZag(out, x);
+        SessionProtocol.putZigZag(out, y);
+        SessionProtocol.endFrame(out, start);
+        write();
+    }
+
+    public void restart() throws IOException {
+        out.clear();
+        SessionProtocol.endFrame(out, SessionProtocol.beginFrame(out, SessionProtocol.RESTART));
+        write();
+    }
+
+    private void write() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    /**
+     * Wait for the next state. The returned object is reused by the next call.
+     */
+    public State readState() throws IOException {
+        int length;
+        while ((length = SessionProtocol.frameLength(in, Integer.MAX_VALUE)) < 0) {
+            in.compact();
+            if (!in.hasRemaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(in.capacity() * 2);
+                in.flip();
+                grown.put(in);
+                in = grown;
+            }
+            if (channel.read(in) < 0) {
+                throw new IOException("Server closed the session");
+            }
+            in.flip();
+        }
+        int end = in.position() + 4 + length;
+        in.position(in.position() + 4);
+        if (in.get() != SessionProtocol.STATE) {
+            throw new IOException("Expected a state");
+        }
+        decodeState(in, state);
+        in.position(end);
+        return state;
+    }
+
+    /**
+     * Decode a STATE frame's body into the given state, which must hold the previous state for a delta.
+     */
+    static void decodeState(ByteBuffer frame, State state) {
+        state.tick = SessionProtocol.getVarLong(frame);
+        state.levelIndex = (int) SessionProtocol.getVarLong(frame);
+        state.score = (int) SessionProtocol.getZigZag(frame);
+        state.timer = (int) SessionProtocol.getVarLong(frame);
+        int flags = frame.get();
+        state.gameOver = (flags & SessionProtocol.FLAG_GAME_OVER) != 0;
+        boolean delta = (flags & SessionProtocol.FLAG_DELTA) != 0;
+        int count = SessionProtocol.getCount(frame, Integer.MAX_VALUE);
+        if (delta && count != state.balls) {
+            throw new IllegalArgumentException("Delta for " + count + " balls after a state with " + state.balls);
+        }
+        if (state.x.length < count) {
+            state.colors = new char[count];
+            state.x = new int[count];
+            state.y = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            state.colors[i] = (char) frame.get();
+            int x = (int) SessionProtocol.getZigZag(frame);
+            int y = (int) SessionProtocol.getZigZag(frame);
+            state.x[i] = delta ? state.x[i] + x : x;
+            state.y[i] = delta ? state.y[i] + y : y;
+        }
+        state.balls = count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Load test a local server: hold idle connections open, and play active ones that draw a random
+     * stroke every second, reading every state from one selector thread.
+     * Usage: SessionClient [--port 9500] [--active 1000] [--idle 10000] [--seconds 30]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 9500;
+        int active = 1000;
+        int idle = 10_000;
+        int seconds = 30;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(value); break;
+                case "--active": active = Integer.parseInt(value); break;
+                case "--idle": idle = Integer.parseInt(value); break;
+                case "--seconds": seconds = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        List<SocketChannel> idleChannels = new ArrayList<>();
+        for (int i = 0; i < idle; i++) {
+            idleChannels.add(SocketChannel.open(address));
+        }
+
+        Selector selector = Selector.open();
+        SplittableRandom random = new SplittableRandom(port);
+        List<SocketChannel> players = new ArrayList<>();
+        ByteBuffer message = ByteBuffer.allocate(SessionProtocol.MAX_CLIENT_FRAME);
+        for (int i = 0; i < active; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            message.clear();
+            int start = SessionProtocol.beginFrame(message, SessionProtocol.HELLO);
+            message.putLong(random.nextLong());
+            SessionProtocol.putVarLong(message, 0);
+            SessionProtocol.endFrame(message, start);
+            message.flip();
+            while (message.hasRemaining()) {
+                channel.write(message);
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+            players.add(channel);
+        }
+        System.out.println("Connected " + idle + " idle and " + active + " active sessions");
+
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+        long bytes = 0;
+        long strokes = 0;
+        long begin = System.nanoTime();
+        long end = begin + seconds * 1_000_000_000L;
+        long nextStroke = begin;
+        while (System.nanoTime() < end) {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                readBuffer.clear();
+                int read = ((SocketChannel) key.channel()).read(readBuffer);
+                if (read < 0) {
+                    key.cancel();
+                } else {
+                    bytes += read;
+                }
+            }
+            if (System.nanoTime() >= nextStroke) {
+                for (SocketChannel channel : players) {
+                    int x = 32 + random.nextInt(App.WIDTH - 64);
+                    int y = App.TOPBAR + 32 + random.nextInt(App.HEIGHT - App.TOPBAR - 64);
+                    message.clear();
+                    SessionProtocol.putStroke(message, new int[]{x, y, x + 20, y + 10, x + 40, y + 10});
+                    message.flip();
+                    while (message.hasRemaining()) {
+                        channel.write(message);
+                    }
+                    strokes++;
+                }
+                nextStroke += 1_000_000_000L;
+            }
+        }
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("Received:   %.0f KiB/s, %.1f bytes per active session per tick at %d Hz%n",
+                bytes / 1024.0 / elapsed, bytes / elapsed / Math.max(1, active) / Simulation.TICKS_PER_SECOND,
+                Simulation.TICKS_PER_SECOND);
+        System.out.println("Strokes:    " + strokes);
+        for (SocketChannel channel : players) {
+            channel.close();
+        }
+        for (SocketChannel channel : idleChannels) {
+            channel.close();
+        }
+        selector.close();
+    }
+}
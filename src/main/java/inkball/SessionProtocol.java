@@ -0,0 +1,125 @@
+package inkball;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format shared by {@link SessionServer} and {@link SessionClient}.
+ * Every message is a frame: a big-endian int length, then that many bytes starting with the message type.
+ * Numbers inside a frame are varints, and signed ones are zigzag encoded first, as in {@link InputRecorder}.
+ *
+ * Client to server:
+ * HELLO seed:long ticksPerSecond:varint starts the game; until then the session is idle and never stepped.
+ * STROKE count:varint, then count points as zigzag x, y, each after the first relative to the one before.
+ * ERASE x:zigzag y:zigzag removes lines under the point. RESTART restarts the level.
+ *
+ * Server to client, once per tick:
+ * STATE tick:varint level:varint score:zigzag timer:varint flags:byte balls:varint, then per ball
+ * colour:byte x:zigzag y:zigzag in whole board pixels. With the DELTA flag, positions are relative
+ * to the same ball in the previous STATE, which then had the same number of balls.
+ */
+public final class SessionProtocol {
+    public static final int HELLO = 1;
+    public static final int STROKE = 2;
+    public static final int ERASE = 3;
+    public static final int RESTART = 4;
+    public static final int STATE = 16;
+
+    public static final int FLAG_GAME_OVER = 1;
+    public static final int FLAG_DELTA = 2;
+
+    // Largest frame a client may send, which bounds a stroke to a few thousand points
+    public static final int MAX_CLIENT_FRAME = 16 * 1024;
+    public static final int MAX_STROKE_POINTS = 4096;
+
+    private SessionProtocol() {
+    }
+
+    public static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static void putZigZag(ByteBuffer out, long value) {
+        putVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    public static long getZigZag(ByteBuffer in) {
+        long value = getVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A varint that must fit in a non-negative int, such as a count.
+     */
+    public static int getCount(ByteBuffer in, int max) {
+        long value = getVarLong(in);
+        if (value < 0 || value > max) {
+            throw new IllegalArgumentException("Count out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reserve room for a frame's length; pass the returned position to {@link #endFrame} once it is written.
+     */
+    public static int beginFrame(ByteBuffer out, int type) {
+        int start = out.position();
+        out.putInt(0);
+        out.put((byte) type);
+        return start;
+    }
+
+    public static void endFrame(ByteBuffer out, int start) {
+        out.putInt(start, out.position() - start - 4);
+    }
+
+    /**
+     * The length of the complete frame at the buffer's position, or -1 if more bytes are needed.
+     * @throws IllegalArgumentException for a frame that is empty or longer than the given limit
+     */
+    public static int frameLength(ByteBuffer in, int maxFrame) {
+        if (in.remaining() < 4) {
+            return -1;
+        }
+        int length = in.getInt(in.position());
+        if (length < 1 || length > maxFrame) {
+            throw new IllegalArgumentException("Bad frame length: " + length);
+        }
+        return in.remaining() - 4 >= length ? length : -1;
+    }
+
+    /**
+     * Encode a stroke through the given points, laid out x0, y0, x1, y1 and so on.
+     */
+    public static void putStroke(ByteBuffer out, int[] points) {
+        if (points.length < 2 || points.length % 2 != 0 || points.length / 2 > MAX_STROKE_POINTS) {
+            throw new IllegalArgumentException("A stroke needs 1 to " + MAX_STROKE_POINTS + " x, y pairs");
+        }
+        int start = beginFrame(out, STROKE);
+        putVarLong(out, points.length / 2);
+        int lastX = 0;
+        int lastY = 0;
+        for (int i = 0; i < points.length; i += 2) {
+            putZigZag(out, points[i] - lastX);
+            putZigZag(out, points[i + 1] - lastY);
+            lastX = points[i];
+            lastY = points[i + 1];
+        }
+        endFrame(out, start);
+    }
+}
@@ -0,0 +1,298 @@
+package inkball;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hosts many games at once on the loopback interface, one per connection, speaking {@link SessionProtocol}.
+ * Three kinds of thread share the work, none of them per session: one network thread reads every socket
+ * through a selector, one wheel thread collects the sessions due each millisecond from a {@link TimingWheel},
+ * and a small carrier pool steps them in batches. An idle session, connected but not yet started,
+ * costs a socket and two small buffers.
+ */
+public class SessionServer implements AutoCloseable {
+    public static final long WHEEL_RESOLUTION_NANOS = 1_000_000L;
+    public static final int WHEEL_SLOTS = 256;
+    // Sessions stepped by one carrier task, so a busy wheel tick is a few tasks rather than one per session
+    public static final int BATCH_SIZE = 64;
+
+    private final Config config;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService carriers;
+    // As many loader threads as carriers, so level loads for different games do not queue behind each other
+    private final ExecutorService loader;
+    private final Thread networkThread;
+    private final Thread wheelThread;
+    private final TimingWheel<GameSession> wheel;
+    // Sessions to put on the wheel, from the carriers and the network thread; only the wheel thread files them
+    private final Queue<GameSession> toSchedule = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final SimulationMetrics metrics = new SimulationMetrics();
+    private volatile boolean running = true;
+
+    /**
+     * @param port port to listen on, or 0 for any free port
+     * @param threads carrier threads that step the games
+     */
+    public SessionServer(Config config, int port, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Need at least one carrier thread: " + threads);
+        }
+        this.config = config;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger carrierCount = new AtomicInteger();
+        this.carriers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "session-carrier-" + carrierCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loader = LevelPreloader.backgroundExecutor(threads);
+        this.wheel = new TimingWheel<>(WHEEL_SLOTS, WHEEL_RESOLUTION_NANOS, System.nanoTime());
+        this.networkThread = new Thread(this::networkLoop, "session-network");
+        this.wheelThread = new Thread(this::wheelLoop, "session-wheel");
+        networkThread.setDaemon(true);
+        wheelThread.setDaemon(true);
+        networkThread.start();
+        wheelThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Connected sessions, started or not.
+     */
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    /**
+     * Sessions whose game has started and is being stepped.
+     */
+    public int getActiveSessionCount() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Counters and the ball gauge summed over every session.
+     */
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void networkLoop() {
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key, readBuffer);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Session server network error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            GameSession session = new GameSession(channel, config, loader);
+            channel.register(selector, SelectionKey.OP_READ, session);
+            sessions.incrementAndGet();
+        }
+    }
+
+    private void read(SelectionKey key, ByteBuffer readBuffer) {
+        GameSession session = (GameSession) key.attachment();
+        try {
+            readBuffer.clear();
+            int read = session.channel.read(readBuffer);
+            if (read < 0) {
+                close(session);
+                return;
+            }
+            readBuffer.flip();
+            if (session.receive(readBuffer)) {
+                carriers.execute(() -> start(session));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            close(session);
+        }
+    }
+
+    private void start(GameSession session) {
+        try {
+            synchronized (session) {
+                if (session.closed) {
+                    return;
+                }
+                session.start(System.nanoTime());
+                session.getSimulation().setMetrics(metrics);
+                activeSessions.incrementAndGet();
+            }
+            toSchedule.add(session);
+        } catch (RuntimeException e) {
+            System.out.println("Could not start session: " + e.getMessage());
+            close(session);
+        }
+    }
+
+    private void wheelLoop() {
+        List<GameSession> due = new ArrayList<>();
+        while (running) {
+            GameSession session;
+            while ((session = toSchedule.poll()) != null) {
+                wheel.schedule(session, session.deadlineNanos);
+            }
+            due.clear();
+            wheel.advance(System.nanoTime(), due);
+            for (int i = 0; i < due.size(); i += BATCH_SIZE) {
+                List<GameSession> batch = new ArrayList<>(due.subList(i, Math.min(due.size(), i + BATCH_SIZE)));
+                carriers.execute(() -> step(batch));
+            }
+            LockSupport.parkNanos(WHEEL_RESOLUTION_NANOS);
+        }
+    }
+
+    private void step(List<GameSession> batch) {
+        long now = System.nanoTime();
+        for (GameSession session : batch) {
+            if (session.closed) {
+                retire(session);
+                continue;
+            }
+            try {
+                session.step(now);
+                toSchedule.add(session);
+            } catch (IOException | RuntimeException e) {
+                close(session);
+                retire(session);
+            }
+        }
+    }
+
+    /**
+     * Take a closed session's balls out of the shared gauge. Runs on a carrier, so it never races the session's step.
+     */
+    private void retire(GameSession session) {
+        session.getSimulation().setMetrics(null);
+    }
+
+    private void close(GameSession session) {
+        synchronized (session) {
+            if (session.closed) {
+                return;
+            }
+            session.closed = true;
+        }
+        sessions.decrementAndGet();
+        if (session.isStarted()) {
+            activeSessions.decrementAndGet();
+        }
+        try {
+            session.channel.close();
+        } catch (IOException e) {
+            // Nothing more to do for a socket that will not close
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            networkThread.join(1000);
+            wheelThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        carriers.shutdownNow();
+        loader.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof GameSession) {
+                close((GameSession) key.attachment());
+            }
+        }
+        selector.close();
+        serverChannel.close();
+        try {
+            carriers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Usage: SessionServer [--config config.json] [--port 9500] [--threads n] [--metrics-port port]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String configPath = "config.json";
+        int port = 9500;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int metricsPort = -1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--config": configPath = value; break;
+                case "--port": port = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--metrics-port": metricsPort = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        SessionServer server = new SessionServer(Simulation.loadConfig(configPath), port, threads);
+        System.out.println("Sessions:   127.0.0.1:" + server.getPort() + ", " + threads + " carrier threads");
+        if (metricsPort >= 0) {
+            MetricsServer metricsServer = new MetricsServer(server.getMetrics(), metricsPort);
+            System.out.println("Metrics:    http://127.0.0.1:" + metricsServer.getPort() + "/metrics");
+        }
+        long ticks = 0;
+        while (true) {
+            Thread.sleep(10_000);
+            long total = server.getMetrics().ticks.sum();
+            System.out.println("Sessions:   " + server.getSessionCount() + " connected, "
+                    + server.getActiveSessionCount() + " active, " + (total - ticks) / 10 + " ticks/s, "
+                    + server.getMetrics().getBallsActive() + " balls");
+            ticks = total;
+        }
+    }
+}
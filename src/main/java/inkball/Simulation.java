@@ -0,0 +1,419 @@
+package inkball;
+
+import processing.core.PConstants;
+import processing.data.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Headless game engine. Owns the current level, the player lines and the level progression,
+ * and advances them by a fixed tick without touching any rendering code.
+ */
+public class Simulation {
+
+    public static final int TICKS_PER_SECOND = App.FPS;
+    public static final long TICK_NANOS = 1_000_000_000L / TICKS_PER_SECOND;
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final Config config;
+    private final GameContext context;
+    private final int[] levelScores;
+    private Level level;
+    private int levelIndex;
+    private long tick;
+    private long accumulatedNanos;
+    private boolean gameOver;
+    private ForkJoinPool parallelPool;
+    private FrameProfiler profiler;
+    private SimulationMetrics metrics;
+    // Balls this game has counted into the metrics' gauge, which other games may add to as well
+    private int reportedBalls;
+    private final RandomSource random;
+    private final LevelPreloader preloader;
+    // Seed for whichever level is loaded next, drawn one load ahead so preloads can use it
+    private long nextLoadSeed;
+    private Future<Level> nextLevel;
+    // The current level as it was loaded, for restarts
+    private LevelSnapshot levelStart;
+
+    public final List<PlayerLine> playerLines = new ArrayList<>();
+    public PlayerLine currentLine;
+
+    public Simulation(Config config) {
+        this(config, new GameContext(config));
+    }
+
+    /**
+     * A game that keeps its scores and draws its level seeds from the given context, so any number of
+     * simulations can run in one JVM as long as each has a context of its own.
+     */
+    public Simulation(Config config, GameContext context) {
+        this(config, context, LevelPreloader.backgroundExecutor());
+    }
+
+    /**
+     * @param loader where upcoming levels are loaded; the game plays the same whichever executor is used
+     */
+    Simulation(Config config, GameContext context, Executor loader) {
+        if (context.levelScores.length < config.levelConfigs.size()) {
+            throw new IllegalArgumentException("Score table has " + context.levelScores.length
+                    + " entries for " + config.levelConfigs.size() + " levels");
+        }
+        this.config = config;
+        this.context = context;
+        this.levelScores = context.levelScores;
+        this.random = context.random;
+        this.preloader = new LevelPreloader(config, loader);
+        this.nextLoadSeed = random.split().getSeed();
+        this.levelIndex = 0;
+        this.level = loadLevel(levelIndex, null);
+    }
+
+    public static Config loadConfig(String configPath) throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get(configPath)), StandardCharsets.UTF_8);
+        return new Config(JSONObject.parse(content));
+    }
+
+    /**
+     * Swap in the level at the given index, using the preloaded one if it is for that index.
+     * Each load takes the next split, so the whole run follows the seed.
+     */
+    private Level loadLevel(int index, Future<Level> preloaded) {
+        Level loaded = preloaded != null ? LevelPreloader.take(preloaded) : null;
+        if (loaded == null || loaded.getLevelIndex() != index) {
+            loaded = new Level(config.getLevelConfig(index), config, index, new RandomSource(nextLoadSeed));
+            loaded.loadFile();
+        }
+        loaded.setViewSize(context.width, context.height);
+        loaded.setParallelism(parallelPool);
+        loaded.setProfiler(profiler);
+        loaded.setMetrics(metrics);
+        nextLoadSeed = random.split().getSeed();
+        if (nextLevel != null) {
+            nextLevel.cancel(false);
+            nextLevel = null;
+        }
+        levelStart = loaded.snapshot(Collections.emptyList(), levelStart != null ? levelStart : new LevelSnapshot());
+        return loaded;
+    }
+
+    /**
+     * The next level if it has finished loading in the background, so work such as drawing its board can be
+     * done before it is swapped in; null if there is none or it is not ready yet.
+     */
+    public Level getPreloadedLevel() {
+        if (nextLevel == null || !nextLevel.isDone() || nextLevel.isCancelled()) {
+            return null;
+        }
+        try {
+            return nextLevel.get();
+        } catch (ExecutionException e) {
+            // Taking it at the swap rethrows the failure
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Advance the game by exactly one tick.
+     * @return false if the game is over and nothing was simulated
+     */
+    public boolean tick() {
+        if (gameOver) {
+            return false;
+        }
+        long start = profiler != null ? System.nanoTime() : 0;
+        level.update(playerLines);
+        if (profiler != null) {
+            profiler.add(FrameProfiler.Stage.UPDATE, start);
+        }
+        tick++;
+        if (metrics != null) {
+            metrics.ticks.increment();
+            int balls = level.balls.size();
+            metrics.addBallsActive(balls - reportedBalls);
+            reportedBalls = balls;
+        }
+
+        if (level.score != 0) {
+            levelScores[levelIndex] = level.score;
+        }
+
+        if (level.isEndingLevel && nextLevel == null && levelIndex + 1 < config.levelConfigs.size()) {
+            // Load the next level while the end-of-level animation plays
+            nextLevel = preloader.load(levelIndex + 1, nextLoadSeed);
+        }
+
+        if (level.isAnimationComplete) {
+            completeLevel();
+        } else if (level.timer == 0) {
+            gameOver = true;
+        }
+        return true;
+    }
+
+    /**
+     * Run up to the given number of ticks, stopping early if the game ends.
+     * @return the number of ticks actually simulated
+     */
+    public long run(long ticks) {
+        long executed = 0;
+        while (executed < ticks && tick()) {
+            executed++;
+        }
+        return executed;
+    }
+
+    /**
+     * Feed wall-clock time into the fixed-timestep accumulator and run every whole tick that is due.
+     * At most a few ticks are caught up per call so a stalled frame cannot cause a spiral of death.
+     * @return the number of ticks simulated
+     */
+    public int advance(long elapsedNanos) {
+        accumulatedNanos += elapsedNanos;
+        int executed = 0;
+        while (accumulatedNanos >= TICK_NANOS && executed < MAX_CATCH_UP_TICKS) {
+            accumulatedNanos -= TICK_NANOS;
+            if (!tick()) {
+                break;
+            }
+            executed++;
+        }
+        if (executed == MAX_CATCH_UP_TICKS) {
+            accumulatedNanos = 0;
+        }
+        return executed;
+    }
+
+    void completeLevel() {
+        if (levelIndex + 1 < config.levelConfigs.size()) {
+            levelIndex++;
+            level = loadLevel(levelIndex, nextLevel);
+        } else {
+            gameOver = true;
+        }
+        playerLines.clear();
+    }
+
+    /**
+     * Start the current level again, or the first level once the game is over.
+     * The level is put back from its snapshot rather than read again, and its spawns are drawn from the next
+     * split, so restarts differ but the whole run still follows the seed.
+     */
+    public void restartLevel() {
+        if (gameOver) {
+            Arrays.fill(levelScores, 0);
+        }
+        if (gameOver && levelIndex != 0) {
+            levelIndex = 0;
+            level = loadLevel(levelIndex, null);
+        } else {
+            level.restore(levelStart, playerLines);
+            level.getRandom().setState(nextLoadSeed);
+            nextLoadSeed = random.split().getSeed();
+            if (nextLevel != null) {
+                nextLevel.cancel(false);
+                nextLevel = null;
+            }
+        }
+        levelScores[levelIndex] = 0;
+        playerLines.clear();
+        accumulatedNanos = 0;
+        gameOver = false;
+    }
+
+    /**
+     * Step balls in parallel on the given pool when a level has enough of them, or null to stay serial.
+     * Results are identical either way.
+     */
+    public void setParallelism(ForkJoinPool pool) {
+        this.parallelPool = pool;
+        level.setParallelism(pool);
+    }
+
+    /**
+     * Time every level update and its stages into the given profiler, or pass null to stop.
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+        level.setProfiler(profiler);
+    }
+
+    /**
+     * Count ticks, balls and collision events into the given metrics, or pass null to stop.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        if (this.metrics != null) {
+            // Take this game's balls back out of the gauge it is leaving
+            this.metrics.addBallsActive(-reportedBalls);
+            reportedBalls = 0;
+        }
+        this.metrics = metrics;
+        level.setMetrics(metrics);
+    }
+
+    /**
+     * The left button starts a line, the right button erases lines under the cursor.
+     */
+    public void mousePressed(int button, float x, float y) {
+        if (button == PConstants.LEFT) {
+            beginLine(x, y);
+        } else if (button == PConstants.RIGHT) {
+            removeLine(x, y);
+        }
+    }
+
+    public void mouseDragged(int button, float x, float y) {
+        if (button == PConstants.LEFT) {
+            extendLine(x, y);
+        } else if (button == PConstants.RIGHT) {
+            removeLine(x, y);
+        }
+    }
+
+    public void mouseReleased(int button) {
+        if (button == PConstants.LEFT) {
+            endLine();
+        }
+    }
+
+    public void beginLine(float x, float y) {
+        currentLine = new PlayerLine(level.getPixelWidth(), level.getPixelHeight(), config.lineTolerance);
+        currentLine.addPoint(x, y);
+    }
+
+    public void extendLine(float x, float y) {
+        if (currentLine != null) {
+            currentLine.addPoint(x, y);
+        }
+    }
+
+    public void endLine() {
+        if (!gameOver && currentLine != null) {
+            playerLines.add(currentLine);
+            currentLine = null;
+        }
+    }
+
+    public void removeLine(float x, float y) {
+        playerLines.removeIf(line -> {
+            if (line.intersects(x, y)) {
+                line.detach();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public int getLevelIndex() {
+        return levelIndex;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public GameContext getContext() {
+        return context;
+    }
+
+    public long getSeed() {
+        return random.getSeed();
+    }
+
+    public int[] getLevelScores() {
+        return levelScores;
+    }
+
+    public int getTotalScore() {
+        return context.getTotalScore();
+    }
+
+    /**
+     * Run a game headless with no player input and report the simulation rate.
+     * With --metrics-port, counters are served for Prometheus at http://127.0.0.1:port/metrics during the run.
+     * With --snapshots, every tick is recorded to the given file for {@link SnapshotDecoder}.
+     * Usage: Simulation [--metrics-port port] [--snapshots file] [config.json] [maxTicks]
+     */
+    public static void main(String[] args) throws IOException {
+        int metricsPort = -1;
+        String snapshotPath = null;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--metrics-port") && i + 1 < args.length) {
+                metricsPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--snapshots") && i + 1 < args.length) {
+                snapshotPath = args[++i];
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        String configPath = positional.size() > 0 ? positional.get(0) : "config.json";
+        long maxTicks = positional.size() > 1 ? Long.parseLong(positional.get(1)) : Long.MAX_VALUE;
+
+        Simulation simulation = new Simulation(loadConfig(configPath));
+        MetricsServer server = null;
+        if (metricsPort >= 0) {
+            SimulationMetrics metrics = new SimulationMetrics();
+            simulation.setMetrics(metrics);
+            server = new MetricsServer(metrics, metricsPort);
+            System.out.println("Metrics:    http://127.0.0.1:" + server.getPort() + "/metrics");
+        }
+        SnapshotEncoder snapshots = snapshotPath != null ? new SnapshotEncoder() : null;
+        long ballTicks = 0;
+        long start = System.nanoTime();
+        long ticks;
+        if (snapshots == null) {
+            ticks = simulation.run(maxTicks);
+        } else {
+            ticks = 0;
+            while (ticks < maxTicks && simulation.tick()) {
+                snapshots.record(simulation);
+                ballTicks += simulation.getLevel().balls.size();
+                ticks++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (server != null) {
+            server.close();
+        }
+        if (snapshots != null) {
+            try (OutputStream out = Files.newOutputStream(Paths.get(snapshotPath))) {
+                snapshots.writeTo(out);
+            }
+            System.out.printf("Snapshots:  %d bytes, %.1f bytes per ball per second%n", snapshots.size(),
+                    snapshots.size() / Math.max(1.0, ballTicks / (double) TICKS_PER_SECOND));
+        }
+
+        System.out.println("Ticks:      " + ticks);
+        System.out.println("Level:      " + (simulation.getLevelIndex() + 1));
+        System.out.println("Score:      " + simulation.getTotalScore());
+        System.out.printf("Ticks/sec:  %.0f%n", ticks / (elapsed / 1e9));
+    }
+}
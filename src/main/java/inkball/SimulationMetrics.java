@@ -0,0 +1,92 @@
+package inkball;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for a running simulation, written out in the Prometheus text format.
+ * Counters are striped {@link LongAdder}s, so the tick loop and the parallel ball step update them without
+ * contending, and a scrape from another thread only pays for the sum.
+ */
+public class SimulationMetrics {
+    public final LongAdder ticks = new LongAdder();
+    public final LongAdder captures = new LongAdder();
+    public final LongAdder wrongHoleRespawns = new LongAdder();
+    public final LongAdder linesConsumed = new LongAdder();
+    public final LongAdder collisionTests = new LongAdder();
+    // Summed over every simulation reporting here, each adding the change in its own ball count
+    private final AtomicInteger ballsActive = new AtomicInteger();
+
+    // Tick count and time of the previous scrape, for the ticks per second gauge
+    private long lastScrapeTicks;
+    private long lastScrapeNanos = System.nanoTime();
+
+    public void setBallsActive(int balls) {
+        ballsActive.set(balls);
+    }
+
+    /**
+     * Change the ball count by the given amount, for a simulation whose own count went up or down.
+     */
+    public void addBallsActive(int delta) {
+        ballsActive.addAndGet(delta);
+    }
+
+    public int getBallsActive() {
+        return ballsActive.get();
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format.
+     * The ticks per second gauge covers the time since the previous call, or since creation for the first one.
+     */
+    public synchronized void writePrometheus(Appendable out) throws IOException {
+        long now = System.nanoTime();
+        long tickCount = ticks.sum();
+        double elapsed = Math.max(1, now - lastScrapeNanos) / 1e9;
+        double ticksPerSecond = (tickCount - lastScrapeTicks) / elapsed;
+        lastScrapeTicks = tickCount;
+        lastScrapeNanos = now;
+
+        counter(out, "inkball_ticks_total", "Simulation ticks run.", tickCount);
+        gauge(out, "inkball_ticks_per_second", "Ticks per second since the previous scrape.", ticksPerSecond);
+        gauge(out, "inkball_balls_active", "Balls on the board after the latest tick, over every game.", ballsActive.get());
+        counter(out, "inkball_captures_total", "Balls captured by a hole.", captures.sum());
+        counter(out, "inkball_wrong_hole_respawns_total", "Balls sent back to the queue after entering a hole of the wrong colour.", wrongHoleRespawns.sum());
+        counter(out, "inkball_lines_consumed_total", "Player lines removed after a ball bounced off them.", linesConsumed.sum());
+        counter(out, "inkball_collision_tests_total", "Ball against line segment collision tests.", collisionTests.sum());
+
+        out.append("# HELP inkball_gc_collections_total Garbage collections since the JVM started.\n");
+        out.append("# TYPE inkball_gc_collections_total counter\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.append("inkball_gc_collections_total{gc=\"").append(gc.getName()).append("\"} ")
+                    .append(Long.toString(Math.max(0, gc.getCollectionCount()))).append('\n');
+        }
+        out.append("# HELP inkball_gc_pause_seconds_total Time spent in garbage collection since the JVM started.\n");
+        out.append("# TYPE inkball_gc_pause_seconds_total counter\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.append("inkball_gc_pause_seconds_total{gc=\"").append(gc.getName()).append("\"} ")
+                    .append(format(Math.max(0, gc.getCollectionTime()) / 1e3)).append('\n');
+        }
+    }
+
+    private static void counter(Appendable out, String name, String help, long value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    private static void gauge(Appendable out, String name, String help, double value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,28 @@
+package inkball;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state of a recorded game at one tick, as decoded by {@link SnapshotDecoder}.
+ * Ball positions and velocities are in pixels, to within the tolerance the log was recorded with.
+ */
+public class Snapshot {
+    public long tick;
+    public int levelIndex;
+    public int score;
+    public int timer;
+    public List<String> queue = new ArrayList<>();
+
+    public int balls;
+    // Ids stay the same for a ball from the tick it appears until it is captured or the level changes
+    public int[] ballIds = new int[0];
+    public char[] colors = new char[0];
+    public float[] x = new float[0];
+    public float[] y = new float[0];
+    public float[] vx = new float[0];
+    public float[] vy = new float[0];
+
+    // Each line's points in whole pixels, laid out x0, y0, x1, y1 and so on
+    public List<int[]> lines = new ArrayList<>();
+}
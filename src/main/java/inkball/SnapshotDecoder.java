@@ -0,0 +1,301 @@
+package inkball;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a log written by {@link SnapshotEncoder} and rebuilds the game state at any tick.
+ * Opening a log indexes its records by tick without decoding them. A seek starts from the last keyframe
+ * at or before the tick, or carries on from the previous seek when that is closer, so playing forward
+ * one tick at a time only decodes each record once.
+ */
+public class SnapshotDecoder {
+
+    private static class BallState {
+        char color;
+        long x;
+        long y;
+        long vx;
+        long vy;
+        long ax;
+        long ay;
+    }
+
+    private final ByteBuffer data;
+    private final long[] recordTicks;
+    private final int[] recordOffsets;
+    private final int[] recordEnds;
+    // Record numbers of the keyframes, in order
+    private final int[] keyframes;
+
+    // The model as of modelTick, with every record before nextRecord applied
+    private final Map<Integer, BallState> balls = new LinkedHashMap<>();
+    private final Map<Integer, int[]> lines = new LinkedHashMap<>();
+    private final List<String> queue = new ArrayList<>();
+    private int levelIndex;
+    private int score;
+    private int timer;
+    private long modelTick = Long.MIN_VALUE;
+    private int nextRecord;
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a snapshot log, or it has no keyframe
+     */
+    public SnapshotDecoder(byte[] bytes) {
+        this.data = ByteBuffer.wrap(bytes);
+        try {
+            if (data.getInt() != SnapshotEncoder.MAGIC) {
+                throw new IllegalArgumentException("Not a snapshot log");
+            }
+            int version = data.get();
+            if (version != SnapshotEncoder.VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+            }
+            List<long[]> index = new ArrayList<>();
+            List<Integer> keyframeList = new ArrayList<>();
+            long tick = 0;
+            while (data.hasRemaining()) {
+                int length = SessionProtocol.getCount(data, data.remaining());
+                int offset = data.position();
+                long header = SessionProtocol.getVarLong(data);
+                if ((header & SnapshotEncoder.KEYFRAME) != 0) {
+                    tick = header >>> 1;
+                    keyframeList.add(index.size());
+                } else if (!keyframeList.isEmpty()) {
+                    tick += header >>> 1;
+                } else {
+                    throw new IllegalArgumentException("Delta before the first keyframe at byte " + offset);
+                }
+                index.add(new long[]{tick, offset, offset + length});
+                data.position(offset + length);
+            }
+            if (keyframeList.isEmpty()) {
+                throw new IllegalArgumentException("Snapshot log has no keyframe");
+            }
+            recordTicks = new long[index.size()];
+            recordOffsets = new int[index.size()];
+            recordEnds = new int[index.size()];
+            for (int i = 0; i < index.size(); i++) {
+                recordTicks[i] = index.get(i)[0];
+                recordOffsets[i] = (int) index.get(i)[1];
+                recordEnds[i] = (int) index.get(i)[2];
+            }
+            keyframes = keyframeList.stream().mapToInt(Integer::intValue).toArray();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Snapshot log is truncated");
+        }
+    }
+
+    public long getFirstTick() {
+        return recordTicks[0];
+    }
+
+    /**
+     * The tick of the last record. Later ticks can still be sought; they are predicted from it.
+     */
+    public long getLastTick() {
+        return recordTicks[recordTicks.length - 1];
+    }
+
+    public int getRecordCount() {
+        return recordTicks.length;
+    }
+
+    /**
+     * The state at the given tick.
+     * @throws IllegalArgumentException for a tick before the first record
+     */
+    public Snapshot seek(long tick) {
+        if (tick < getFirstTick()) {
+            throw new IllegalArgumentException("Tick " + tick + " is before the log starts at " + getFirstTick());
+        }
+        int keyframe = keyframeAtOrBefore(tick);
+        if (modelTick > tick || nextRecord <= keyframe) {
+            nextRecord = keyframe;
+        }
+        while (nextRecord < recordTicks.length && recordTicks[nextRecord] <= tick) {
+            apply(nextRecord++);
+        }
+        predict(tick - modelTick);
+        return toSnapshot();
+    }
+
+    private int keyframeAtOrBefore(long tick) {
+        int low = 0;
+        int high = keyframes.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (recordTicks[keyframes[mid]] <= tick) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return keyframes[low];
+    }
+
+    private void predict(long ticks) {
+        // The closed form of changing the velocity by the acceleration then moving, once per tick
+        long steps = ticks * (ticks + 1) / 2;
+        for (BallState ball : balls.values()) {
+            ball.x += ball.vx * ticks + ball.ax * steps;
+            ball.y += ball.vy * ticks + ball.ay * steps;
+            ball.vx += ball.ax * ticks;
+            ball.vy += ball.ay * ticks;
+        }
+        timer = SnapshotEncoder.predictTimer(timer, ticks);
+        modelTick += ticks;
+    }
+
+    private void apply(int record) {
+        ByteBuffer in = data.duplicate();
+        in.position(recordOffsets[record]);
+        if ((SessionProtocol.getVarLong(in) & SnapshotEncoder.KEYFRAME) != 0) {
+            modelTick = recordTicks[record];
+            levelIndex = (int) SessionProtocol.getVarLong(in);
+            score = (int) SessionProtocol.getZigZag(in);
+            timer = (int) SessionProtocol.getZigZag(in);
+            readQueue(in);
+            balls.clear();
+            int ballCount = SessionProtocol.getCount(in, in.remaining());
+            for (int i = 0; i < ballCount; i++) {
+                readBall(in);
+            }
+            lines.clear();
+            int lineCount = SessionProtocol.getCount(in, in.remaining());
+            for (int i = 0; i < lineCount; i++) {
+                readLine(in);
+            }
+            return;
+        }
+
+        predict(recordTicks[record] - modelTick);
+        while (in.position() < recordEnds[record]) {
+            int header = in.get() & 0xFF;
+            switch (header & SnapshotEncoder.EVENT_TYPE_MASK) {
+                case SnapshotEncoder.BALL_ADDED:
+                    readBall(in);
+                    break;
+                case SnapshotEncoder.BALL_REMOVED:
+                    balls.remove((int) SessionProtocol.getVarLong(in));
+                    break;
+                case SnapshotEncoder.BALL_CHANGED:
+                    readChanges(in, header);
+                    break;
+                case SnapshotEncoder.LINE_ADDED:
+                    readLine(in);
+                    break;
+                case SnapshotEncoder.LINE_REMOVED:
+                    lines.remove((int) SessionProtocol.getVarLong(in));
+                    break;
+                case SnapshotEncoder.SCORE:
+                    score = (int) SessionProtocol.getZigZag(in);
+                    break;
+                case SnapshotEncoder.TIMER:
+                    timer = (int) SessionProtocol.getZigZag(in);
+                    break;
+                case SnapshotEncoder.QUEUE:
+                    readQueue(in);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Bad event " + header);
+            }
+        }
+    }
+
+    private void readBall(ByteBuffer in) {
+        BallState ball = new BallState();
+        int id = (int) SessionProtocol.getVarLong(in);
+        ball.color = (char) in.get();
+        ball.x = SessionProtocol.getZigZag(in);
+        ball.y = SessionProtocol.getZigZag(in);
+        ball.vx = SessionProtocol.getZigZag(in);
+        ball.vy = SessionProtocol.getZigZag(in);
+        balls.put(id, ball);
+    }
+
+    private void readChanges(ByteBuffer in, int header) {
+        int id = (int) SessionProtocol.getVarLong(in);
+        BallState ball = balls.get(id);
+        if (ball == null) {
+            throw new IllegalArgumentException("Change to unknown ball " + id);
+        }
+        if ((header & SnapshotEncoder.CHANGED_POSITION) != 0) {
+            ball.x += SessionProtocol.getZigZag(in) * SnapshotEncoder.POSITION_STEP;
+            ball.y += SessionProtocol.getZigZag(in) * SnapshotEncoder.POSITION_STEP;
+        }
+        if ((header & SnapshotEncoder.CHANGED_VELOCITY) != 0) {
+            ball.vx += SessionProtocol.getZigZag(in);
+            ball.vy += SessionProtocol.getZigZag(in);
+        }
+        if ((header & SnapshotEncoder.CHANGED_COLOR) != 0) {
+            ball.color = (char) in.get();
+        }
+        if ((header & SnapshotEncoder.CHANGED_ACCELERATION) != 0) {
+            ball.ax = SessionProtocol.getZigZag(in);
+            ball.ay = SessionProtocol.getZigZag(in);
+        }
+    }
+
+    private void readLine(ByteBuffer in) {
+        int id = (int) SessionProtocol.getVarLong(in);
+        int count = SessionProtocol.getCount(in, in.remaining());
+        int[] points = new int[count * 2];
+        long x = 0;
+        long y = 0;
+        for (int i = 0; i < points.length; i += 2) {
+            x += SessionProtocol.getZigZag(in);
+            y += SessionProtocol.getZigZag(in);
+            points[i] = (int) x;
+            points[i + 1] = (int) y;
+        }
+        lines.put(id, points);
+    }
+
+    private void readQueue(ByteBuffer in) {
+        queue.clear();
+        int count = SessionProtocol.getCount(in, in.remaining());
+        for (int i = 0; i < count; i++) {
+            byte[] color = new byte[SessionProtocol.getCount(in, in.remaining())];
+            in.get(color);
+            queue.add(new String(color, StandardCharsets.UTF_8));
+        }
+    }
+
+    private Snapshot toSnapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.tick = modelTick;
+        snapshot.levelIndex = levelIndex;
+        snapshot.score = score;
+        snapshot.timer = timer;
+        snapshot.queue.addAll(queue);
+        int count = balls.size();
+        snapshot.balls = count;
+        snapshot.ballIds = new int[count];
+        snapshot.colors = new char[count];
+        snapshot.x = new float[count];
+        snapshot.y = new float[count];
+        snapshot.vx = new float[count];
+        snapshot.vy = new float[count];
+        int i = 0;
+        for (Map.Entry<Integer, BallState> entry : balls.entrySet()) {
+            BallState ball = entry.getValue();
+            snapshot.ballIds[i] = entry.getKey();
+            snapshot.colors[i] = ball.color;
+            snapshot.x[i] = ball.x / (float) SnapshotEncoder.UNITS_PER_PIXEL;
+            snapshot.y[i] = ball.y / (float) SnapshotEncoder.UNITS_PER_PIXEL;
+            snapshot.vx[i] = ball.vx / (float) SnapshotEncoder.UNITS_PER_PIXEL;
+            snapshot.vy[i] = ball.vy / (float) SnapshotEncoder.UNITS_PER_PIXEL;
+            i++;
+        }
+        for (int[] points : lines.values()) {
+            snapshot.lines.add(points.clone());
+        }
+        return snapshot;
+    }
+}
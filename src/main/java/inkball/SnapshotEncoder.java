@@ -0,0 +1,498 @@
+package inkball;
+
+import processing.core.PVector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records a game tick by tick into a compact log that {@link SnapshotDecoder} can play from any tick.
+ *
+ * The log is a header followed by records, each prefixed by its length as a varint. A keyframe record holds
+ * the whole state; a delta record holds only what the decoder could not predict. Between records the decoder
+ * moves every ball on by its velocity, changes the velocity by the ball's acceleration, and counts the timer
+ * down; the encoder runs the same prediction on the same quantised numbers, so it knows exactly what the
+ * decoder will show. A ball is given an acceleration once its velocity changes by the same amount two ticks
+ * running, as on an acceleration tile, and loses it when that stops. A ball costs nothing on a tick
+ * unless it bounced, changed colour, or drifted more than the tolerance from where it was predicted to be;
+ * a tick with nothing to correct costs nothing at all.
+ *
+ * Positions and velocities are kept in 1/{@value #UNITS_PER_PIXEL} of a pixel, and lines in whole pixels.
+ * Position corrections are only sent to the nearest {@value #POSITION_STEP} units, which is well inside the
+ * tolerance and keeps a correction after a bounce to a byte or so per axis.
+ */
+public class SnapshotEncoder {
+    static final int MAGIC = 0x494E4B53; // "INKS"
+    static final int VERSION = 1;
+    public static final int UNITS_PER_PIXEL = 256;
+    static final int POSITION_STEP = 16;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 30 * Simulation.TICKS_PER_SECOND;
+    public static final float DEFAULT_TOLERANCE = 0.25f;
+
+    // Low bit of a record's first varint; the rest is the keyframe's tick, or a delta's ticks since the last record
+    static final int KEYFRAME = 1;
+
+    // Event types in the low bits of an event's first byte; a changed ball has its changed fields above them
+    static final int BALL_ADDED = 0;
+    static final int BALL_REMOVED = 1;
+    static final int BALL_CHANGED = 2;
+    static final int LINE_ADDED = 3;
+    static final int LINE_REMOVED = 4;
+    static final int SCORE = 5;
+    static final int TIMER = 6;
+    static final int QUEUE = 7;
+    static final int EVENT_TYPE_MASK = 7;
+    static final int CHANGED_POSITION = 1 << 3;
+    static final int CHANGED_VELOCITY = 1 << 4;
+    static final int CHANGED_COLOR = 1 << 5;
+    static final int CHANGED_ACCELERATION = 1 << 6;
+
+    private static class TrackedBall {
+        final int id;
+        char color;
+        long x;
+        long y;
+        long vx;
+        long vy;
+        long ax;
+        long ay;
+        boolean seen;
+        // The ball's true velocity at the last tick, and how much it had changed by then, to spot acceleration
+        long lastVx;
+        long lastVy;
+        long lastChangeX;
+        long lastChangeY;
+
+        TrackedBall(int id) {
+            this.id = id;
+        }
+    }
+
+    private final int keyframeInterval;
+    private final long toleranceUnits;
+
+    private ByteBuffer data = ByteBuffer.allocate(4096);
+    private ByteBuffer body = ByteBuffer.allocate(1024);
+    private int records;
+
+    // What the decoder knows as of the last record, moved on by prediction before each comparison
+    private final Map<Ball, TrackedBall> balls = new IdentityHashMap<>();
+    private final Map<PlayerLine, Integer> lines = new IdentityHashMap<>();
+    private final List<String> queue = new ArrayList<>();
+    private int nextBallId;
+    private int nextLineId;
+    private Level level;
+    private int levelIndex = -1;
+    private int score;
+    private int timer;
+    // The tick the decoder's model has been predicted to, and the tick of the last record written
+    private long tick = -1;
+    private long recordTick;
+    private long keyframeTick;
+
+    public SnapshotEncoder() {
+        this(DEFAULT_KEYFRAME_INTERVAL, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param keyframeInterval most ticks between keyframes, which bounds how far a seek has to decode
+     * @param tolerancePixels how far a ball may drift from its predicted position before it is corrected
+     */
+    public SnapshotEncoder(int keyframeInterval, float tolerancePixels) {
+        if (keyframeInterval <= 0 || tolerancePixels < 0) {
+            throw new IllegalArgumentException("Bad keyframe interval or tolerance: " + keyframeInterval + ", " + tolerancePixels);
+        }
+        this.keyframeInterval = keyframeInterval;
+        // A correction can be out by half a step, so drift within that is never worth correcting
+        this.toleranceUnits = Math.max(POSITION_STEP / 2, (long) (tolerancePixels * UNITS_PER_PIXEL));
+        data.putInt(MAGIC);
+        data.put((byte) VERSION);
+    }
+
+    /**
+     * Record the simulation as it stands after its latest tick.
+     */
+    public void record(Simulation simulation) {
+        record(simulation.getTick(), simulation.getLevelIndex(), simulation.getLevel(),
+                simulation.playerLines, simulation.getTotalScore());
+    }
+
+    /**
+     * Record the state at the given tick, which must be later than the last one recorded.
+     * Ticks may be skipped; the decoder predicts through them.
+     */
+    public void record(long tick, int levelIndex, Level level, List<PlayerLine> playerLines, int score) {
+        if (tick <= this.tick) {
+            throw new IllegalArgumentException("Tick " + tick + " is not after " + this.tick);
+        }
+        if (this.tick < 0 || level != this.level || levelIndex != this.levelIndex
+                || tick - keyframeTick >= keyframeInterval) {
+            writeKeyframe(tick, levelIndex, level, playerLines, score);
+        } else {
+            writeDelta(tick, level, playerLines, score);
+        }
+        this.tick = tick;
+    }
+
+    private void writeKeyframe(long tick, int levelIndex, Level level, List<PlayerLine> playerLines, int score) {
+        body.clear();
+        SessionProtocol.putVarLong(body, tick << 1 | KEYFRAME);
+        SessionProtocol.putVarLong(body, levelIndex);
+        SessionProtocol.putZigZag(body, score);
+        SessionProtocol.putZigZag(body, level.timer);
+        putQueue(level.ballQueue);
+
+        Map<Ball, TrackedBall> kept = new IdentityHashMap<>();
+        ensureBody(8 + level.balls.size() * 48);
+        SessionProtocol.putVarLong(body, level.balls.size());
+        for (Ball ball : level.balls) {
+            TrackedBall tracked = balls.get(ball);
+            if (tracked == null) {
+                tracked = new TrackedBall(nextBallId++);
+            }
+            setExactly(tracked, ball);
+            kept.put(ball, tracked);
+            putBall(tracked);
+        }
+        balls.clear();
+        balls.putAll(kept);
+
+        Map<PlayerLine, Integer> keptLines = new IdentityHashMap<>();
+        ensureBody(8);
+        SessionProtocol.putVarLong(body, playerLines.size());
+        for (PlayerLine line : playerLines) {
+            Integer id = lines.get(line);
+            if (id == null) {
+                id = nextLineId++;
+            }
+            keptLines.put(line, id);
+            putLine(id, line);
+        }
+        lines.clear();
+        lines.putAll(keptLines);
+
+        this.level = level;
+        this.levelIndex = levelIndex;
+        this.score = score;
+        this.timer = level.timer;
+        this.keyframeTick = tick;
+        endRecord(tick);
+    }
+
+    private void writeDelta(long tick, Level level, List<PlayerLine> playerLines, int score) {
+        long ticks = tick - this.tick;
+        for (TrackedBall tracked : balls.values()) {
+            predict(tracked, ticks);
+            tracked.seen = false;
+        }
+        timer = predictTimer(timer, ticks);
+
+        body.clear();
+        SessionProtocol.putVarLong(body, (tick - recordTick) << 1);
+        int events = 0;
+
+        for (Ball ball : level.balls) {
+            ensureBody(64);
+            TrackedBall tracked = balls.get(ball);
+            if (tracked == null) {
+                tracked = new TrackedBall(nextBallId++);
+                setExactly(tracked, ball);
+                balls.put(ball, tracked);
+                body.put((byte) BALL_ADDED);
+                putBall(tracked);
+                events++;
+            } else if (putChanges(tracked, ball, ticks)) {
+                events++;
+            }
+            tracked.seen = true;
+        }
+        for (Iterator<TrackedBall> it = balls.values().iterator(); it.hasNext(); ) {
+            TrackedBall tracked = it.next();
+            if (!tracked.seen) {
+                ensureBody(8);
+                body.put((byte) BALL_REMOVED);
+                SessionProtocol.putVarLong(body, tracked.id);
+                it.remove();
+                events++;
+            }
+        }
+
+        for (PlayerLine line : playerLines) {
+            if (!lines.containsKey(line)) {
+                int id = nextLineId++;
+                lines.put(line, id);
+                ensureBody(8);
+                body.put((byte) LINE_ADDED);
+                putLine(id, line);
+                events++;
+            }
+        }
+        // Every line on the board is tracked by now, so any more tracked lines than that have been removed
+        if (lines.size() > playerLines.size()) {
+            for (Iterator<Map.Entry<PlayerLine, Integer>> it = lines.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<PlayerLine, Integer> entry = it.next();
+                if (!containsLine(playerLines, entry.getKey())) {
+                    ensureBody(8);
+                    body.put((byte) LINE_REMOVED);
+                    SessionProtocol.putVarLong(body, entry.getValue());
+                    it.remove();
+                    events++;
+                }
+            }
+        }
+
+        ensureBody(32);
+        if (score != this.score) {
+            body.put((byte) SCORE);
+            SessionProtocol.putZigZag(body, score);
+            this.score = score;
+            events++;
+        }
+        if (level.timer != timer) {
+            body.put((byte) TIMER);
+            SessionProtocol.putZigZag(body, level.timer);
+            timer = level.timer;
+            events++;
+        }
+        if (!queue.equals(level.ballQueue)) {
+            body.put((byte) QUEUE);
+            putQueue(level.ballQueue);
+            events++;
+        }
+
+        // With nothing to correct the decoder predicts this tick on its own, and the next delta covers it
+        if (events > 0) {
+            endRecord(tick);
+        }
+    }
+
+    private static boolean containsLine(List<PlayerLine> playerLines, PlayerLine line) {
+        for (PlayerLine candidate : playerLines) {
+            if (candidate == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The timer as it counts down on its own, as Level.update does while the level is being played.
+     */
+    static int predictTimer(int timer, long ticks) {
+        if (timer > 0) {
+            return (int) Math.max(0, timer - ticks);
+        }
+        return timer < 0 ? (int) (timer - ticks) : 0;
+    }
+
+    /**
+     * Move a ball on by the given number of ticks, changing its velocity by its acceleration before each move.
+     * The decoder does the same sum.
+     */
+    private static void predict(TrackedBall tracked, long ticks) {
+        long steps = ticks * (ticks + 1) / 2;
+        tracked.x += tracked.vx * ticks + tracked.ax * steps;
+        tracked.y += tracked.vy * ticks + tracked.ay * steps;
+        tracked.vx += tracked.ax * ticks;
+        tracked.vy += tracked.ay * ticks;
+    }
+
+    /**
+     * Write a changed-ball event if the ball is not where the decoder will show it.
+     * @return whether an event was written
+     */
+    private boolean putChanges(TrackedBall tracked, Ball ball, long ticks) {
+        PVector position = ball.getPosition();
+        PVector velocity = ball.getVelocity();
+        long x = quantise(position.x);
+        long y = quantise(position.y);
+        long vx = quantise(velocity.x);
+        long vy = quantise(velocity.y);
+        long ax = tracked.ax;
+        long ay = tracked.ay;
+        if (ticks == 1) {
+            long changeX = vx - tracked.lastVx;
+            long changeY = vy - tracked.lastVy;
+            ax = changeX == tracked.lastChangeX ? changeX : 0;
+            ay = changeY == tracked.lastChangeY ? changeY : 0;
+            tracked.lastChangeX = changeX;
+            tracked.lastChangeY = changeY;
+        } else {
+            tracked.lastChangeX = 0;
+            tracked.lastChangeY = 0;
+        }
+        tracked.lastVx = vx;
+        tracked.lastVy = vy;
+        int changed = 0;
+        if (Math.abs(x - tracked.x) > toleranceUnits || Math.abs(y - tracked.y) > toleranceUnits) {
+            changed |= CHANGED_POSITION;
+        }
+        if (vx != tracked.vx || vy != tracked.vy) {
+            changed |= CHANGED_VELOCITY;
+        }
+        if (ball.getColorCode() != tracked.color) {
+            changed |= CHANGED_COLOR;
+        }
+        if (ax != tracked.ax || ay != tracked.ay) {
+            changed |= CHANGED_ACCELERATION;
+        }
+        if (changed == 0) {
+            return false;
+        }
+        body.put((byte) (BALL_CHANGED | changed));
+        SessionProtocol.putVarLong(body, tracked.id);
+        if ((changed & CHANGED_POSITION) != 0) {
+            long stepsX = Math.round((x - tracked.x) / (double) POSITION_STEP);
+            long stepsY = Math.round((y - tracked.y) / (double) POSITION_STEP);
+            SessionProtocol.putZigZag(body, stepsX);
+            SessionProtocol.putZigZag(body, stepsY);
+            tracked.x += stepsX * POSITION_STEP;
+            tracked.y += stepsY * POSITION_STEP;
+        }
+        if ((changed & CHANGED_VELOCITY) != 0) {
+            SessionProtocol.putZigZag(body, vx - tracked.vx);
+            SessionProtocol.putZigZag(body, vy - tracked.vy);
+            tracked.vx = vx;
+            tracked.vy = vy;
+        }
+        if ((changed & CHANGED_COLOR) != 0) {
+            body.put((byte) ball.getColorCode());
+            tracked.color = ball.getColorCode();
+        }
+        if ((changed & CHANGED_ACCELERATION) != 0) {
+            SessionProtocol.putZigZag(body, ax);
+            SessionProtocol.putZigZag(body, ay);
+            tracked.ax = ax;
+            tracked.ay = ay;
+        }
+        return true;
+    }
+
+    private static void setExactly(TrackedBall tracked, Ball ball) {
+        PVector position = ball.getPosition();
+        PVector velocity = ball.getVelocity();
+        tracked.color = ball.getColorCode();
+        tracked.x = quantise(position.x);
+        tracked.y = quantise(position.y);
+        tracked.vx = quantise(velocity.x);
+        tracked.vy = quantise(velocity.y);
+        tracked.ax = 0;
+        tracked.ay = 0;
+        tracked.lastVx = tracked.vx;
+        tracked.lastVy = tracked.vy;
+        tracked.lastChangeX = 0;
+        tracked.lastChangeY = 0;
+    }
+
+    static long quantise(float value) {
+        return Math.round((double) value * UNITS_PER_PIXEL);
+    }
+
+    private void putBall(TrackedBall tracked) {
+        SessionProtocol.putVarLong(body, tracked.id);
+        body.put((byte) tracked.color);
+        SessionProtocol.putZigZag(body, tracked.x);
+        SessionProtocol.putZigZag(body, tracked.y);
+        SessionProtocol.putZigZag(body, tracked.vx);
+        SessionProtocol.putZigZag(body, tracked.vy);
+    }
+
+    /**
+     * A line as its points in whole pixels: the start of the first segment, then the end of every segment.
+     */
+    private void putLine(int id, PlayerLine line) {
+        int segments = line.getSegmentCount();
+        ensureBody(16 + (segments + 1) * 20);
+        SessionProtocol.putVarLong(body, id);
+        SessionProtocol.putVarLong(body, segments == 0 ? 0 : segments + 1);
+        float[] points = line.getPackedPoints();
+        long lastX = 0;
+        long lastY = 0;
+        for (int i = 0; i < segments; i++) {
+            int at = i * PlayerLine.POINT_STRIDE;
+            if (i == 0) {
+                long x = Math.round(points[at]);
+                long y = Math.round(points[at + 1]);
+                SessionProtocol.putZigZag(body, x - lastX);
+                SessionProtocol.putZigZag(body, y - lastY);
+                lastX = x;
+                lastY = y;
+            }
+            long x = Math.round(points[at + 2]);
+            long y = Math.round(points[at + 3]);
+            SessionProtocol.putZigZag(body, x - lastX);
+            SessionProtocol.putZigZag(body, y - lastY);
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    private void putQueue(List<String> ballQueue) {
+        int bytes = 8;
+        for (String color : ballQueue) {
+            bytes += 8 + color.length() * 3;
+        }
+        ensureBody(bytes);
+        SessionProtocol.putVarLong(body, ballQueue.size());
+        for (String color : ballQueue) {
+            byte[] encoded = color.getBytes(StandardCharsets.UTF_8);
+            SessionProtocol.putVarLong(body, encoded.length);
+            body.put(encoded);
+        }
+        queue.clear();
+        queue.addAll(ballQueue);
+    }
+
+    private void ensureBody(int bytes) {
+        if (body.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(body.capacity() * 2, body.position() + bytes));
+            body.flip();
+            grown.put(body);
+            body = grown;
+        }
+    }
+
+    private void endRecord(long tick) {
+        body.flip();
+        int needed = body.remaining() + 10;
+        if (data.remaining() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(data.capacity() * 2, data.position() + needed));
+            data.flip();
+            grown.put(data);
+            data = grown;
+        }
+        SessionProtocol.putVarLong(data, body.remaining());
+        data.put(body);
+        records++;
+        recordTick = tick;
+    }
+
+    /**
+     * Bytes written so far, header included.
+     */
+    public int size() {
+        return data.position();
+    }
+
+    public int getRecordCount() {
+        return records;
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[data.position()];
+        System.arraycopy(data.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(data.array(), 0, data.position());
+        out.flush();
+    }
+}
@@ -8,9 +8,14 @@ public class Spawner extends Tile{
         super(x, y, level);
     }
 
+    @Override
+    public String getSpriteName() {
+        return "entrypoint";
+    }
+
     public void draw(App app) {
 
-        PImage image = app.getSprite("entrypoint");
+        PImage image = app.getSprite(getSpriteName());
 
         if (image != null){
             app.image(image, x * App.CELLSIZE, y * App.CELLSIZE + App.TOPBAR);
@@ -0,0 +1,113 @@
+package inkball;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+/**
+ * All game sprites packed into one image, addressed by integer region instead of by name.
+ * Regions are laid out in rows of {@link #ATLAS_WIDTH} pixels in the order of {@link #SPRITE_NAMES}.
+ */
+public class SpriteAtlas {
+    public static final String[] SPRITE_NAMES = {
+            "ball0", "ball1", "ball2", "ball3", "ball4",
+            "entrypoint", "hole0", "hole1", "hole2", "hole3", "hole4",
+            "tile", "wall0", "wall1", "wall2", "wall3", "wall4",
+            "up", "down", "right", "left"
+    };
+    // First region of each family; the colour code is added to the ball, hole and wall bases
+    public static final int BALL = 0;
+    public static final int ENTRYPOINT = 5;
+    public static final int HOLE = 6;
+    public static final int TILE = 11;
+    public static final int WALL = 12;
+    public static final int UP = 17;
+    public static final int DOWN = 18;
+    public static final int RIGHT = 19;
+    public static final int LEFT = 20;
+    private static final int ATLAS_WIDTH = 256;
+
+    private final PImage image;
+    private final int[] regionX = new int[SPRITE_NAMES.length];
+    private final int[] regionY = new int[SPRITE_NAMES.length];
+    private final int[] regionWidth = new int[SPRITE_NAMES.length];
+    private final int[] regionHeight = new int[SPRITE_NAMES.length];
+
+    private SpriteAtlas(App app, PImage[] sprites) {
+        int x = 0;
+        int y = 0;
+        int rowHeight = 0;
+        for (int i = 0; i < sprites.length; i++) {
+            if (x > 0 && x + sprites[i].width > ATLAS_WIDTH) {
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            regionX[i] = x;
+            regionY[i] = y;
+            regionWidth[i] = sprites[i].width;
+            regionHeight[i] = sprites[i].height;
+            x += sprites[i].width;
+            rowHeight = Math.max(rowHeight, sprites[i].height);
+        }
+
+        image = app.createImage(ATLAS_WIDTH, y + rowHeight, PApplet.ARGB);
+        for (int i = 0; i < sprites.length; i++) {
+            image.set(regionX[i], regionY[i], sprites[i]);
+        }
+    }
+
+    /**
+     * Pack the app's sprites, or return null if any of them failed to load.
+     */
+    public static SpriteAtlas pack(App app) {
+        PImage[] sprites = new PImage[SPRITE_NAMES.length];
+        for (int i = 0; i < SPRITE_NAMES.length; i++) {
+            sprites[i] = app.getSprite(SPRITE_NAMES[i]);
+            if (sprites[i] == null) {
+                return null;
+            }
+        }
+        return new SpriteAtlas(app, sprites);
+    }
+
+    /**
+     * Region index for a sprite name, or -1 if it is not in the atlas.
+     */
+    public static int indexOf(String name) {
+        for (int i = 0; i < SPRITE_NAMES.length; i++) {
+            if (SPRITE_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static int ball(char colorCode) {
+        return BALL + (colorCode - '0');
+    }
+
+    public void draw(PApplet target, int region, float x, float y, float width, float height) {
+        target.image(image, x, y, width, height,
+                regionX[region], regionY[region],
+                regionX[region] + regionWidth[region], regionY[region] + regionHeight[region]);
+    }
+
+    public void draw(PGraphics target, int region, float x, float y) {
+        target.image(image, x, y, regionWidth[region], regionHeight[region],
+                regionX[region], regionY[region],
+                regionX[region] + regionWidth[region], regionY[region] + regionHeight[region]);
+    }
+
+    public int getWidth(int region) {
+        return regionWidth[region];
+    }
+
+    public int getHeight(int region) {
+        return regionHeight[region];
+    }
+
+    public PImage getImage() {
+        return image;
+    }
+}
@@ -15,8 +15,15 @@ public class Tile {
     }
 
 
+    /**
+     * Name of the sprite this tile is drawn with.
+     */
+    public String getSpriteName() {
+        return "tile";
+    }
+
     public void draw(App app) {
-        image = app.getSprite("tile");
+        image = app.getSprite(getSpriteName());
         if (image != null) {
             app.image(image, x * App.CELLSIZE, y * App.CELLSIZE + App.TOPBAR);
         }
@@ -0,0 +1,112 @@
+package inkball;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: items are filed into a ring of slots by deadline, and advancing the wheel hands back
+ * every item that has come due, in batches, without a priority queue. Items due more than one turn of the wheel
+ * ahead wait in their slot until their turn comes round. Not thread safe; the owner feeds it from one thread.
+ */
+public class TimingWheel<T> {
+
+    private static class Slot {
+        Object[] items = new Object[8];
+        long[] ticks = new long[8];
+        int size;
+
+        void add(Object item, long tick) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                ticks = Arrays.copyOf(ticks, size * 2);
+            }
+            items[size] = item;
+            ticks[size] = tick;
+            size++;
+        }
+    }
+
+    private final long resolutionNanos;
+    private final long startNanos;
+    private final Slot[] slots;
+    private final int mask;
+    // The next wheel tick to be handed out
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param slots number of slots, rounded up to a power of two
+     * @param resolutionNanos the time each slot covers
+     * @param startNanos the {@link System#nanoTime()} of wheel tick zero
+     */
+    public TimingWheel(int slots, long resolutionNanos, long startNanos) {
+        if (slots <= 0 || resolutionNanos <= 0) {
+            throw new IllegalArgumentException("Slots and resolution must be positive: " + slots + ", " + resolutionNanos);
+        }
+        int count = Integer.highestOneBit(slots);
+        if (count < slots) {
+            count <<= 1;
+        }
+        this.slots = new Slot[count];
+        for (int i = 0; i < count; i++) {
+            this.slots[i] = new Slot();
+        }
+        this.mask = count - 1;
+        this.resolutionNanos = resolutionNanos;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * File an item to come due at the given time. Deadlines already passed come due on the next advance.
+     */
+    public void schedule(T item, long deadlineNanos) {
+        long tick = Math.max(currentTick, Math.floorDiv(deadlineNanos - startNanos + resolutionNanos - 1, resolutionNanos));
+        slots[(int) (tick & mask)].add(item, tick);
+        size++;
+    }
+
+    /**
+     * Move the wheel up to the given time, adding every item due by then to the list.
+     * A wheel that fell more than a full turn behind visits each slot once rather than every missed tick.
+     * @return the number of items added
+     */
+    @SuppressWarnings("unchecked")
+    public int advance(long nowNanos, List<? super T> due) {
+        long target = Math.floorDiv(nowNanos - startNanos, resolutionNanos);
+        if (target < currentTick) {
+            return 0;
+        }
+        int added = 0;
+        long last = Math.min(target, currentTick + slots.length - 1);
+        for (long tick = currentTick; tick <= last; tick++) {
+            Slot slot = slots[(int) (tick & mask)];
+            int kept = 0;
+            for (int i = 0; i < slot.size; i++) {
+                if (slot.ticks[i] <= target) {
+                    due.add((T) slot.items[i]);
+                    added++;
+                } else {
+                    slot.items[kept] = slot.items[i];
+                    slot.ticks[kept] = slot.ticks[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(slot.items, kept, slot.size, null);
+            slot.size = kept;
+        }
+        currentTick = target + 1;
+        size -= added;
+        return added;
+    }
+
+    /**
+     * Items filed and not yet handed out.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getResolutionNanos() {
+        return resolutionNanos;
+    }
+}
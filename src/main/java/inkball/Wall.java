@@ -10,9 +10,14 @@ public class Wall extends Tile{
         this.wallColor = wallColor;
     }
 
+    @Override
+    public String getSpriteName() {
+        return "wall" + wallColor;
+    }
+
     @Override
     public void draw(App app) {
-        PImage image = app.getSprite("wall" + wallColor);
+        PImage image = app.getSprite(getSpriteName());
 
         if (image != null){
             app.image(image, x * App.CELLSIZE, y * App.CELLSIZE + App.TOPBAR);
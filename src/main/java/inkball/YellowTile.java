@@ -5,15 +5,27 @@ import processing.core.PImage;
 public class YellowTile {
     private int x;
     private int y;
+    private final int cols;
+    private final int rows;
 
     public YellowTile(int x, int y) {
+        this(x, y, App.BOARD_WIDTH, App.BOARD_HEIGHT - 2);
+    }
+
+    /**
+     * A tile that runs clockwise around the edge of a board of the given size in cells.
+     */
+    public YellowTile(int x, int y, int cols, int rows) {
         this.x = x;
         this.y = y;
+        this.cols = cols;
+        this.rows = rows;
     }
+
     void move() {
-        if (y == 0 && x < App.BOARD_WIDTH - 1) x++;
-        else if (x == App.BOARD_WIDTH - 1 && y < App.BOARD_HEIGHT - 3) y++;
-        else if (y == App.BOARD_HEIGHT - 3 && x > 0) x--;
+        if (y == 0 && x < cols - 1) x++;
+        else if (x == cols - 1 && y < rows - 1) y++;
+        else if (y == rows - 1 && x > 0) x--;
         else if (x == 0 && y > 0) y--;
     }
 
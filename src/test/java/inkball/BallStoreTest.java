@@ -0,0 +1,180 @@
+package inkball;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PVector;
+import processing.data.JSONObject;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BallStoreTest {
+    private Level level;
+
+    @BeforeEach
+    void setUp() {
+        try {
+            String configContent = new String(Files.readAllBytes(Paths.get("config.json")));
+            Config config = new Config(JSONObject.parse(configContent));
+            level = new Level(config.getLevelConfig(0), config, 0);
+            level.loadFile();
+        } catch (Exception e) {
+            fail("Failed to load configuration: " + e.getMessage());
+        }
+    }
+
+    @Test
+    void testNewBallHasItsOwnStore() {
+        Ball ball = new Ball(2, 3, '1', level);
+        assertNotSame(level.ballStore, ball.store);
+        assertEquals(1, ball.store.size());
+        assertEquals(2 * App.CELLSIZE + App.CELLSIZE / 2, ball.getPosition().x);
+    }
+
+    @Test
+    void testAddingToLevelMovesStateIntoLevelStore() {
+        int initial = level.ballStore.size();
+        Ball ball = new Ball(2, 3, '1', level);
+        ball.setVelocity(new PVector(0.5f, -0.5f));
+
+        level.balls.add(ball);
+
+        assertSame(level.ballStore, ball.store);
+        assertEquals(initial + 1, level.ballStore.size());
+        assertSame(ball, level.balls.get(ball.slot));
+        assertEquals(0.5f, ball.getVelocity().x);
+        assertEquals(-0.5f, ball.getVelocity().y);
+        assertEquals('1', ball.getColorCode());
+    }
+
+    @Test
+    void testSwapRemoveKeepsBallsPacked() {
+        level.balls.clear();
+        Ball first = new Ball(2, 2, '1', level);
+        Ball second = new Ball(3, 2, '2', level);
+        Ball third = new Ball(4, 2, '3', level);
+        level.balls.add(first);
+        level.balls.add(second);
+        level.balls.add(third);
+
+        level.balls.remove(first);
+
+        assertEquals(2, level.balls.size());
+        assertSame(third, level.balls.get(0));
+        assertEquals(0, third.slot);
+        assertEquals('3', third.getColorCode());
+        assertSame(second, level.balls.get(1));
+    }
+
+    @Test
+    void testRemovedBallHandleStaysUsable() {
+        level.balls.clear();
+        Ball ball = new Ball(2, 2, '4', level);
+        level.balls.add(ball);
+        ball.setPosition(new PVector(100, 200));
+
+        level.balls.remove(ball);
+
+        assertNotSame(level.ballStore, ball.store);
+        assertEquals(100, ball.getPosition().x);
+        assertEquals(200, ball.getPosition().y);
+        assertEquals('4', ball.getColorCode());
+    }
+
+    @Test
+    void testRemoveCaptured() {
+        level.balls.clear();
+        Ball kept = new Ball(2, 2, '1', level);
+        Ball captured = new Ball(3, 2, '2', level);
+        Ball alsoKept = new Ball(4, 2, '3', level);
+        level.balls.add(kept);
+        level.balls.add(captured);
+        level.balls.add(alsoKept);
+        captured.setCaptured(true);
+
+        level.ballStore.removeCaptured();
+
+        assertEquals(2, level.balls.size());
+        assertTrue(level.balls.contains(kept));
+        assertTrue(level.balls.contains(alsoKept));
+        assertFalse(level.balls.contains(captured));
+        assertTrue(captured.getCaptured());
+    }
+
+    @Test
+    void testStoreGrowsPastInitialCapacity() {
+        level.balls.clear();
+        for (int i = 0; i < 100; i++) {
+            level.balls.add(new Ball(2 + i % 10, 2, '0', level));
+        }
+        assertEquals(100, level.ballStore.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, level.balls.get(i).slot);
+        }
+    }
+
+    @Test
+    void testOnlyAppendIsSupported() {
+        Ball ball = new Ball(2, 2, '1', level);
+        assertThrows(UnsupportedOperationException.class, () -> level.balls.add(0, ball));
+    }
+
+    @Test
+    void testFastBallBouncesOffThinWall() {
+        // Column 10 has a single wall cell in row 6, which a ball moving 100px a tick would jump over
+        Ball ball = new Ball(10, 4, '0', level);
+        ball.setVelocity(0, 100);
+        ball.update();
+
+        assertEquals(-100, ball.getVelocity().y, 1e-4);
+        assertEquals(0, ball.getVelocity().x, 1e-4);
+        assertTrue(ball.getPosition().y < 6 * App.CELLSIZE + App.TOPBAR, "Ball should stay above the wall");
+    }
+
+    @Test
+    void testSeveralBouncesInOneTick() {
+        Ball ball = new Ball(2, 2, '0', level);
+        ball.setPosition(100, 150);
+        ball.setVelocity(-80, -60);
+        ball.update();
+
+        // The ball reaches the top wall first, then the left wall, within the same tick
+        assertEquals(80, ball.getVelocity().x, 1e-3);
+        assertEquals(60, ball.getVelocity().y, 1e-3);
+        assertTrue(ball.getPosition().x >= App.CELLSIZE + 2 + ball.getRadius());
+        assertTrue(ball.getPosition().y >= App.TOPBAR + App.CELLSIZE + 2 + ball.getRadius());
+    }
+
+    @Test
+    void testFastBallIsRecolouredBySideHit() {
+        // Row 0 has blue walls ('2') in columns 7 to 10
+        Ball ball = new Ball(8, 2, '1', level);
+        ball.setVelocity(0, -50);
+        ball.update();
+
+        assertEquals('2', ball.getColorCode());
+        assertEquals(50, ball.getVelocity().y, 1e-4);
+    }
+
+    @Test
+    void testFastBallBouncesOffLine() {
+        level.balls.clear();
+        level.ballQueue.clear();
+        Ball ball = new Ball(3, 2, '0', level);
+        ball.setVelocity(80, 0);
+        level.balls.add(ball);
+        PlayerLine line = new PlayerLine();
+        line.addPoint(150, 100);
+        line.addPoint(150, 200);
+        java.util.List<PlayerLine> lines = new java.util.ArrayList<>();
+        lines.add(line);
+
+        level.update(lines);
+
+        assertTrue(lines.isEmpty(), "The line should be used up");
+        assertEquals(-80, ball.getVelocity().x, 1e-4);
+        assertTrue(ball.getPosition().x < 150);
+    }
+}
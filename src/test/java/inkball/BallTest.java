@@ -254,8 +254,8 @@ public class BallTest {
         // Arrange
         TestApp testApp = new TestApp();
         Ball ball = new Ball(5, 5, '1', level); // Ball with coordinates (x=5, y=5)
-        ball.captured = true; // Set ball as captured
-        ball.attractingHole = new Hole(5, 5, '1',level); // Hole with same color as the ball
+        ball.setCaptured(true); // Set ball as captured
+        ball.setAttractingHole(new Hole(5, 5, '1',level)); // Hole with same color as the ball
 
         // Act
         ball.handleCapture();
@@ -270,25 +270,25 @@ public class BallTest {
         // Arrange
         TestApp testApp = new TestApp();
         Ball ball = new Ball(5, 5, '1', level); // Ball with coordinates (x=5, y=5)
-        ball.originalRadius = 10; // Set original radius
-        ball.position = new PVector(5 * App.CELLSIZE, 5 * App.CELLSIZE); // Set ball position
+        ball.setOriginalRadius(10); // Set original radius
+        ball.setPosition(new PVector(5 * App.CELLSIZE, 5 * App.CELLSIZE)); // Set ball position
 
         // Create an attracting hole
-        ball.attractingHole = new Hole(5, 5, '1',level); // Hole with same position and color
+        ball.setAttractingHole(new Hole(5, 5, '1',level)); // Hole with same position and color
 
         // Act
         ball.updateRadius();
 
         // Assert
-        assertEquals(ball.originalRadius, ball.radius, 0.01, "Radius should remain original when hole is at the same position");
+        assertEquals(ball.getOriginalRadius(), ball.getRadius(), 0.01, "Radius should remain original when hole is at the same position");
 
         // Move the hole further away
-        ball.attractingHole.x = 10;
+        ball.getAttractingHole().x = 10;
         ball.updateRadius();
 
         // Assert
-        float expectedRadius = ball.originalRadius * Math.max(0, Math.min(1, PVector.dist(ball.position, new PVector(10 * App.CELLSIZE + App.CELLSIZE, 10 * App.CELLSIZE + App.TOPBAR)) / 32));
-        assertEquals(expectedRadius, ball.radius, 0.01, "Radius should update based on distance to the hole");
+        float expectedRadius = ball.getOriginalRadius() * Math.max(0, Math.min(1, PVector.dist(ball.getPosition(), new PVector(10 * App.CELLSIZE + App.CELLSIZE, 10 * App.CELLSIZE + App.TOPBAR)) / 32));
+        assertEquals(expectedRadius, ball.getRadius(), 0.01, "Radius should update based on distance to the hole");
     }
 
     @Test
@@ -296,22 +296,75 @@ public class BallTest {
         // Arrange
         TestApp testApp = new TestApp();
         Ball ball = new Ball(5, 5, '1', level); // Ball with coordinates (x=5, y=5)
-        ball.position = new PVector(5 * App.CELLSIZE, 5 * App.CELLSIZE); // Set ball position
-        ball.velocity = new PVector(0, 0); // Initial velocity
+        ball.setPosition(new PVector(5 * App.CELLSIZE, 5 * App.CELLSIZE)); // Set ball position
+        ball.setVelocity(new PVector(0, 0)); // Initial velocity
 
         // Create an attracting hole close to the ball
         Hole hole = new Hole(5, 5, '1',level); // Hole with same position and color
 
         // Move the ball closer to the hole but outside of capture range
-        ball.position = new PVector(5 * App.CELLSIZE + 15, 5 * App.CELLSIZE); // Set ball position within attraction range
+        ball.setPosition(new PVector(5 * App.CELLSIZE + 15, 5 * App.CELLSIZE)); // Set ball position within attraction range
 
         // Act
         ball.checkHoleAttraction();
 
         // Assert
-        assertFalse(ball.captured, "Ball should not be captured when within distance of 10 from the hole but outside capture range");
-        assertFalse(ball.velocity.mag() > 0, "Velocity should change due to attraction vector when within distance of 32 from the hole");
+        assertFalse(ball.getCaptured(), "Ball should not be captured when within distance of 10 from the hole but outside capture range");
+        assertFalse(ball.getVelocity().mag() > 0, "Velocity should change due to attraction vector when within distance of 32 from the hole");
     }
 
-}
+    @Test
+    void testUpdateDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Ball ball = new Ball(3, 13, '2', level);
+
+        // Warm up so class loading and JIT compilation are not counted
+        for (int i = 0; i < 20000; i++) {
+            ball.setPosition(3 * App.CELLSIZE + 16, 13 * App.CELLSIZE + 16 + App.TOPBAR);
+            ball.update();
+        }
 
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            ball.update();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // A capture may queue a respawn, anything per-tick would be hundreds of kilobytes
+        assertTrue(allocated < 1024, "Ball.update() allocated " + allocated + " bytes over 10000 ticks");
+    }
+
+    @Test
+    void testFastUpdateDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        float speed = BallStore.DISCRETE_STEP_LIMIT * 3;
+        Ball ball = new Ball(3, 13, '2', level);
+        PlayerLine line = new PlayerLine();
+        line.addPoint(100, 100);
+        line.addPoint(140, 120);
+        java.util.List<PlayerLine> lines = new java.util.ArrayList<>();
+        lines.add(line);
+        level.segmentGrid.sync(lines);
+        float[] contact = new float[3];
+        float[] normal = new float[2];
+
+        // Fast balls are swept along their move, against walls in update() and against lines in findHit()
+        long before = 0;
+        for (int i = 0; i < 30000; i++) {
+            if (i == 20000) {
+                before = threads.getThreadAllocatedBytes(threadId);
+            }
+            ball.setPosition(3 * App.CELLSIZE + 16, 13 * App.CELLSIZE + 16 + App.TOPBAR);
+            ball.setVelocity(speed, -speed);
+            ball.update();
+            level.segmentGrid.findHit(110, 140, speed, -speed, ball.getRadius(), contact, normal);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 1024, "Sweeping a fast ball allocated " + allocated + " bytes over 10000 ticks");
+    }
+}
@@ -0,0 +1,52 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkedLayoutTest {
+
+    @Test
+    void testUnsetCellsAreFloor() {
+        ChunkedLayout layout = new ChunkedLayout(1000, 1000);
+        assertEquals(ChunkedLayout.FLOOR, layout.get(500, 500));
+        assertEquals(ChunkedLayout.FLOOR, layout.get(-1, 0));
+        assertEquals(ChunkedLayout.FLOOR, layout.get(0, 1000));
+        assertEquals(0, layout.getPopulatedChunks());
+    }
+
+    @Test
+    void testOnlyWrittenChunksAreAllocated() {
+        ChunkedLayout layout = new ChunkedLayout(1000, 1000);
+        layout.set(0, 0, 'X');
+        layout.set(63, 63, 'X');
+        layout.set(999, 999, 'H');
+        layout.set(500, 500, ChunkedLayout.FLOOR);
+
+        assertEquals(2, layout.getPopulatedChunks());
+        assertTrue(layout.isPopulated(0, 0));
+        assertTrue(layout.isPopulated(999 / ChunkedLayout.CHUNK_SIZE, 999 / ChunkedLayout.CHUNK_SIZE));
+        assertFalse(layout.isPopulated(1, 0));
+        assertEquals('X', layout.get(63, 63));
+        assertEquals('H', layout.get(999, 999));
+        assertEquals(ChunkedLayout.FLOOR, layout.get(62, 63));
+    }
+
+    @Test
+    void testMatchesDenseGrid() {
+        char[][] grid = {"X 1".toCharArray(), "S".toCharArray()};
+        ChunkedLayout layout = ChunkedLayout.of(grid);
+        assertEquals(3, layout.getCols());
+        assertEquals(2, layout.getRows());
+        assertEquals('1', layout.get(2, 0));
+        assertEquals('S', layout.get(0, 1));
+        assertEquals(ChunkedLayout.FLOOR, layout.get(2, 1));
+    }
+
+    @Test
+    void testWritesOutsideLayoutAreRejected() {
+        ChunkedLayout layout = new ChunkedLayout(10, 10);
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.set(10, 0, 'X'));
+        assertThrows(IllegalArgumentException.class, () -> new ChunkedLayout(-1, 10));
+    }
+}
@@ -0,0 +1,153 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+import processing.data.JSONObject;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CollisionGridTest {
+
+    private static boolean isWallChar(char cell) {
+        return cell >= '1' && cell <= '4' || cell == 'X';
+    }
+
+    private static char[][] randomGrid(Random random, int rows, int cols) {
+        String cells = "X1234 UDLRSH";
+        char[][] grid = new char[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                grid[row][col] = cells.charAt(random.nextInt(cells.length()));
+            }
+        }
+        return grid;
+    }
+
+    @Test
+    void testMatchesLevelLayouts() throws Exception {
+        String configContent = new String(Files.readAllBytes(Paths.get("config.json")));
+        Config config = new Config(JSONObject.parse(configContent));
+        for (int index = 0; index < config.levelConfigs.size(); index++) {
+            Level level = new Level(config.getLevelConfig(index), config, index);
+            level.loadFile();
+            CollisionGrid walls = level.collisionGrid;
+            for (int row = 0; row < level.grid.length; row++) {
+                for (int col = 0; col < level.grid[row].length; col++) {
+                    char cell = level.grid[row][col];
+                    assertEquals(isWallChar(cell), walls.isWall(col, row), "Cell " + col + "," + row);
+                    if (isWallChar(cell)) {
+                        assertEquals(cell == 'X' ? '0' : cell, walls.getWallColor(col, row));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testAcceleration() {
+        char[][] grid = {"UDLR X".toCharArray()};
+        CollisionGrid walls = CollisionGrid.compile(grid);
+        assertEquals(CollisionGrid.UP, walls.getAcceleration(0, 0));
+        assertEquals(CollisionGrid.DOWN, walls.getAcceleration(1, 0));
+        assertEquals(CollisionGrid.LEFT, walls.getAcceleration(2, 0));
+        assertEquals(CollisionGrid.RIGHT, walls.getAcceleration(3, 0));
+        assertEquals(CollisionGrid.NO_ACCELERATION, walls.getAcceleration(4, 0));
+        assertEquals(CollisionGrid.NO_ACCELERATION, walls.getAcceleration(5, 0));
+        assertEquals(CollisionGrid.NO_ACCELERATION, walls.getAcceleration(-1, 0));
+        assertEquals(CollisionGrid.NO_ACCELERATION, walls.getAcceleration(0, 1));
+    }
+
+    @Test
+    void testNeighbourhoodMatchesCells() {
+        // Wider than a word so rows span several longs
+        char[][] grid = randomGrid(new Random(4), 20, 150);
+        CollisionGrid walls = CollisionGrid.compile(grid);
+        for (int row = -1; row <= grid.length; row++) {
+            for (int col = -1; col <= grid[0].length; col++) {
+                int expected = 0;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int r = row + dy;
+                        int c = col + dx;
+                        if (r >= 0 && r < grid.length && c >= 0 && c < grid[r].length && isWallChar(grid[r][c])) {
+                            expected |= 1 << ((dy + 1) * 3 + (dx + 1));
+                        }
+                    }
+                }
+                assertEquals(expected, walls.neighbourhood(col, row), "Cell " + col + "," + row);
+            }
+        }
+    }
+
+    @Test
+    void testAnyWallMatchesCells() {
+        Random random = new Random(8);
+        char[][] grid = new char[3][200];
+        for (char[] row : grid) {
+            java.util.Arrays.fill(row, ' ');
+        }
+        for (int i = 0; i < 12; i++) {
+            grid[random.nextInt(3)][random.nextInt(200)] = 'X';
+        }
+        CollisionGrid walls = CollisionGrid.compile(grid);
+        for (int i = 0; i < 2000; i++) {
+            int row = random.nextInt(3);
+            int first = random.nextInt(220) - 10;
+            int last = first + random.nextInt(90);
+            boolean expected = false;
+            for (int col = Math.max(0, first); col <= Math.min(199, last); col++) {
+                expected |= grid[row][col] == 'X';
+            }
+            assertEquals(expected, walls.anyWall(row, first, last), "Row " + row + " from " + first + " to " + last);
+        }
+    }
+
+    @Test
+    void testColoursArePackedPerCell() {
+        char[][] grid = {"1X23".toCharArray(), "4 X1".toCharArray()};
+        CollisionGrid walls = CollisionGrid.compile(grid);
+        assertEquals('1', walls.getWallColor(0, 0));
+        assertEquals('0', walls.getWallColor(1, 0));
+        assertEquals('2', walls.getWallColor(2, 0));
+        assertEquals('3', walls.getWallColor(3, 0));
+        assertEquals('4', walls.getWallColor(0, 1));
+        assertFalse(walls.isWall(1, 1));
+        assertEquals('0', walls.getWallColor(2, 1));
+        assertEquals('1', walls.getWallColor(3, 1));
+    }
+
+    @Test
+    void testNeighbourhoodAcrossChunkRows() {
+        char[][] grid = randomGrid(new Random(6), 140, 70);
+        CollisionGrid walls = CollisionGrid.compile(grid);
+        for (int row = 0; row < grid.length; row++) {
+            for (int col = 0; col < grid[row].length; col++) {
+                int centre = (walls.neighbourhood(col, row) >>> 4) & 1;
+                assertEquals(isWallChar(grid[row][col]) ? 1 : 0, centre, "Cell " + col + "," + row);
+                assertEquals(isWallChar(grid[row][col]), walls.isWall(col, row));
+            }
+        }
+    }
+
+    @Test
+    void testLargeSparseLayoutOnlyAllocatesUsedChunks() {
+        ChunkedLayout layout = new ChunkedLayout(1000, 1000);
+        layout.set(10, 10, 'X');
+        layout.set(990, 990, '3');
+        layout.set(500, 20, 'U');
+        layout.set(700, 700, 'S');
+        CollisionGrid walls = CollisionGrid.compile(layout);
+
+        assertEquals(3, walls.getPopulatedChunks());
+        assertTrue(walls.isWall(10, 10));
+        assertEquals('3', walls.getWallColor(990, 990));
+        assertEquals(CollisionGrid.UP, walls.getAcceleration(500, 20));
+        assertFalse(walls.isWall(700, 700));
+        assertEquals(0, walls.neighbourhood(400, 400));
+        assertTrue(walls.anyWall(990, 0, 999));
+        assertFalse(walls.anyWall(989, 0, 999));
+    }
+}
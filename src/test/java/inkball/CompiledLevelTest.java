@@ -0,0 +1,182 @@
+package inkball;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.data.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledLevelTest {
+    private Config config;
+    private Path outputDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        config = Simulation.loadConfig("config.json");
+        config.seed = 21;
+        outputDir = Files.createTempDirectory("compiled");
+        outputDir.toFile().deleteOnExit();
+    }
+
+    private Path compile(int index) throws IOException {
+        Path output = LevelCompiler.compile(config.getLevelConfig(index), outputDir);
+        output.toFile().deleteOnExit();
+        return output;
+    }
+
+    private static List<String> describeTiles(Level level) {
+        List<String> described = new ArrayList<>();
+        for (Tile tile : level.getTiles()) {
+            described.add(tile.getClass().getSimpleName() + " " + tile.x + "," + tile.y + " " + tile.getSpriteName());
+        }
+        described.sort(null);
+        return described;
+    }
+
+    @Test
+    void testCompiledLevelLoadsLikeText() throws IOException {
+        for (int index = 0; index < config.levelConfigs.size(); index++) {
+            Level text = new Level(config.getLevelConfig(index), config, index, new RandomSource(3));
+            text.loadFile();
+
+            JSONObject compiledConfig = CompiledLevel.open(compile(index)).getLevelConfig();
+            Level compiled = new Level(compiledConfig, config, index, new RandomSource(3));
+            compiled.loadFile();
+
+            assertEquals(text.getCols(), compiled.getCols());
+            assertEquals(text.getRows(), compiled.getRows());
+            assertTrue(Arrays.deepEquals(text.grid, compiled.grid), "Layout of level " + index);
+            assertEquals(describeTiles(text), describeTiles(compiled), "Tiles of level " + index);
+            assertEquals(text.balls.size(), compiled.balls.size());
+            for (int i = 0; i < text.balls.size(); i++) {
+                assertEquals(text.balls.get(i).getPosition(), compiled.balls.get(i).getPosition());
+                assertEquals(text.balls.get(i).getVelocity(), compiled.balls.get(i).getVelocity());
+            }
+        }
+    }
+
+    @Test
+    void testCollisionPlanesLoadAsCompiled() throws IOException {
+        for (int index = 0; index < config.levelConfigs.size(); index++) {
+            Level text = new Level(config.getLevelConfig(index), config, index, new RandomSource(3));
+            text.loadFile();
+            CollisionGrid compiled = CompiledLevel.open(compile(index)).readCollisionGrid();
+
+            assertEquals(text.collisionGrid.getPopulatedChunks(), compiled.getPopulatedChunks());
+            for (int row = 0; row < text.getRows(); row++) {
+                for (int col = 0; col < text.getCols(); col++) {
+                    String cell = "Level " + index + " cell " + col + "," + row;
+                    assertEquals(text.collisionGrid.isWall(col, row), compiled.isWall(col, row), cell);
+                    assertEquals(text.collisionGrid.getWallColor(col, row), compiled.getWallColor(col, row), cell);
+                    assertEquals(text.collisionGrid.getAcceleration(col, row), compiled.getAcceleration(col, row), cell);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRejectsEntitiesOutsideLayout() throws IOException {
+        byte[] full = Files.readAllBytes(compile(0));
+        // Level 1 has a single ball, and the ball table ends the file
+        int ball = full.length - 9;
+        int cols = CompiledLevel.open(compile(0)).getCols();
+
+        ByteBuffer.wrap(full).putInt(ball, cols);
+        Path corrupt = Files.createTempFile(outputDir, "corrupt", CompiledLevel.EXTENSION);
+        corrupt.toFile().deleteOnExit();
+        Files.write(corrupt, full);
+        IOException error = assertThrows(IOException.class, () -> CompiledLevel.open(corrupt));
+        assertTrue(error.getMessage().contains("ball at (" + cols + ", "), error.getMessage());
+
+        ByteBuffer.wrap(full).putInt(ball, 0).putInt(ball + 4, -1);
+        Files.write(corrupt, full);
+        assertThrows(IOException.class, () -> CompiledLevel.open(corrupt));
+    }
+
+    @Test
+    void testRejectsCorruptHeader() throws IOException {
+        byte[] original = Files.readAllBytes(compile(0));
+        int ballCount = ByteBuffer.wrap(original).getShort(30);
+        assertTrue(ballCount > 0);
+        Path corrupt = Files.createTempFile(outputDir, "corrupt", CompiledLevel.EXTENSION);
+        corrupt.toFile().deleteOnExit();
+
+        byte[] badColour = original.clone();
+        badColour[32] = 9;
+        Files.write(corrupt, badColour);
+        IOException error = assertThrows(IOException.class, () -> CompiledLevel.open(corrupt));
+        assertTrue(error.getMessage().contains("unknown colour 9 for ball 0"), error.getMessage());
+
+        // The first layout chunk's column, after cols, rows and the chunk count
+        byte[] badChunk = original.clone();
+        ByteBuffer.wrap(badChunk).putInt(32 + ballCount + 12, 5);
+        Files.write(corrupt, badChunk);
+        error = assertThrows(IOException.class, () -> CompiledLevel.open(corrupt));
+        assertTrue(error.getMessage().contains("layout chunk (5, 0)"), error.getMessage());
+    }
+
+    @Test
+    void testConfigEntryIsCarried() throws IOException {
+        JSONObject original = config.getLevelConfig(1);
+        JSONObject compiled = CompiledLevel.open(compile(1)).getLevelConfig();
+
+        assertEquals(original.getInt("time"), compiled.getInt("time"));
+        assertEquals(original.getInt("spawn_interval"), compiled.getInt("spawn_interval"));
+        assertEquals(original.getDouble("score_increase_from_hole_capture_modifier"),
+                compiled.getDouble("score_increase_from_hole_capture_modifier"));
+        assertEquals(original.getJSONArray("balls").size(), compiled.getJSONArray("balls").size());
+        for (int i = 0; i < original.getJSONArray("balls").size(); i++) {
+            assertEquals(original.getJSONArray("balls").getString(i), compiled.getJSONArray("balls").getString(i));
+        }
+        assertTrue(compiled.getString("layout").endsWith(CompiledLevel.EXTENSION));
+    }
+
+    @Test
+    void testCompiledConfigPlaysTheSameGame() throws IOException {
+        StringBuilder levels = new StringBuilder();
+        for (int index = 0; index < config.levelConfigs.size(); index++) {
+            levels.append(index > 0 ? "," : "").append('"').append(compile(index).toString().replace("\\", "/")).append('"');
+        }
+        String configText = new String(Files.readAllBytes(Paths.get("config.json")));
+        JSONObject json = JSONObject.parse(configText);
+        String compiledText = configText.replaceFirst("(?s)\"levels\"\\s*:\\s*\\[.*?\\]\\s*}\\s*\\]",
+                "\"levels\": [" + levels + "]");
+        Config compiledConfig = new Config(JSONObject.parse(compiledText));
+        compiledConfig.seed = 21;
+        assertEquals(json.getJSONArray("levels").size(), compiledConfig.levelConfigs.size());
+        for (JSONObject levelConfig : compiledConfig.levelConfigs) {
+            assertTrue(levelConfig.getString("layout").endsWith(CompiledLevel.EXTENSION));
+        }
+
+        Simulation text = new Simulation(config);
+        Simulation compiled = new Simulation(compiledConfig);
+        text.run(4000);
+        compiled.run(4000);
+        assertEquals(text.getTotalScore(), compiled.getTotalScore());
+        assertEquals(text.getLevelIndex(), compiled.getLevelIndex());
+        assertEquals(text.getLevel().balls.size(), compiled.getLevel().balls.size());
+        for (int i = 0; i < text.getLevel().balls.size(); i++) {
+            assertEquals(text.getLevel().balls.get(i).getPosition(), compiled.getLevel().balls.get(i).getPosition());
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        assertThrows(IOException.class, () -> CompiledLevel.open(Paths.get("level1.txt")));
+
+        byte[] full = Files.readAllBytes(compile(0));
+        Path truncated = Files.createTempFile(outputDir, "truncated", CompiledLevel.EXTENSION);
+        truncated.toFile().deleteOnExit();
+        Files.write(truncated, Arrays.copyOf(full, full.length - 5));
+        assertThrows(IOException.class, () -> CompiledLevel.open(truncated));
+    }
+}
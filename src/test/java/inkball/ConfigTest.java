@@ -64,6 +64,21 @@ public class ConfigTest {
         assertEquals(Integer.valueOf(-75), config.score_decrease.get("blue"));
     }
 
+    @Test
+    public void testSeedIsReadFromConfig() {
+        JSONObject mockConfig = createMockConfig();
+        mockConfig.setLong("seed", 42L);
+        assertEquals(42L, new Config(mockConfig).seed);
+    }
+
+    @Test
+    public void testLineToleranceIsReadFromConfig() {
+        JSONObject mockConfig = createMockConfig();
+        assertEquals(PlayerLine.DEFAULT_TOLERANCE, new Config(mockConfig).lineTolerance);
+        mockConfig.setFloat("line_tolerance", 2.5f);
+        assertEquals(2.5f, new Config(mockConfig).lineTolerance);
+    }
+
     @Test
     public void testGetLevelConfigWithNegativeIndex() {
         Config config = new Config(createMockConfig());
@@ -0,0 +1,90 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameProfilerTest {
+
+    @Test
+    void testStageTimeIsSummedPerFrame() {
+        FrameProfiler profiler = new FrameProfiler();
+        long start = System.nanoTime() - 1_000_000;
+        profiler.add(FrameProfiler.Stage.DRAW, start);
+        profiler.add(FrameProfiler.Stage.DRAW, start);
+        profiler.endFrame();
+
+        LatencyHistogram draw = profiler.getHistogram(FrameProfiler.Stage.DRAW);
+        assertEquals(1, draw.getCount(), "Both calls belong to one frame");
+        assertTrue(draw.getMaxNanos() >= 2_000_000);
+        assertEquals(0, profiler.getHistogram(FrameProfiler.Stage.SCORE).getCount(), "Stages that did not run are not recorded");
+
+        profiler.endFrame();
+        assertEquals(1, draw.getCount());
+    }
+
+    @Test
+    void testSimulationStagesAreTimed() throws Exception {
+        Simulation simulation = new Simulation(Simulation.loadConfig("config.json"));
+        FrameProfiler profiler = new FrameProfiler();
+        simulation.setProfiler(profiler);
+        for (int frame = 0; frame < 300; frame++) {
+            simulation.tick();
+            profiler.endFrame();
+        }
+
+        assertEquals(300, profiler.getHistogram(FrameProfiler.Stage.UPDATE).getCount());
+        assertTrue(profiler.getHistogram(FrameProfiler.Stage.BALL_PHYSICS).getCount() > 0);
+        assertTrue(profiler.getHistogram(FrameProfiler.Stage.LINE_COLLISION).getCount() > 0);
+
+        simulation.setProfiler(null);
+        simulation.tick();
+        profiler.endFrame();
+        assertEquals(300, profiler.getHistogram(FrameProfiler.Stage.UPDATE).getCount());
+    }
+
+    @Test
+    void testCsv() throws Exception {
+        FrameProfiler profiler = new FrameProfiler();
+        profiler.add(FrameProfiler.Stage.UPDATE, System.nanoTime());
+        profiler.endFrame();
+        StringWriter out = new StringWriter();
+        profiler.writeCsv(out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("stage,frames,mean_ns,p50_ns,p90_ns,p99_ns,max_ns", lines[0]);
+        assertEquals(FrameProfiler.Stage.values().length + 1, lines.length);
+        assertTrue(lines[1].startsWith("update,1,"));
+        assertTrue(lines[2].startsWith("ball_physics,0,"));
+    }
+
+    @Test
+    void testSummaryLines() {
+        FrameProfiler profiler = new FrameProfiler();
+        String[] lines = profiler.summaryLines();
+        assertEquals(FrameProfiler.Stage.values().length, lines.length);
+        assertTrue(lines[0].startsWith("update"));
+        assertTrue(lines[0].contains("p99"));
+    }
+
+    @Test
+    void testFrameTimesAndDroppedFrames() {
+        long budget = 1_000_000_000L / App.FPS;
+        FrameProfiler profiler = new FrameProfiler(budget);
+        profiler.recordFrame(budget);
+        profiler.recordFrame(budget * 3 / 2);
+        profiler.recordFrame(budget * 2);
+
+        assertEquals(3, profiler.getFrameTimes().getCount());
+        assertEquals(budget * 2, profiler.getFrameTimes().getMaxNanos());
+        assertEquals(1, profiler.getDroppedFrames());
+        assertTrue(profiler.frameSummary().startsWith("frames=3 dropped=1 "));
+
+        profiler.reset();
+        assertEquals(0, profiler.getFrameTimes().getCount());
+        assertEquals(0, profiler.getDroppedFrames());
+        assertThrows(IllegalArgumentException.class, () -> new FrameProfiler(0));
+    }
+}
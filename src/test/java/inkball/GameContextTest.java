@@ -0,0 +1,63 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+import processing.core.PImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameContextTest {
+
+    @Test
+    void testDefaultsFollowConfig() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        config.seed = 42;
+        GameContext context = new GameContext(config);
+
+        assertEquals(App.WIDTH, context.width);
+        assertEquals(App.HEIGHT, context.height);
+        assertEquals(42, context.random.getSeed());
+        assertEquals(config.levelConfigs.size(), context.levelScores.length);
+    }
+
+    @Test
+    void testContextsKeepTheirOwnScoresAndSprites() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        GameContext first = new GameContext(config);
+        GameContext second = new GameContext(config);
+
+        first.levelScores[0] = 25;
+        first.putSprite("ball0", new PImage());
+
+        assertEquals(25, first.getTotalScore());
+        assertEquals(0, second.getTotalScore());
+        assertNotNull(first.getSprite("ball0"));
+        assertNull(second.getSprite("ball0"));
+    }
+
+    @Test
+    void testTotalScoreIsNeverNegative() {
+        GameContext context = new GameContext(App.WIDTH, App.HEIGHT, new RandomSource(1), new int[]{-40, 10});
+        assertEquals(0, context.getTotalScore());
+    }
+
+    @Test
+    void testRejectsWindowWithoutBoard() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new GameContext(App.WIDTH, App.TOPBAR, new RandomSource(1), new int[3]));
+        assertThrows(IllegalArgumentException.class,
+                () -> new GameContext(App.WIDTH, App.HEIGHT, null, new int[3]));
+    }
+
+    @Test
+    void testSimulationUsesContextViewSize() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        GameContext context = new GameContext(App.WIDTH / 2, App.HEIGHT / 2, new RandomSource(config.seed), new int[3]);
+        Simulation simulation = new Simulation(config, context);
+
+        Level level = simulation.getLevel();
+        level.scrollBy(10_000, 10_000);
+        assertEquals(Math.max(0, level.getPixelWidth() - App.WIDTH / 2), level.getViewX());
+        assertEquals(Math.max(0, level.getPixelHeight() - App.HEIGHT / 2), level.getViewY());
+        assertSame(context.levelScores, simulation.getLevelScores());
+    }
+}
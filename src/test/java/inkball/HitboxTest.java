@@ -3,6 +3,8 @@ package inkball;
 import org.junit.jupiter.api.Test;
 import processing.core.PVector;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class HitboxTest {
@@ -23,4 +25,101 @@ public class HitboxTest {
         PVector newTrajectory = Hitbox.calculateNewTrajectory(ballPosition, ballVelocity, segment);
         assertNotNull(newTrajectory);
     }
+
+    @Test
+    void testSweepCircleBoxSide() {
+        float[] normal = new float[2];
+        float t = Hitbox.sweepCircleBox(0, 5, 10, 0, 1, 5, 0, 10, 10, normal);
+        assertEquals(0.4f, t, 1e-5);
+        assertEquals(-1, normal[0]);
+        assertEquals(0, normal[1]);
+    }
+
+    @Test
+    void testSweepCircleBoxCorner() {
+        float[] normal = new float[2];
+        float t = Hitbox.sweepCircleBox(0, -0.5f, 10, 0, 1, 5, 0, 10, 10, normal);
+        assertEquals((5 - (float) Math.sqrt(0.75)) / 10, t, 1e-5);
+        assertEquals(-Math.sqrt(0.75), normal[0], 1e-5);
+        assertEquals(-0.5f, normal[1], 1e-5);
+
+        // Passing diagonally off the corner misses, although the grown box's square corner would be hit
+        assertEquals(-1, Hitbox.sweepCircleBox(2, 1.5f, 5, -5, 1, 5, 0, 10, 10, normal), 0);
+        assertEquals(-1, Hitbox.sweepCircleBox(0, -2, 10, 0, 1, 5, 0, 10, 10, normal), 0);
+    }
+
+    @Test
+    void testSweepCircleBoxOutOfReach() {
+        float[] normal = new float[2];
+        assertEquals(-1, Hitbox.sweepCircleBox(0, 5, 3, 0, 1, 5, 0, 10, 10, normal), 0);
+        assertEquals(-1, Hitbox.sweepCircleBox(0, 5, -10, 0, 1, 5, 0, 10, 10, normal), 0);
+    }
+
+    @Test
+    void testSweepCircleSegmentSide() {
+        float[] normal = new float[2];
+        float t = Hitbox.sweepCircleSegment(0, 0, 10, 0, 1, 5, -5, 5, 5, normal);
+        assertEquals(0.4f, t, 1e-5);
+        assertEquals(-1, normal[0], 1e-6);
+        assertEquals(0, normal[1], 1e-6);
+    }
+
+    @Test
+    void testSweepCircleSegmentEnd() {
+        float[] normal = new float[2];
+        float t = Hitbox.sweepCircleSegment(0, 0, 10, 0, 1, 5, 0.5f, 5, 10, normal);
+        assertEquals((5 - (float) Math.sqrt(0.75)) / 10, t, 1e-5);
+        assertTrue(normal[1] < 0, "The normal should point away from the end of the segment");
+    }
+
+    @Test
+    void testSweepCircleSegmentMovingAway() {
+        float[] normal = new float[2];
+        assertEquals(-1, Hitbox.sweepCircleSegment(0, 0, -10, 0, 1, 5, -5, 5, 5, normal), 0);
+    }
+
+    @Test
+    void testFastBallCannotTunnelThroughSegment() {
+        // The old next-position test misses a segment the ball jumps clean over
+        Line segment = new Line(new PVector(150, 100), new PVector(150, 200));
+        assertFalse(Hitbox.checkCollision(new PVector(112, 150), new PVector(80, 0), segment));
+
+        float[] normal = new float[2];
+        float t = Hitbox.sweepCircleSegment(112, 150, 80, 0, 12, 150, 100, 150, 200, normal);
+        assertEquals(26 / 80f, t, 1e-5);
+    }
+
+    @Test
+    void testReflectMatchesVectorArithmetic() {
+        Random random = new Random(3);
+        float[] velocity = new float[2];
+        for (int i = 0; i < 2000; i++) {
+            PVector start = new PVector(random.nextInt(200), random.nextInt(200));
+            PVector end = i % 4 == 0 ? start.copy() : new PVector(random.nextInt(200), random.nextInt(200));
+            Line segment = new Line(start, end);
+            PVector position = new PVector(random.nextFloat() * 200, random.nextFloat() * 200);
+            PVector ballVelocity = new PVector(random.nextFloat() * 4 - 2, random.nextFloat() * 4 - 2);
+
+            PVector normal = segment.getNormal(position);
+            PVector expected = PVector.sub(ballVelocity, PVector.mult(normal, 2 * ballVelocity.dot(normal)));
+            Hitbox.reflect(position.x, position.y, ballVelocity.x, ballVelocity.y, segment, velocity);
+            assertEquals(expected.x, velocity[0]);
+            assertEquals(expected.y, velocity[1]);
+            assertEquals(expected, Hitbox.calculateNewTrajectory(position, ballVelocity, segment));
+        }
+    }
+
+    @Test
+    void testBouncingOffDotLeavesItUnchanged() {
+        Line dot = new Line(new PVector(5, 5), new PVector(5, 5));
+        Hitbox.calculateNewTrajectory(new PVector(15, 5), new PVector(-1, 0), dot);
+        assertEquals(new PVector(0, 1), dot.getNormal(null));
+    }
+
+    @Test
+    void testDistanceToSegment() {
+        assertEquals(5, Hitbox.distanceToSegment(5, 5, 0, 0, 10, 0), 0.0001);
+        assertEquals(5, Hitbox.distanceToSegment(13, 4, 0, 0, 10, 0), 0.0001);
+        assertEquals((float) Math.sqrt(2), Hitbox.distanceToSegment(6, 6, 5, 5, 5, 5), 0.0001);
+    }
 }
@@ -0,0 +1,64 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InputRecorderTest {
+
+    @Test
+    void testHeaderAndEndRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(bytes, 1L);
+        recorder.finish(300);
+        byte[] log = bytes.toByteArray();
+
+        // magic, version, seed, then END with a two-byte varint tick delta
+        assertEquals(4 + 1 + 8 + 1 + 2, log.length);
+        assertEquals('I', log[0]);
+        assertEquals(InputRecorder.END, log[13]);
+    }
+
+    @Test
+    void testTicksMustNotGoBackwards() throws IOException {
+        InputRecorder recorder = new InputRecorder(new ByteArrayOutputStream(), 1L);
+        recorder.keyPressed(10, ' ');
+        assertThrows(IllegalArgumentException.class, () -> recorder.keyPressed(9, ' '));
+    }
+
+    @Test
+    void testNoEventsAfterFinish() throws IOException {
+        InputRecorder recorder = new InputRecorder(new ByteArrayOutputStream(), 1L);
+        recorder.finish(5);
+        assertThrows(IllegalStateException.class, () -> recorder.mousePressed(5, 37, 0, 0));
+    }
+
+    @Test
+    void testPositionsBeyondShortRangeRoundTrip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(bytes, 1L);
+        recorder.mousePressed(0, 37, 40000, 70000);
+        recorder.finish(0);
+        byte[] log = bytes.toByteArray();
+
+        // Position varints start after the header, type, tick delta and button
+        java.io.DataInputStream in = new java.io.DataInputStream(new java.io.ByteArrayInputStream(log, 16, log.length - 16));
+        assertEquals(40000, readZigzag(in));
+        assertEquals(70000, readZigzag(in));
+    }
+
+    private static int readZigzag(java.io.DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,78 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void testBucketsCoverEveryValue() {
+        long[] values = {0, 1, 63, 64, 65, 127, 128, 1_000, 16_666_667, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.highestIn(bucket) >= value, "Bucket too low for " + value);
+            assertTrue(bucket == 0 || LatencyHistogram.highestIn(bucket - 1) < value, "Bucket too high for " + value);
+        }
+    }
+
+    @Test
+    void testRelativeError() {
+        for (long value = 1; value < 1_000_000_000L; value = value * 3 + 1) {
+            long highest = LatencyHistogram.highestIn(LatencyHistogram.bucketOf(value));
+            assertTrue(highest - value <= value / (LatencyHistogram.SUB_BUCKETS - 1), "Too coarse at " + value);
+        }
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50_500, histogram.getMeanNanos());
+        assertEquals(50_000, histogram.percentileNanos(0.5), 50_000 / 30.0);
+        assertEquals(99_000, histogram.percentileNanos(0.99), 99_000 / 30.0);
+        assertEquals(100_000, histogram.percentileNanos(1.0));
+        assertEquals(100_000, histogram.getMaxNanos());
+    }
+
+    @Test
+    void testEmptyAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileNanos(0.99));
+        histogram.record(5);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.percentileNanos(0.5));
+    }
+
+    @Test
+    void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(9_999, histogram.getMaxNanos());
+    }
+
+    @Test
+    void testNegativeTimingIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().record(-1));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().percentileNanos(-0.1));
+    }
+}
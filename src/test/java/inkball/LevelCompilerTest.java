@@ -0,0 +1,23 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LevelCompilerTest {
+
+    @Test
+    void testOutputReplacesExtension() {
+        Path output = LevelCompiler.outputFor(Paths.get("levels/level7.txt"), Paths.get("out"));
+        assertEquals(Paths.get("out", "level7.inkl"), output);
+    }
+
+    @Test
+    void testOutputDefaultsToLayoutDirectory() {
+        Path layout = Paths.get("levels", "big").toAbsolutePath();
+        assertEquals(layout.getParent().resolve("big.inkl"), LevelCompiler.outputFor(layout, null));
+    }
+}
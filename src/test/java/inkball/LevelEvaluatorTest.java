@@ -0,0 +1,112 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+import processing.data.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LevelEvaluatorTest {
+
+    private static LevelEvaluator evaluator(String policy) throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        return new LevelEvaluator(config, 0, LevelEvaluator.policyFor(policy, config), 100_000);
+    }
+
+    @Test
+    void testSameSeedPlaysTheSameGame() throws Exception {
+        LevelEvaluator evaluator = evaluator("random");
+        LevelEvaluator.GameResult first = evaluator.play(5);
+        LevelEvaluator.GameResult second = evaluator.play(5);
+        assertEquals(first.score, second.score);
+        assertEquals(first.ticks, second.ticks);
+        assertEquals(first.captures, second.captures);
+        assertEquals(first.wrongHoles, second.wrongHoles);
+        assertTrue(first.ticks > 0);
+    }
+
+    @Test
+    void testReportDoesNotDependOnThreads() throws Exception {
+        LevelEvaluator evaluator = evaluator("none");
+        LevelEvaluator.Report serial = evaluator.evaluate(12, 3, 1);
+        LevelEvaluator.Report parallel = evaluator.evaluate(12, 3, 4);
+
+        assertEquals(12, parallel.results.size());
+        for (int i = 0; i < 12; i++) {
+            assertEquals(serial.results.get(i).score, parallel.results.get(i).score);
+            assertEquals(serial.results.get(i).ticks, parallel.results.get(i).ticks);
+        }
+        assertEquals(serial.getTotalTicks(), parallel.getTotalTicks());
+        assertEquals(serial.getCaptureRate(), parallel.getCaptureRate());
+    }
+
+    @Test
+    void testTimeouts() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        LevelEvaluator.override(config.getLevelConfig(0), "time=1");
+        LevelEvaluator evaluator = new LevelEvaluator(config, 0, LevelEvaluator.NO_LINES, 100_000);
+        LevelEvaluator.Report report = evaluator.evaluate(4, 1, 2);
+
+        assertEquals(4, report.getTimeouts());
+        for (LevelEvaluator.GameResult result : report.results) {
+            assertTrue(result.timedOut);
+            assertEquals(Simulation.TICKS_PER_SECOND, result.ticks);
+        }
+    }
+
+    @Test
+    void testMaxTicksEndsGames() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        LevelEvaluator evaluator = new LevelEvaluator(config, 0, LevelEvaluator.NO_LINES, 50);
+        LevelEvaluator.GameResult result = evaluator.play(1);
+        assertTrue(result.timedOut);
+        assertEquals(50, result.ticks);
+    }
+
+    @Test
+    void testRandomStrokesDrawLines() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        Level level = new Level(config.getLevelConfig(0), config, 0, new RandomSource(1));
+        level.loadFile();
+        List<PlayerLine> lines = new ArrayList<>();
+        LevelEvaluator.Policy policy = LevelEvaluator.randomStrokes(10, 2, PlayerLine.DEFAULT_TOLERANCE);
+        RandomSource random = new RandomSource(2);
+        for (long tick = 0; tick < 100; tick++) {
+            policy.act(level, lines, random, tick);
+        }
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).getSegmentCount() > 0);
+    }
+
+    @Test
+    void testReportStatistics() {
+        List<LevelEvaluator.GameResult> results = Arrays.asList(
+                new LevelEvaluator.GameResult(10, 4, 1, false, 100),
+                new LevelEvaluator.GameResult(30, 4, 0, true, 300),
+                new LevelEvaluator.GameResult(20, 2, 1, false, 200));
+        LevelEvaluator.Report report = new LevelEvaluator.Report(results, 1_000_000_000L);
+
+        assertEquals(600, report.getTotalTicks());
+        assertEquals(600, report.getTicksPerSecond(), 0.001);
+        assertEquals(1, report.getTimeouts());
+        assertEquals(0.8, report.getCaptureRate(), 0.0001);
+        assertEquals(10, report.scorePercentile(0));
+        assertEquals(20, report.scorePercentile(0.5));
+        assertEquals(30, report.scorePercentile(1));
+        assertEquals(20, report.getMeanScore(), 0.0001);
+        assertTrue(report.format().contains("Timeouts:     1 (33.3%)"));
+    }
+
+    @Test
+    void testInvalidArguments() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> evaluator("greedy"));
+        assertThrows(IllegalArgumentException.class, () -> evaluator("none").evaluate(0, 1, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> LevelEvaluator.override(new JSONObject(), "time"));
+        assertThrows(IllegalArgumentException.class,
+                () -> LevelEvaluator.override(new JSONObject(), "time=soon"));
+    }
+}
@@ -0,0 +1,165 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LevelParserTest {
+
+    /**
+     * Writes each entity down as "kind col,row[,char]".
+     */
+    private static class Recorder implements LevelParser.Handler {
+        final List<String> entities = new ArrayList<>();
+        int floors;
+
+        @Override
+        public void floor(int col, int row) {
+            floors++;
+        }
+
+        @Override
+        public void wall(int col, int row, char color) {
+            entities.add("wall " + col + "," + row + "," + color);
+        }
+
+        @Override
+        public void spawner(int col, int row) {
+            entities.add("spawner " + col + "," + row);
+        }
+
+        @Override
+        public void acceleration(int col, int row, char direction) {
+            entities.add("acceleration " + col + "," + row + "," + direction);
+        }
+
+        @Override
+        public void hole(int col, int row, char color) {
+            entities.add("hole " + col + "," + row + "," + color);
+        }
+
+        @Override
+        public void ball(int col, int row, char color) {
+            entities.add("ball " + col + "," + row + "," + color);
+        }
+    }
+
+    private static ChunkedLayout parse(String text, LevelParser.Handler handler) throws IOException {
+        return LevelParser.parse(new StringReader(text), "test.txt", handler);
+    }
+
+    private static LevelFormatException parseError(String text) {
+        return assertThrows(LevelFormatException.class, () -> parse(text, new Recorder()));
+    }
+
+    @Test
+    void testReadsEveryKindOfCell() throws IOException {
+        Recorder recorder = new Recorder();
+        ChunkedLayout layout = parse("XH2S\r\n1  U\nB4DL\n", recorder);
+
+        assertEquals(4, layout.getCols());
+        assertEquals(3, layout.getRows());
+        assertEquals(List.of(
+                "wall 0,0,0", "hole 1,0,2", "spawner 3,0",
+                "wall 0,1,1", "acceleration 3,1,U",
+                "ball 0,2,4", "acceleration 2,2,D", "acceleration 3,2,L"), recorder.entities);
+        // The two cells of the ball; the cells under the hole are not floor tiles
+        assertEquals(2, recorder.floors);
+        assertEquals('H', layout.get(1, 0));
+        assertEquals(ChunkedLayout.FLOOR, layout.get(2, 0));
+        assertEquals('B', layout.get(0, 2));
+    }
+
+    @Test
+    void testAdjacentHoles() throws IOException {
+        Recorder recorder = new Recorder();
+        parse("H0H1\n    \n", recorder);
+        assertEquals(List.of("hole 0,0,0", "hole 2,0,1"), recorder.entities);
+    }
+
+    @Test
+    void testLastLineNeedsNoNewlineAndTrailingBlankLinesAreIgnored() throws IOException {
+        assertEquals(2, parse("XX\nXX", new Recorder()).getRows());
+        assertEquals(2, parse("XX\nXX\n\n\n", new Recorder()).getRows());
+    }
+
+    @Test
+    void testUnknownCellReportsPosition() {
+        LevelFormatException error = parseError("XXX\nX?X\n");
+        assertEquals(2, error.getLine());
+        assertEquals(2, error.getColumn());
+        assertEquals("test.txt", error.getSource());
+        assertTrue(error.getMessage().startsWith("test.txt:2:2: "), error.getMessage());
+    }
+
+    @Test
+    void testRowsMustMatchTheFirst() {
+        LevelFormatException shorter = parseError("XXX\nXX\n");
+        assertEquals(2, shorter.getLine());
+        assertEquals(3, shorter.getColumn());
+
+        LevelFormatException wider = parseError("XXX\nXXXX\n");
+        assertEquals(2, wider.getLine());
+        assertEquals(4, wider.getColumn());
+    }
+
+    @Test
+    void testTwoCharacterTokensNeedAColour() {
+        LevelFormatException badColour = parseError("XH5X\n    \n");
+        assertEquals(1, badColour.getLine());
+        assertEquals(3, badColour.getColumn());
+
+        LevelFormatException endOfLine = parseError("XXB\n");
+        assertEquals(1, endOfLine.getLine());
+        assertEquals(4, endOfLine.getColumn());
+    }
+
+    @Test
+    void testCellsUnderHoleMustBeFloor() {
+        LevelFormatException error = parseError("H0X\n X \n");
+        assertEquals(2, error.getLine());
+        assertEquals(2, error.getColumn());
+
+        LevelFormatException offBoard = parseError("XXX\nXH0\n");
+        assertEquals(2, offBoard.getLine());
+        assertEquals(2, offBoard.getColumn());
+    }
+
+    @Test
+    void testBlankLineInsideLayout() {
+        LevelFormatException error = parseError("XX\n\nXX\n");
+        assertEquals(2, error.getLine());
+        assertThrows(LevelFormatException.class, () -> parse("", new Recorder()));
+    }
+
+    @Test
+    void testLargeLayoutIsChunkedAsItIsRead() throws IOException {
+        int size = 2000;
+        StringBuilder text = new StringBuilder(size * (size + 1));
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                boolean border = row == 0 || row == size - 1 || col == 0 || col == size - 1;
+                text.append(border ? 'X' : ' ');
+            }
+            text.append('\n');
+        }
+        Recorder recorder = new Recorder() {
+            @Override
+            public void wall(int col, int row, char color) {
+            }
+        };
+        ChunkedLayout layout = parse(text.toString(), recorder);
+
+        assertEquals(size, layout.getCols());
+        assertEquals(size, layout.getRows());
+        assertEquals((size - 2) * (size - 2), recorder.floors);
+        int chunksPerSide = ChunkedLayout.chunkCount(size);
+        assertEquals(4 * chunksPerSide - 4, layout.getPopulatedChunks());
+        assertEquals('X', layout.get(size - 1, size - 1));
+    }
+}
@@ -0,0 +1,48 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LevelPreloaderTest {
+
+    @Test
+    void testPreloadMatchesInlineLoad() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        ExecutorService executor = LevelPreloader.backgroundExecutor();
+        try {
+            LevelPreloader preloader = new LevelPreloader(config, executor);
+            Level preloaded = LevelPreloader.take(preloader.load(1, 42));
+
+            Level inline = new Level(config.getLevelConfig(1), config, 1, new RandomSource(42));
+            inline.loadFile();
+            assertEquals(1, preloaded.getLevelIndex());
+            assertEquals(inline.timer, preloaded.timer);
+            assertEquals(inline.balls.size(), preloaded.balls.size());
+            for (int i = 0; i < inline.balls.size(); i++) {
+                assertEquals(inline.balls.get(i).getPosition(), preloaded.balls.get(i).getPosition());
+                assertEquals(inline.balls.get(i).getVelocity(), preloaded.balls.get(i).getVelocity());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testFailedLoadIsRethrown() throws Exception {
+        Path layout = Files.createTempFile("broken", ".txt");
+        layout.toFile().deleteOnExit();
+        Files.write(layout, "XXX\nX\n".getBytes(StandardCharsets.US_ASCII));
+        Config config = Simulation.loadConfig("config.json");
+        config.getLevelConfig(0).setString("layout", layout.toString());
+
+        Future<Level> pending = new LevelPreloader(config, Runnable::run).load(0, 1);
+        assertThrows(LevelFormatException.class, () -> LevelPreloader.take(pending));
+    }
+}
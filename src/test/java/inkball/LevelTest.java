@@ -8,11 +8,14 @@ import processing.core.PVector;
 import processing.data.JSONObject;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -191,6 +194,345 @@ public class LevelTest {
         assertEquals(direction, 'U'); // Assuming getDirection() exists
     }
 
+    @Test
+    void testHolesNearMatchesScanOverTiles() {
+        Random random = new Random(3);
+        int attracted = 0;
+        for (int i = 0; i < 20000; i++) {
+            float x = random.nextFloat() * App.WIDTH;
+            float y = App.TOPBAR + random.nextFloat() * (App.HEIGHT - App.TOPBAR);
+
+            Hole expected = null;
+            float nearest = 100.0f;
+            for (Tile tile : level.getTiles()) {
+                if (tile instanceof Hole) {
+                    Hole hole = (Hole) tile;
+                    float distance = PVector.dist(new PVector(x, y), new PVector(hole.getCenterX(), hole.getCenterY()));
+                    if (distance <= 32 && distance < nearest) {
+                        expected = hole;
+                        nearest = distance;
+                    }
+                }
+            }
+
+            Hole actual = null;
+            nearest = 100.0f;
+            for (Hole hole : level.holesNear(x, y)) {
+                float distance = PVector.dist(new PVector(x, y), new PVector(hole.getCenterX(), hole.getCenterY()));
+                if (distance <= 32 && distance < nearest) {
+                    actual = hole;
+                    nearest = distance;
+                }
+            }
+            assertSame(expected, actual);
+            if (expected != null) {
+                attracted++;
+            }
+        }
+        assertTrue(attracted > 0, "Some sampled positions should be near a hole");
+    }
+
+    @Test
+    void testHolesNearOutsideBoardIsEmpty() {
+        assertEquals(0, level.holesNear(-500, -500).length);
+        assertEquals(0, level.holesNear(App.WIDTH * 3, App.HEIGHT * 3).length);
+    }
+
+    /**
+     * A 1000x1000 board walled at the edges, with a grey hole near the bottom-right corner.
+     */
+    private Level buildLargeLevel() throws Exception {
+        String configContent = new String(Files.readAllBytes(Paths.get("config.json")));
+        Config config = new Config(JSONObject.parse(configContent));
+
+        int size = 1000;
+        StringBuilder layout = new StringBuilder();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (row == 0 || row == size - 1 || col == 0 || col == size - 1) {
+                    layout.append('X');
+                } else if (row == 900 && col == 900) {
+                    layout.append("H0");
+                    col++;
+                } else {
+                    layout.append(' ');
+                }
+            }
+            layout.append('\n');
+        }
+        Path layoutFile = Files.createTempFile("large", ".txt");
+        layoutFile.toFile().deleteOnExit();
+        Files.write(layoutFile, layout.toString().getBytes());
+
+        JSONObject levelConfig = new JSONObject();
+        levelConfig.setInt("time", 120);
+        levelConfig.setInt("spawn_interval", 10);
+        levelConfig.setString("layout", layoutFile.toString());
+        levelConfig.setJSONArray("balls", new processing.data.JSONArray());
+        Level large = new Level(levelConfig, config, 0);
+        large.loadFile();
+        return large;
+    }
+
+    @Test
+    void testInvalidLayoutIsRejected() throws Exception {
+        Path layoutFile = Files.createTempFile("invalid", ".txt");
+        layoutFile.toFile().deleteOnExit();
+        Files.write(layoutFile, "XXXX\nX  X\nX Q X\n".getBytes());
+        JSONObject levelConfig = new JSONObject();
+        levelConfig.setInt("time", 120);
+        levelConfig.setInt("spawn_interval", 10);
+        levelConfig.setString("layout", layoutFile.toString());
+        levelConfig.setJSONArray("balls", new processing.data.JSONArray());
+        String configContent = new String(Files.readAllBytes(Paths.get("config.json")));
+        Level invalid = new Level(levelConfig, new Config(JSONObject.parse(configContent)), 0);
+
+        LevelFormatException error = assertThrows(LevelFormatException.class, invalid::loadFile);
+        assertEquals(3, error.getLine());
+        assertEquals(3, error.getColumn());
+    }
+
+    @Test
+    void testLargeBoardTakesSizeFromLayout() throws Exception {
+        Level large = buildLargeLevel();
+        assertEquals(1000, large.getCols());
+        assertEquals(1000, large.getRows());
+        assertEquals(32000, large.getPixelWidth());
+        assertEquals(32000 + App.TOPBAR, large.getPixelHeight());
+        assertEquals('H', large.getCell(900, 900));
+        assertEquals(ChunkedLayout.FLOOR, large.getCell(500, 500));
+
+        // Only the border chunks and the hole's chunk hold anything
+        assertNull(large.grid);
+        assertTrue(large.getLayout().getPopulatedChunks() < 16 * 16 / 2);
+        assertEquals(4 * 999 + 1, large.getTiles().size());
+        assertTrue(large.collisionGrid.isWall(999, 500));
+
+        Hole[] nearby = large.holesNear(901 * App.CELLSIZE, 901 * App.CELLSIZE + App.TOPBAR);
+        assertEquals(1, nearby.length);
+    }
+
+    @Test
+    void testBallBouncesOffFarEdgeOfLargeBoard() throws Exception {
+        Level large = buildLargeLevel();
+        Ball ball = new Ball(997, 500, '0', large);
+        ball.setVelocity(2, 0);
+        large.balls.add(ball);
+        for (int i = 0; i < 60; i++) {
+            large.update(new ArrayList<>());
+        }
+        assertTrue(ball.getVelocity().x < 0, "Ball should have bounced off the wall at column 999");
+        assertTrue(ball.getX() > App.BOARD_WIDTH && ball.getX() < 999);
+    }
+
+    @Test
+    void testViewScrollsWithinBoard() throws Exception {
+        Level large = buildLargeLevel();
+        large.scrollBy(-100, -100);
+        assertEquals(0, large.getViewX());
+        assertEquals(0, large.getViewY());
+        large.scrollBy(App.CELLSIZE * 3, App.CELLSIZE);
+        assertEquals(App.CELLSIZE * 3, large.getViewX());
+        assertEquals(App.CELLSIZE, large.getViewY());
+        large.scrollBy(1000000, 1000000);
+        assertEquals(large.getPixelWidth() - App.WIDTH, large.getViewX());
+        assertEquals(large.getPixelHeight() - App.HEIGHT, large.getViewY());
+
+        // The standard boards fill the window and never scroll
+        level.scrollBy(App.CELLSIZE, App.CELLSIZE);
+        assertEquals(0, level.getViewX());
+        assertEquals(0, level.getViewY());
+    }
+
+    /**
+     * A board with grey walls and grey holes only and no spawner, so the run involves no randomness.
+     */
+    private Level buildCrowdedLevel(List<PlayerLine> lines) throws Exception {
+        String configContent = new String(Files.readAllBytes(Paths.get("config.json")));
+        Config config = new Config(JSONObject.parse(configContent));
+
+        StringBuilder layout = new StringBuilder();
+        for (int row = 0; row < 18; row++) {
+            for (int col = 0; col < 18; col++) {
+                boolean border = row == 0 || row == 17 || col == 0 || col == 17;
+                if (border || (row == 8 && col > 4 && col < 13)) {
+                    layout.append('X');
+                } else if ((row == 3 || row == 13) && (col == 4 || col == 12)) {
+                    layout.append("H0");
+                    col++;
+                } else if (row == 10 && col == 8) {
+                    layout.append('R');
+                } else {
+                    layout.append(' ');
+                }
+            }
+            layout.append('\n');
+        }
+        Path layoutFile = Files.createTempFile("crowded", ".txt");
+        layoutFile.toFile().deleteOnExit();
+        Files.write(layoutFile, layout.toString().getBytes());
+
+        JSONObject levelConfig = new JSONObject();
+        levelConfig.setInt("time", 120);
+        levelConfig.setInt("spawn_interval", 10);
+        levelConfig.setString("layout", layoutFile.toString());
+        levelConfig.setJSONArray("balls", new processing.data.JSONArray());
+        Level crowded = new Level(levelConfig, config, 0);
+        crowded.loadFile();
+
+        Random random = new Random(11);
+        while (crowded.balls.size() < 2000) {
+            int row = random.nextInt(crowded.grid.length);
+            int col = random.nextInt(crowded.grid[row].length);
+            if (crowded.grid[row][col] != ' ') {
+                continue;
+            }
+            Ball ball = new Ball(col, row, (char) ('0' + random.nextInt(5)), crowded);
+            ball.setVelocity(random.nextBoolean() ? 1 : -1, random.nextBoolean() ? 1 : -1);
+            crowded.balls.add(ball);
+        }
+        for (int i = 0; i < 30; i++) {
+            PlayerLine line = new PlayerLine();
+            line.addPoint(40 + i * 16, 100 + i * 15);
+            line.addPoint(90 + i * 16, 110 + i * 15);
+            lines.add(line);
+        }
+        return crowded;
+    }
+
+    private static float[] ballState(Level level) {
+        float[] state = new float[level.balls.size() * 5];
+        for (int i = 0; i < level.balls.size(); i++) {
+            Ball ball = level.balls.get(i);
+            state[i * 5] = ball.getPosition().x;
+            state[i * 5 + 1] = ball.getPosition().y;
+            state[i * 5 + 2] = ball.getVelocity().x;
+            state[i * 5 + 3] = ball.getVelocity().y;
+            state[i * 5 + 4] = ball.getColorCode();
+        }
+        return state;
+    }
+
+    @Test
+    void testRestoredLevelPlaysTheSameGame() {
+        List<PlayerLine> lines = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            PlayerLine line = new PlayerLine();
+            line.addPoint(60 + i * 80, 150 + i * 50);
+            line.addPoint(120 + i * 80, 190 + i * 50);
+            lines.add(line);
+        }
+        for (int tick = 0; tick < 20; tick++) {
+            level.update(lines);
+        }
+        LevelSnapshot snapshot = level.snapshot(lines);
+        float[] before = ballState(level);
+        List<PlayerLine> linesBefore = new ArrayList<>(lines);
+
+        for (int tick = 0; tick < 900; tick++) {
+            level.update(lines);
+        }
+        float[] expected = ballState(level);
+        List<String> expectedQueue = new ArrayList<>(level.ballQueue);
+        List<PlayerLine> expectedLines = new ArrayList<>(lines);
+        int expectedScore = level.score;
+        int expectedTimer = level.timer;
+        assertFalse(Arrays.equals(before, expected), "The level should have moved on");
+        assertTrue(expectedLines.size() < linesBefore.size(), "Balls should have used up lines");
+
+        level.restore(snapshot, lines);
+        assertArrayEquals(before, ballState(level));
+        assertEquals(linesBefore, lines);
+        assertEquals(lines.size(), level.segmentGrid.getLineCount());
+        for (int tick = 0; tick < 900; tick++) {
+            level.update(lines);
+        }
+
+        assertArrayEquals(expected, ballState(level));
+        assertEquals(expectedQueue, level.ballQueue);
+        assertEquals(expectedLines, lines);
+        assertEquals(expectedScore, level.score);
+        assertEquals(expectedTimer, level.timer);
+    }
+
+    @Test
+    void testSnapshotReusesItsBuffer() throws Exception {
+        List<PlayerLine> lines = new ArrayList<>();
+        LevelSnapshot snapshot = level.snapshot(lines);
+        level.spawnNextBall();
+        level.spawnNextBall();
+        assertSame(snapshot, level.snapshot(lines, snapshot));
+        assertEquals(level.balls.size(), snapshot.getBallCount());
+
+        Level other = buildCrowdedLevel(new ArrayList<>());
+        assertThrows(IllegalArgumentException.class, () -> other.restore(snapshot, lines));
+    }
+
+    @Test
+    void testRestoreDetachesBallsSpawnedSinceSnapshot() {
+        List<PlayerLine> lines = new ArrayList<>();
+        LevelSnapshot snapshot = level.snapshot(lines);
+        int count = level.balls.size();
+        level.spawnNextBall();
+        Ball dropped = level.balls.get(count);
+        dropped.setVelocity(3, 4);
+
+        level.restore(snapshot, lines);
+        assertEquals(count, level.balls.size());
+        level.spawnNextBall();
+        Ball spawned = level.balls.get(count);
+        assertNotSame(dropped, spawned);
+        spawned.setVelocity(7, 7);
+        assertEquals(new PVector(3, 4), dropped.getVelocity());
+
+        level.balls.add(dropped);
+        assertEquals(count + 2, level.balls.size());
+        assertSame(dropped, level.balls.get(count + 1));
+        assertEquals(new PVector(7, 7), spawned.getVelocity());
+    }
+
+    @Test
+    void testParallelUpdateMatchesSerial() throws Exception {
+        List<PlayerLine> serialLines = new ArrayList<>();
+        Level serial = buildCrowdedLevel(serialLines);
+
+        for (int parallelism : new int[]{1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<PlayerLine> parallelLines = new ArrayList<>();
+                Level parallel = buildCrowdedLevel(parallelLines);
+                parallel.setParallelism(pool);
+
+                List<PlayerLine> expectedLines = serialLines;
+                Level expected = serial;
+                if (parallelism != 1) {
+                    expectedLines = new ArrayList<>();
+                    expected = buildCrowdedLevel(expectedLines);
+                }
+                for (int tick = 0; tick < 300; tick++) {
+                    expected.update(expectedLines);
+                    parallel.update(parallelLines);
+                }
+
+                assertEquals(expected.score, parallel.score);
+                assertEquals(expected.ballQueue, parallel.ballQueue);
+                assertEquals(expectedLines.size(), parallelLines.size());
+                assertEquals(expected.balls.size(), parallel.balls.size());
+                for (int i = 0; i < expected.balls.size(); i++) {
+                    Ball a = expected.balls.get(i);
+                    Ball b = parallel.balls.get(i);
+                    assertEquals(a.getPosition().x, b.getPosition().x);
+                    assertEquals(a.getPosition().y, b.getPosition().y);
+                    assertEquals(a.getVelocity().x, b.getVelocity().x);
+                    assertEquals(a.getVelocity().y, b.getVelocity().y);
+                    assertEquals(a.getColorCode(), b.getColorCode());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
 //    public class TestApp extends App {
 //        String drawnText;
 //        int drawnTextX;
@@ -360,6 +702,11 @@ public class TestApp extends App {
         assertEquals(57, app.drawnTextY);
     }
 
+    @Test
+    void testBoardIsNotBakedWithoutAtlas() {
+        assertNull(level.bakeBoard(new TestApp()));
+    }
+
     @Test
     void testDraw() {
         // Arrange
@@ -83,4 +83,31 @@ public class LineTest {
         assertEquals(expectedMidpoint.x, actualMidpoint.x, 0.001);
         assertEquals(expectedMidpoint.y, actualMidpoint.y, 0.001);
     }
+
+    @Test
+    public void testGeometryIsCopiedNotShared() {
+        PVector start = new PVector(0, 0);
+        PVector end = new PVector(3, 4);
+        Line line = new Line(start, end);
+        start.set(100, 100);
+        line.getEnd().set(50, 50);
+
+        assertEquals(new PVector(0, 0), line.getStart());
+        assertEquals(new PVector(3, 4), line.getEnd());
+        assertEquals(5, line.length(), 0.0001);
+        assertEquals(new PVector(1.5f, 2), line.getMidpoint());
+    }
+
+    @Test
+    public void testDotNormalFollowsBall() {
+        Line dot = new Line(new PVector(5, 5), new PVector(5, 5));
+        assertTrue(dot.isDot());
+        PVector normal = dot.getNormal(new PVector(5, 15));
+        assertEquals(0, normal.x, 0.0001);
+        assertEquals(1, normal.y, 0.0001);
+        normal = dot.getNormal(new PVector(15, 5));
+        assertEquals(1, normal.x, 0.0001);
+        assertEquals(0, normal.y, 0.0001);
+        assertEquals(new PVector(0, 1), dot.getNormal(null));
+    }
 }
@@ -0,0 +1,40 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsServerTest {
+
+    @Test
+    void testServesMetrics() throws Exception {
+        SimulationMetrics metrics = new SimulationMetrics();
+        metrics.ticks.add(42);
+        try (MetricsServer server = new MetricsServer(metrics, 0)) {
+            HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + server.getPort() + "/metrics").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(MetricsServer.CONTENT_TYPE, connection.getContentType());
+            String body;
+            try (InputStream in = connection.getInputStream()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(body.contains("inkball_ticks_total 42\n"));
+        }
+    }
+
+    @Test
+    void testOnlyGetIsAllowed() throws Exception {
+        try (MetricsServer server = new MetricsServer(new SimulationMetrics(), 0)) {
+            HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + server.getPort() + "/metrics").openConnection();
+            connection.setRequestMethod("DELETE");
+            assertEquals(405, connection.getResponseCode());
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -124,4 +125,130 @@ public class PlayerLineTest {
         // Test intersection with an empty line (should return false)
         assertFalse(playerLine.intersects(50, App.TOPBAR + 50));
     }
+
+    @Test
+    public void testSlowStraightDragIsOneSegment() {
+        PlayerLine playerLine = new PlayerLine();
+        for (int x = 50; x <= 450; x++) {
+            playerLine.addPoint(x, App.TOPBAR + 100);
+        }
+
+        List<Line> segments = playerLine.getSegments();
+        assertEquals(2, segments.size(), "The starting dot and one stretched segment");
+        assertEquals(new PVector(50, App.TOPBAR + 100), segments.get(1).getStart());
+        assertEquals(new PVector(450, App.TOPBAR + 100), segments.get(1).getEnd());
+    }
+
+    @Test
+    public void testCurvedDragStaysWithinTolerance() {
+        PlayerLine simplified = new PlayerLine(App.WIDTH, App.HEIGHT, 1.0f);
+        PlayerLine raw = new PlayerLine(App.WIDTH, App.HEIGHT, -1);
+        List<PVector> samples = new ArrayList<>();
+        Random random = new Random(4);
+        for (int i = 0; i <= 1000; i++) {
+            double angle = Math.PI * i / 1000;
+            // A slow half-circle drag with a little hand jitter
+            float x = (float) (288 + 200 * Math.cos(angle)) + random.nextFloat() * 0.6f - 0.3f;
+            float y = (float) (App.TOPBAR + 300 - 200 * Math.sin(angle)) + random.nextFloat() * 0.6f - 0.3f;
+            samples.add(new PVector(x, y));
+            simplified.addPoint(x, y);
+            raw.addPoint(x, y);
+        }
+
+        int rawCount = raw.getSegments().size();
+        int simplifiedCount = simplified.getSegments().size();
+        assertTrue(simplifiedCount * 10 <= rawCount, simplifiedCount + " segments left of " + rawCount);
+        for (PVector sample : samples) {
+            float nearest = Float.MAX_VALUE;
+            for (Line segment : simplified.getSegments()) {
+                nearest = Math.min(nearest, segment.distanceToPoint(sample));
+            }
+            assertTrue(nearest <= 1.01f, "Sample " + sample + " is " + nearest + "px from the line");
+        }
+    }
+
+    @Test
+    public void testZeroToleranceOnlyMergesCollinearSamples() {
+        PlayerLine playerLine = new PlayerLine(App.WIDTH, App.HEIGHT, 0);
+        playerLine.addPoint(50, App.TOPBAR + 50);
+        playerLine.addPoint(60, App.TOPBAR + 60);
+        playerLine.addPoint(70, App.TOPBAR + 70);
+        assertEquals(2, playerLine.getSegments().size());
+
+        playerLine.addPoint(80, App.TOPBAR + 81);
+        assertEquals(3, playerLine.getSegments().size(), "A bend starts a new segment");
+    }
+
+    @Test
+    public void testNegativeToleranceKeepsEverySample() {
+        PlayerLine playerLine = new PlayerLine(App.WIDTH, App.HEIGHT, -1);
+        for (int x = 50; x < 60; x++) {
+            playerLine.addPoint(x, App.TOPBAR + 100);
+        }
+        assertEquals(10, playerLine.getSegments().size());
+    }
+
+    @Test
+    public void testReversingDirectionKeepsTheCorner() {
+        PlayerLine playerLine = new PlayerLine();
+        for (int x = 50; x <= 150; x++) {
+            playerLine.addPoint(x, App.TOPBAR + 100);
+        }
+        for (int x = 149; x >= 100; x--) {
+            playerLine.addPoint(x, App.TOPBAR + 100);
+        }
+        List<Line> segments = playerLine.getSegments();
+        assertEquals(3, segments.size());
+        assertEquals(new PVector(150, App.TOPBAR + 100), segments.get(1).getEnd());
+        assertEquals(new PVector(100, App.TOPBAR + 100), segments.get(2).getEnd());
+    }
+
+    @Test
+    public void testStretchedSegmentsStayIndexed() {
+        SegmentGrid grid = new SegmentGrid(App.WIDTH, App.HEIGHT);
+        PlayerLine playerLine = new PlayerLine();
+        playerLine.addPoint(100, 200);
+        playerLine.addPoint(101, 200);
+        playerLine.attach(grid);
+        for (int x = 102; x <= 400; x++) {
+            playerLine.addPoint(x, 200);
+        }
+
+        Line hit = grid.findCollidingSegment(350, 199, 0, 1);
+        assertSame(playerLine.getSegments().get(1), hit);
+        assertNull(grid.findCollidingSegment(350, 400, 0, 1));
+        playerLine.detach();
+        assertNull(grid.findCollidingSegment(350, 199, 0, 1), "Replaced segments should not linger in the grid");
+    }
+
+    @Test
+    public void testSegmentsViewIsReadOnlyAndLive() {
+        PlayerLine playerLine = new PlayerLine();
+        List<Line> segments = playerLine.getSegments();
+        assertSame(segments, playerLine.getSegments(), "The view should not be rebuilt on every call");
+        assertThrows(UnsupportedOperationException.class, () -> segments.add(new Line(new PVector(), new PVector())));
+
+        playerLine.addPoint(100, App.TOPBAR + 100);
+        playerLine.addPoint(150, App.TOPBAR + 120);
+        assertEquals(2, segments.size());
+        assertEquals(playerLine.getSegmentCount(), segments.size());
+        assertSame(segments.get(1), playerLine.getSegment(1));
+    }
+
+    @Test
+    public void testPackedGeometryMatchesSegments() {
+        PlayerLine playerLine = new PlayerLine(App.WIDTH, App.HEIGHT, -1);
+        Random random = new Random(8);
+        for (int i = 0; i < 100; i++) {
+            playerLine.addPoint(100 + random.nextInt(300), App.TOPBAR + random.nextInt(300));
+        }
+
+        float[] points = playerLine.getPackedPoints();
+        for (int i = 0; i < playerLine.getSegmentCount(); i++) {
+            Line segment = playerLine.getSegment(i);
+            int p = i * PlayerLine.POINT_STRIDE;
+            assertEquals(segment.getStart(), new PVector(points[p], points[p + 1]));
+            assertEquals(segment.getEnd(), new PVector(points[p + 2], points[p + 3]));
+        }
+    }
 }
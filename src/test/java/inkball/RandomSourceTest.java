@@ -0,0 +1,69 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RandomSourceTest {
+
+    @Test
+    void testSameSeedGivesSameSequence() {
+        RandomSource first = new RandomSource(123);
+        RandomSource second = new RandomSource(123);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.nextInt(10), second.nextInt(10));
+            assertEquals(first.nextBoolean(), second.nextBoolean());
+        }
+    }
+
+    @Test
+    void testSplitIsReproducible() {
+        RandomSource first = new RandomSource(5).split();
+        RandomSource second = new RandomSource(5).split();
+        assertEquals(first.getSeed(), second.getSeed());
+        assertEquals(first.nextInt(1000), second.nextInt(1000));
+    }
+
+    @Test
+    void testSplitsDiffer() {
+        RandomSource root = new RandomSource(5);
+        assertNotEquals(root.split().getSeed(), root.split().getSeed());
+    }
+
+    @Test
+    void testNextIntStaysInBounds() {
+        RandomSource random = new RandomSource(9);
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(3);
+            assertTrue(value >= 0 && value < 3);
+        }
+    }
+
+    @Test
+    void testDrawsMatchSplittableRandom() {
+        // Recorded games and seeds from before the source kept its own state must still play the same
+        RandomSource random = new RandomSource(77);
+        SplittableRandom expected = new SplittableRandom(77);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(expected.nextInt(7), random.nextInt(7));
+            assertEquals(expected.nextInt(1 << 20), random.nextInt(1 << 20));
+            assertEquals(expected.nextInt(Integer.MAX_VALUE - i), random.nextInt(Integer.MAX_VALUE - i));
+            assertEquals(expected.nextBoolean(), random.nextBoolean());
+        }
+        assertEquals(expected.nextLong(), random.split().getSeed());
+    }
+
+    @Test
+    void testRestoredStateRepeatsDraws() {
+        RandomSource random = new RandomSource(3);
+        random.nextInt(10);
+        long state = random.getState();
+        int first = random.nextInt(1000);
+        boolean second = random.nextBoolean();
+        random.setState(state);
+        assertEquals(first, random.nextInt(1000));
+        assertEquals(second, random.nextBoolean());
+    }
+}
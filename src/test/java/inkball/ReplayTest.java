@@ -0,0 +1,104 @@
+package inkball;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PConstants;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayTest {
+    private Config config;
+
+    @BeforeEach
+    void setUp() {
+        try {
+            config = Simulation.loadConfig("config.json");
+            config.seed = 3;
+        } catch (Exception e) {
+            fail("Failed to load configuration: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Play a short session on a live simulation while recording it, the way App does.
+     */
+    private byte[] recordSession(Simulation live, boolean finish) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(bytes, live.getSeed());
+
+        live.run(100);
+        recorder.mousePressed(live.getTick(), PConstants.LEFT, 100, 200);
+        live.mousePressed(PConstants.LEFT, 100, 200);
+        for (int x = 110; x <= 300; x += 10) {
+            live.run(1);
+            recorder.mouseDragged(live.getTick(), PConstants.LEFT, x, 200);
+            live.mouseDragged(PConstants.LEFT, x, 200);
+        }
+        recorder.mouseReleased(live.getTick(), PConstants.LEFT, 300, 200);
+        live.mouseReleased(PConstants.LEFT);
+        live.run(400);
+        recorder.keyPressed(live.getTick(), 'r');
+        live.restartLevel();
+        live.run(250);
+
+        if (finish) {
+            recorder.finish(live.getTick());
+        }
+        recorder.close();
+        return bytes.toByteArray();
+    }
+
+    private void assertSameState(Simulation expected, Simulation actual) {
+        assertEquals(expected.getTick(), actual.getTick());
+        assertEquals(expected.getLevelIndex(), actual.getLevelIndex());
+        assertArrayEquals(expected.getLevelScores(), actual.getLevelScores());
+        assertEquals(expected.playerLines.size(), actual.playerLines.size());
+        assertEquals(expected.getLevel().balls.size(), actual.getLevel().balls.size());
+        for (int i = 0; i < expected.getLevel().balls.size(); i++) {
+            assertEquals(expected.getLevel().balls.get(i).getPosition(), actual.getLevel().balls.get(i).getPosition());
+            assertEquals(expected.getLevel().balls.get(i).getVelocity(), actual.getLevel().balls.get(i).getVelocity());
+        }
+    }
+
+    @Test
+    void testReplayReproducesSession() throws IOException {
+        Simulation live = new Simulation(config);
+        byte[] log = recordSession(live, true);
+
+        Replay replay = new Replay(Simulation.loadConfig("config.json"), new ByteArrayInputStream(log));
+        int events = replay.run();
+
+        assertEquals(3, replay.getSeed());
+        assertEquals(23, events);
+        assertSameState(live, replay.getSimulation());
+    }
+
+    @Test
+    void testUnfinishedLogStopsAtLastEvent() throws IOException {
+        Simulation live = new Simulation(config);
+        byte[] log = recordSession(live, false);
+
+        Replay replay = new Replay(Simulation.loadConfig("config.json"), new ByteArrayInputStream(log));
+        replay.run();
+
+        assertEquals(live.getTick() - 250, replay.getSimulation().getTick());
+    }
+
+    @Test
+    void testLogIsCompact() throws IOException {
+        byte[] log = recordSession(new Simulation(config), true);
+        // 13-byte header, 22 mouse records of 7 bytes, one key record of 4 and the end record
+        assertTrue(log.length < 200, "Log was " + log.length + " bytes");
+    }
+
+    @Test
+    void testRejectsOtherFiles() {
+        byte[] notALog = Arrays.copyOf("{\"levels\": []}".getBytes(), 16);
+        assertThrows(IOException.class, () -> new Replay(config, new ByteArrayInputStream(notALog)));
+    }
+}
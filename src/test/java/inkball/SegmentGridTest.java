@@ -0,0 +1,172 @@
+package inkball;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PVector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentGridTest {
+    private SegmentGrid grid;
+
+    @BeforeEach
+    void setUp() {
+        grid = new SegmentGrid(App.WIDTH, App.HEIGHT);
+    }
+
+    private PlayerLine randomLine(Random random, int points) {
+        PlayerLine line = new PlayerLine();
+        float x = random.nextInt(App.WIDTH);
+        float y = App.TOPBAR + random.nextInt(App.HEIGHT - App.TOPBAR);
+        for (int i = 0; i < points; i++) {
+            line.addPoint(x, y);
+            x += random.nextInt(41) - 20;
+            y += random.nextInt(41) - 20;
+        }
+        return line;
+    }
+
+    private Line bruteForce(List<PlayerLine> lines, PVector position, PVector velocity) {
+        for (PlayerLine line : lines) {
+            Line segment = Hitbox.findCollidingSegment(position, velocity, line.getSegments());
+            if (segment != null) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    void testMatchesFullScan() {
+        Random random = new Random(1);
+        List<PlayerLine> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add(randomLine(random, 30));
+        }
+        grid.sync(lines);
+
+        int hits = 0;
+        for (int i = 0; i < 5000; i++) {
+            PVector position = new PVector(random.nextFloat() * App.WIDTH, App.TOPBAR + random.nextFloat() * (App.HEIGHT - App.TOPBAR));
+            PVector velocity = new PVector(random.nextFloat() * 4 - 2, random.nextFloat() * 4 - 2);
+            Line expected = bruteForce(lines, position, velocity);
+            Line actual = grid.findCollidingSegment(position.x, position.y, velocity.x, velocity.y);
+            assertSame(expected, actual);
+            if (expected != null) {
+                hits++;
+            }
+        }
+        assertTrue(hits > 0, "The sample should include some collisions");
+    }
+
+    @Test
+    void testPointsAddedAfterAttachAreIndexed() {
+        PlayerLine line = new PlayerLine();
+        line.addPoint(100, 200);
+        line.attach(grid);
+        line.addPoint(200, 200);
+
+        assertNotNull(grid.findCollidingSegment(150, 199, 0, 1));
+        assertNull(grid.findCollidingSegment(150, 400, 0, 1));
+    }
+
+    @Test
+    void testDetachRemovesSegments() {
+        PlayerLine line = new PlayerLine();
+        line.addPoint(100, 200);
+        line.addPoint(200, 200);
+        line.attach(grid);
+        assertEquals(1, grid.getLineCount());
+
+        line.detach();
+        assertEquals(0, grid.getLineCount());
+        assertNull(line.getGrid());
+        assertNull(grid.findCollidingSegment(150, 199, 0, 1));
+    }
+
+    @Test
+    void testSyncDropsLinesRemovedFromList() {
+        PlayerLine first = new PlayerLine();
+        first.addPoint(100, 200);
+        first.addPoint(200, 200);
+        PlayerLine second = new PlayerLine();
+        second.addPoint(100, 400);
+        second.addPoint(200, 400);
+
+        List<PlayerLine> lines = new ArrayList<>();
+        lines.add(first);
+        lines.add(second);
+        grid.sync(lines);
+        assertEquals(2, grid.getLineCount());
+
+        lines.remove(first);
+        grid.sync(lines);
+        assertEquals(1, grid.getLineCount());
+        assertNull(first.getGrid());
+        assertNull(grid.findCollidingSegment(150, 199, 0, 1));
+        assertNotNull(grid.findCollidingSegment(150, 399, 0, 1));
+    }
+
+    @Test
+    void testLargeBoardOnlyAllocatesChunksWithLines() {
+        SegmentGrid large = new SegmentGrid(200_000, 200_000);
+        assertEquals(0, large.getPopulatedChunks());
+
+        // Crosses from one chunk into the next at x = 64 cells
+        PlayerLine line = new PlayerLine(200_000, 200_000);
+        line.addPoint(2000, 150_040);
+        line.addPoint(2100, 150_040);
+        line.attach(large);
+
+        assertEquals(2, large.getPopulatedChunks());
+        assertNotNull(large.findCollidingSegment(2030, 150_039, 0, 1));
+        assertNotNull(large.findCollidingSegment(2070, 150_039, 0, 1));
+        assertNull(large.findCollidingSegment(2070, 150_300, 0, 1));
+
+        line.detach();
+        assertNull(large.findCollidingSegment(2070, 150_039, 0, 1));
+    }
+
+    @Test
+    void testEarlierLineWinsOverlap() {
+        PlayerLine first = new PlayerLine();
+        first.addPoint(100, 200);
+        first.addPoint(200, 200);
+        PlayerLine second = new PlayerLine();
+        second.addPoint(100, 201);
+        second.addPoint(200, 201);
+
+        List<PlayerLine> lines = new ArrayList<>();
+        lines.add(first);
+        lines.add(second);
+        grid.sync(lines);
+
+        Line segment = grid.findCollidingSegment(150, 199, 0, 1);
+        assertSame(first.getSegments().get(1), segment);
+    }
+
+    @Test
+    void testQueryOutsideBoardIsClamped() {
+        assertNotNull(grid.query(-100, -100));
+        assertNotNull(grid.query(App.WIDTH * 10, App.HEIGHT * 10));
+    }
+
+    @Test
+    void testFastBallGrazesDotInNextCell() {
+        // A single click is a dot bucketed only in column 6, the ball's centre passes 15px away in column 7
+        PlayerLine dot = new PlayerLine();
+        dot.addPoint(210, 200);
+        List<PlayerLine> lines = new ArrayList<>();
+        lines.add(dot);
+        grid.sync(lines);
+
+        float[] contact = new float[3];
+        Line hit = grid.findSweptSegment(225, 100, 0, 200, App.CELLSIZE / 2.0f, contact, new float[2]);
+        assertSame(dot.getSegments().get(0), hit);
+        assertTrue(contact[0] > 0 && contact[0] < 0.5f);
+    }
+}
@@ -0,0 +1,143 @@
+package inkball;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionServerTest {
+    private Config config;
+    private SessionServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        config = Simulation.loadConfig("config.json");
+        server = new SessionServer(config, 0, 2);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the server");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testStatesMatchLocalSimulation() throws Exception {
+        Simulation local = new Simulation(config,
+                new GameContext(App.WIDTH, App.HEIGHT, new RandomSource(99), new int[config.levelConfigs.size()]),
+                Runnable::run);
+        try (SessionClient client = new SessionClient(server.getPort())) {
+            client.hello(99, 1000);
+            SessionClient.State state = null;
+            for (int i = 0; i < 300; i++) {
+                state = client.readState();
+                while (local.getTick() < state.tick) {
+                    local.tick();
+                }
+                assertEquals(local.getLevel().balls.size(), state.balls);
+                for (int b = 0; b < state.balls; b++) {
+                    Ball ball = local.getLevel().balls.get(b);
+                    assertEquals(Math.round(ball.getPosition().x), state.x[b]);
+                    assertEquals(Math.round(ball.getPosition().y), state.y[b]);
+                    assertEquals(ball.getColorCode(), state.colors[b]);
+                }
+                assertEquals(local.getLevel().timer, state.timer);
+            }
+            assertTrue(state.balls > 0, "Balls should have spawned");
+        }
+    }
+
+    @Test
+    void testStrokesReachTheGame() throws Exception {
+        try (SessionClient client = new SessionClient(server.getPort())) {
+            client.hello(1, 1000);
+            client.readState();
+            waitFor(() -> server.getActiveSessionCount() == 1);
+            client.stroke(100, 200, 150, 200, 200, 210);
+            client.readState();
+            client.readState();
+            client.erase(150, 200);
+            client.restart();
+            for (int i = 0; i < 5; i++) {
+                client.readState();
+            }
+        }
+        waitFor(() -> server.getSessionCount() == 0);
+        assertEquals(0, server.getActiveSessionCount());
+        waitFor(() -> server.getMetrics().getBallsActive() == 0);
+    }
+
+    @Test
+    void testIdleSessionsAreNotStepped() throws Exception {
+        List<SessionClient> idle = new ArrayList<>();
+        try {
+            for (int i = 0; i < 50; i++) {
+                idle.add(new SessionClient(server.getPort()));
+            }
+            waitFor(() -> server.getSessionCount() == 50);
+            Thread.sleep(50);
+            assertEquals(0, server.getActiveSessionCount());
+            assertEquals(0, server.getMetrics().ticks.sum());
+        } finally {
+            for (SessionClient client : idle) {
+                client.close();
+            }
+        }
+        waitFor(() -> server.getSessionCount() == 0);
+    }
+
+    @Test
+    void testMalformedInputClosesOnlyThatSession() throws Exception {
+        try (SessionClient good = new SessionClient(server.getPort());
+             java.nio.channels.SocketChannel bad = java.nio.channels.SocketChannel.open(
+                     new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), server.getPort()))) {
+            good.hello(5, 1000);
+            waitFor(() -> server.getSessionCount() == 2);
+            bad.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 1, 42}));
+            waitFor(() -> server.getSessionCount() == 1);
+            long tick = good.readState().tick;
+            assertTrue(good.readState().tick > tick);
+        }
+    }
+
+    @Test
+    void testDeltaStatesDecode() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        SessionProtocol.putVarLong(buffer, 7);
+        SessionProtocol.putVarLong(buffer, 0);
+        SessionProtocol.putZigZag(buffer, -3);
+        SessionProtocol.putVarLong(buffer, 600);
+        buffer.put((byte) SessionProtocol.FLAG_DELTA);
+        SessionProtocol.putVarLong(buffer, 1);
+        buffer.put((byte) '2');
+        SessionProtocol.putZigZag(buffer, -2);
+        SessionProtocol.putZigZag(buffer, 5);
+        buffer.flip();
+
+        SessionClient.State state = new SessionClient.State();
+        state.balls = 1;
+        state.colors = new char[]{'2'};
+        state.x = new int[]{100};
+        state.y = new int[]{200};
+        SessionClient.decodeState(buffer, state);
+
+        assertEquals(7, state.tick);
+        assertEquals(-3, state.score);
+        assertEquals(600, state.timer);
+        assertEquals(98, state.x[0]);
+        assertEquals(205, state.y[0]);
+    }
+}
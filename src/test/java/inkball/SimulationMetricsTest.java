@@ -0,0 +1,84 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulationMetricsTest {
+
+    private static Simulation runWithMetrics(SimulationMetrics metrics, long ticks) throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        config.seed = 3;
+        Simulation simulation = new Simulation(config);
+        simulation.setMetrics(metrics);
+        for (long tick = 0; tick < ticks; tick++) {
+            if (simulation.playerLines.isEmpty()) {
+                // Keep a line across the middle of the board for balls to bounce off
+                simulation.beginLine(40, 330);
+                simulation.extendLine(536, 330);
+                simulation.endLine();
+            }
+            simulation.tick();
+        }
+        return simulation;
+    }
+
+    @Test
+    void testCountersFollowTheGame() throws Exception {
+        SimulationMetrics metrics = new SimulationMetrics();
+        Simulation simulation = runWithMetrics(metrics, 3000);
+
+        assertEquals(3000, metrics.ticks.sum());
+        assertEquals(simulation.getLevel().balls.size(), metrics.getBallsActive());
+        assertTrue(metrics.collisionTests.sum() > 0, "Balls near the line should have been tested against it");
+        assertTrue(metrics.linesConsumed.sum() > 0, "A ball should have bounced off the line");
+        assertTrue(metrics.captures.sum() >= metrics.wrongHoleRespawns.sum());
+    }
+
+    @Test
+    void testBallGaugeSumsSharedGames() throws Exception {
+        SimulationMetrics metrics = new SimulationMetrics();
+        Simulation first = runWithMetrics(metrics, 1500);
+        Simulation second = runWithMetrics(metrics, 900);
+        int firstBalls = first.getLevel().balls.size();
+        int secondBalls = second.getLevel().balls.size();
+        assertTrue(firstBalls > 0 && secondBalls > 0, "Both games should have balls out");
+
+        assertEquals(firstBalls + secondBalls, metrics.getBallsActive());
+        first.setMetrics(null);
+        assertEquals(secondBalls, metrics.getBallsActive());
+        second.setMetrics(null);
+        assertEquals(0, metrics.getBallsActive());
+    }
+
+    @Test
+    void testMetricsDoNotChangeTheGame() throws Exception {
+        Simulation counted = runWithMetrics(new SimulationMetrics(), 2000);
+        Simulation plain = runWithMetrics(null, 2000);
+        assertEquals(plain.getLevel().score, counted.getLevel().score);
+        assertEquals(plain.getLevel().balls.size(), counted.getLevel().balls.size());
+        for (int i = 0; i < plain.getLevel().balls.size(); i++) {
+            assertEquals(plain.getLevel().balls.get(i).getPosition(), counted.getLevel().balls.get(i).getPosition());
+        }
+    }
+
+    @Test
+    void testPrometheusFormat() throws Exception {
+        SimulationMetrics metrics = new SimulationMetrics();
+        metrics.ticks.add(120);
+        metrics.captures.increment();
+        metrics.setBallsActive(4);
+        StringBuilder text = new StringBuilder();
+        metrics.writePrometheus(text);
+
+        String out = text.toString();
+        assertTrue(out.contains("# TYPE inkball_ticks_total counter\ninkball_ticks_total 120\n"));
+        assertTrue(out.contains("inkball_captures_total 1\n"));
+        assertTrue(out.contains("# TYPE inkball_balls_active gauge\ninkball_balls_active 4.000\n"));
+        assertTrue(out.contains("inkball_ticks_per_second "));
+        assertTrue(out.contains("inkball_gc_pause_seconds_total{gc=\""));
+        for (String line : out.split("\n")) {
+            assertTrue(line.startsWith("#") || line.matches("inkball_[a-z_]+(\\{gc=\"[^\"]*\"})? [0-9.]+"), line);
+        }
+    }
+}
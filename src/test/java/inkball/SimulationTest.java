@@ -0,0 +1,299 @@
+package inkball;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulationTest {
+    private Simulation simulation;
+
+    @BeforeEach
+    void setUp() {
+        try {
+            simulation = new Simulation(Simulation.loadConfig("config.json"));
+        } catch (Exception e) {
+            fail("Failed to load configuration: " + e.getMessage());
+        }
+    }
+
+    @Test
+    void testInitialState() {
+        assertNotNull(simulation.getLevel());
+        assertEquals(0, simulation.getLevelIndex());
+        assertEquals(0, simulation.getTick());
+        assertFalse(simulation.isGameOver());
+        assertTrue(simulation.playerLines.isEmpty());
+    }
+
+    @Test
+    void testTickAdvancesLevelTimer() {
+        int timer = simulation.getLevel().timer;
+        assertTrue(simulation.tick());
+        assertEquals(1, simulation.getTick());
+        assertEquals(timer - 1, simulation.getLevel().timer);
+    }
+
+    @Test
+    void testRunStopsWhenGameIsOver() {
+        long ticks = simulation.run(Long.MAX_VALUE);
+        assertTrue(simulation.isGameOver());
+        assertEquals(ticks, simulation.getTick());
+        assertFalse(simulation.tick(), "No ticks should run after the game is over");
+        assertEquals(0, simulation.run(10));
+    }
+
+    @Test
+    void testAdvanceRunsWholeTicksOnly() {
+        assertEquals(0, simulation.advance(Simulation.TICK_NANOS / 2));
+        assertEquals(1, simulation.advance(Simulation.TICK_NANOS / 2));
+        assertEquals(2, simulation.advance(Simulation.TICK_NANOS * 2));
+        assertEquals(3, simulation.getTick());
+    }
+
+    @Test
+    void testAdvanceCapsCatchUp() {
+        int executed = simulation.advance(Simulation.TICK_NANOS * 1000);
+        assertTrue(executed < 1000);
+        assertEquals(executed, simulation.getTick());
+    }
+
+    @Test
+    void testDrawingLines() {
+        simulation.beginLine(100, 200);
+        simulation.extendLine(150, 200);
+        assertNotNull(simulation.currentLine);
+        assertTrue(simulation.playerLines.isEmpty());
+
+        simulation.endLine();
+        assertNull(simulation.currentLine);
+        assertEquals(1, simulation.playerLines.size());
+
+        simulation.removeLine(125, 200);
+        assertTrue(simulation.playerLines.isEmpty());
+    }
+
+    @Test
+    void testRestartLevel() {
+        simulation.beginLine(100, 200);
+        simulation.extendLine(150, 200);
+        simulation.endLine();
+        simulation.run(100);
+
+        simulation.restartLevel();
+        assertEquals(0, simulation.getLevelIndex());
+        assertTrue(simulation.playerLines.isEmpty());
+        assertEquals(simulation.getLevel().timer, 120 * Simulation.TICKS_PER_SECOND);
+    }
+
+    @Test
+    void testRestartPutsBackTheLoadedLevel() {
+        Level level = simulation.getLevel();
+        List<String> queue = new ArrayList<>(level.ballQueue);
+        int balls = level.balls.size();
+        simulation.run(30 * Simulation.TICKS_PER_SECOND);
+
+        simulation.restartLevel();
+        assertSame(level, simulation.getLevel(), "A restart should not read the level again");
+        assertEquals(queue, level.ballQueue);
+        assertEquals(balls, level.balls.size());
+        assertEquals(0, level.score);
+        assertFalse(level.isEndingLevel);
+    }
+
+    @Test
+    void testRestartAfterGameOverResetsScores() {
+        simulation.run(Long.MAX_VALUE);
+        simulation.restartLevel();
+        assertFalse(simulation.isGameOver());
+        assertEquals(0, simulation.getLevelIndex());
+        assertEquals(0, simulation.getTotalScore());
+    }
+
+    @Test
+    void testSameSeedRepeatsRun() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        config.seed = 7;
+        Simulation first = new Simulation(config);
+        Simulation second = new Simulation(config);
+        first.run(1000);
+        second.run(1000);
+
+        assertEquals(7, first.getSeed());
+        assertEquals(first.getLevel().balls.size(), second.getLevel().balls.size());
+        assertTrue(first.getLevel().balls.size() > 1, "Balls should have spawned");
+        for (int i = 0; i < first.getLevel().balls.size(); i++) {
+            Ball expected = first.getLevel().balls.get(i);
+            Ball actual = second.getLevel().balls.get(i);
+            assertEquals(expected.getPosition(), actual.getPosition());
+            assertEquals(expected.getVelocity(), actual.getVelocity());
+        }
+    }
+
+    @Test
+    void testConcurrentGamesDoNotShareState() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        long[] seeds = {3, 5, 8, 13};
+        Simulation[] alone = new Simulation[seeds.length];
+        for (int i = 0; i < seeds.length; i++) {
+            alone[i] = new Simulation(config, new GameContext(App.WIDTH, App.HEIGHT, new RandomSource(seeds[i]), new int[3]), Runnable::run);
+            alone[i].run(3000);
+        }
+
+        Simulation[] together = new Simulation[seeds.length];
+        Thread[] threads = new Thread[seeds.length];
+        for (int i = 0; i < seeds.length; i++) {
+            together[i] = new Simulation(config, new GameContext(App.WIDTH, App.HEIGHT, new RandomSource(seeds[i]), new int[3]));
+            Simulation game = together[i];
+            threads[i] = new Thread(() -> game.run(3000));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < seeds.length; i++) {
+            assertArrayEquals(alone[i].getLevelScores(), together[i].getLevelScores());
+            assertEquals(alone[i].getTick(), together[i].getTick());
+            assertEquals(alone[i].getLevel().balls.size(), together[i].getLevel().balls.size());
+            for (int j = 0; j < alone[i].getLevel().balls.size(); j++) {
+                assertEquals(alone[i].getLevel().balls.get(j).getPosition(), together[i].getLevel().balls.get(j).getPosition());
+            }
+        }
+    }
+
+    @Test
+    void testScoreTableMustCoverEveryLevel() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        GameContext context = new GameContext(App.WIDTH, App.HEIGHT, new RandomSource(1), new int[1]);
+        assertThrows(IllegalArgumentException.class, () -> new Simulation(config, context));
+    }
+
+    @Test
+    void testNextLevelIsPreloadedDuringEndAnimation() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        Config config = Simulation.loadConfig("config.json");
+        Simulation preloading = new Simulation(config, new GameContext(config), queued::add);
+        assertEquals(0, queued.size(), "Restarts come from a snapshot, so nothing should load for them");
+
+        preloading.tick();
+        assertEquals(0, queued.size());
+        preloading.getLevel().startLevelEndAnimation();
+        preloading.tick();
+        preloading.tick();
+        assertEquals(1, queued.size(), "The next level should start loading once, when the level starts ending");
+
+        queued.forEach(Runnable::run);
+        preloading.completeLevel();
+        assertEquals(1, preloading.getLevelIndex());
+        assertEquals(1, preloading.getLevel().getLevelIndex());
+        assertFalse(preloading.getLevel().isEndingLevel);
+    }
+
+    @Test
+    void testPreloadingDoesNotChangeTheGame() throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        config.seed = 11;
+        Simulation inline = new Simulation(config, new GameContext(config), Runnable::run);
+        Simulation background = new Simulation(config, new GameContext(config));
+        for (Simulation run : new Simulation[]{inline, background}) {
+            run.run(200);
+            run.getLevel().startLevelEndAnimation();
+            while (run.getLevelIndex() == 0) {
+                assertTrue(run.tick());
+            }
+            run.run(300);
+            run.restartLevel();
+            run.run(300);
+        }
+
+        assertEquals(1, background.getLevelIndex());
+        assertEquals(inline.getTick(), background.getTick());
+        assertEquals(inline.getLevel().timer, background.getLevel().timer);
+        assertEquals(inline.getLevel().balls.size(), background.getLevel().balls.size());
+        assertTrue(inline.getLevel().balls.size() > 1, "Balls should have spawned");
+        for (int i = 0; i < inline.getLevel().balls.size(); i++) {
+            Ball expected = inline.getLevel().balls.get(i);
+            Ball actual = background.getLevel().balls.get(i);
+            assertEquals(expected.getPosition(), actual.getPosition());
+            assertEquals(expected.getVelocity(), actual.getVelocity());
+            assertEquals(expected.getColorCode(), actual.getColorCode());
+        }
+    }
+
+    /**
+     * Packs blank sprites, and counts the board layers it creates and the tiles drawn into them.
+     */
+    private static class BakingApp extends App {
+        final SpriteAtlas atlas = SpriteAtlas.pack(this);
+        int layersCreated;
+        int tilesBaked;
+
+        @Override
+        public PImage getSprite(String s) {
+            return new PImage(32, 32, PApplet.ARGB);
+        }
+
+        @Override
+        public SpriteAtlas getAtlas() {
+            return atlas;
+        }
+
+        @Override
+        public PGraphics createGraphics(int width, int height) {
+            layersCreated++;
+            return new PGraphics() {
+                @Override
+                public void image(PImage img, float x, float y, float w, float h, int u1, int v1, int u2, int v2) {
+                    tilesBaked++;
+                }
+            };
+        }
+    }
+
+    @Test
+    void testLevelTransitionFramesStayUnderBudget() throws Exception {
+        BakingApp app = new BakingApp();
+        simulation.getLevel().bakeBoard(app);
+        simulation.getLevel().startLevelEndAnimation();
+        simulation.tick();
+        for (int wait = 0; simulation.getPreloadedLevel() == null; wait++) {
+            assertTrue(wait < 500, "The next level should have loaded");
+            Thread.sleep(10);
+        }
+
+        // Each frame does what App.draw does with the boards, then ticks
+        FrameProfiler frames = new FrameProfiler(Simulation.TICK_NANOS);
+        int levelIndex = simulation.getLevelIndex();
+        while (simulation.getLevelIndex() == levelIndex) {
+            int tilesBefore = app.tilesBaked;
+            long start = System.nanoTime();
+            simulation.getLevel().bakeBoardStep(app, Level.BAKE_TILES_PER_FRAME);
+            Level next = simulation.getPreloadedLevel();
+            if (next != null) {
+                next.bakeBoardStep(app, Level.BAKE_TILES_PER_FRAME);
+            }
+            assertTrue(simulation.tick());
+            frames.recordFrame(System.nanoTime() - start);
+            assertTrue(app.tilesBaked - tilesBefore <= Level.BAKE_TILES_PER_FRAME);
+        }
+
+        int layers = app.layersCreated;
+        int tiles = app.tilesBaked;
+        long start = System.nanoTime();
+        assertTrue(simulation.getLevel().bakeBoardStep(app, Level.BAKE_TILES_PER_FRAME),
+                "The new level's board should be baked before it is swapped in");
+        simulation.tick();
+        frames.recordFrame(System.nanoTime() - start);
+        assertEquals(layers, app.layersCreated);
+        assertEquals(tiles, app.tilesBaked);
+        assertEquals(2, app.layersCreated);
+        assertEquals(0, frames.getDroppedFrames(), frames.frameSummary());
+    }
+}
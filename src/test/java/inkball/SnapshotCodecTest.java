@@ -0,0 +1,144 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+import processing.core.PVector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotCodecTest {
+    private static final float TOLERANCE = SnapshotEncoder.DEFAULT_TOLERANCE + 0.01f;
+
+    private static class Expected {
+        int balls;
+        char[] colors;
+        float[] x;
+        float[] y;
+        int lines;
+        int score;
+        int timer;
+        int levelIndex;
+        List<String> queue;
+    }
+
+    private static Expected capture(Simulation simulation) {
+        Expected expected = new Expected();
+        List<Ball> balls = simulation.getLevel().balls;
+        expected.balls = balls.size();
+        expected.colors = new char[balls.size()];
+        expected.x = new float[balls.size()];
+        expected.y = new float[balls.size()];
+        for (int i = 0; i < balls.size(); i++) {
+            PVector position = balls.get(i).getPosition();
+            expected.colors[i] = balls.get(i).getColorCode();
+            expected.x[i] = position.x;
+            expected.y[i] = position.y;
+        }
+        expected.lines = simulation.playerLines.size();
+        expected.score = simulation.getTotalScore();
+        expected.timer = simulation.getLevel().timer;
+        expected.levelIndex = simulation.getLevelIndex();
+        expected.queue = new ArrayList<>(simulation.getLevel().ballQueue);
+        return expected;
+    }
+
+    private static void assertMatches(Expected expected, Snapshot snapshot) {
+        assertEquals(expected.balls, snapshot.balls);
+        assertEquals(expected.lines, snapshot.lines.size());
+        assertEquals(expected.score, snapshot.score);
+        assertEquals(expected.timer, snapshot.timer);
+        assertEquals(expected.levelIndex, snapshot.levelIndex);
+        assertEquals(expected.queue, snapshot.queue);
+        boolean[] used = new boolean[snapshot.balls];
+        for (int i = 0; i < expected.balls; i++) {
+            boolean found = false;
+            for (int j = 0; j < snapshot.balls && !found; j++) {
+                if (!used[j] && snapshot.colors[j] == expected.colors[i]
+                        && Math.abs(snapshot.x[j] - expected.x[i]) <= TOLERANCE
+                        && Math.abs(snapshot.y[j] - expected.y[i]) <= TOLERANCE) {
+                    used[j] = true;
+                    found = true;
+                }
+            }
+            assertTrue(found, "Ball " + i + " at " + expected.x[i] + ", " + expected.y[i] + " was not decoded at tick " + snapshot.tick);
+        }
+    }
+
+    /**
+     * Play a game with random strokes, recording every tick and keeping the true state of every tick.
+     */
+    private static Map<Long, Expected> play(SnapshotEncoder encoder, long ticks, long[] ballTicks) throws Exception {
+        Config config = Simulation.loadConfig("config.json");
+        config.seed = 21;
+        Simulation simulation = new Simulation(config, new GameContext(config), Runnable::run);
+        LevelEvaluator.Policy policy = LevelEvaluator.randomStrokes(Simulation.TICKS_PER_SECOND, 4, config.lineTolerance);
+        RandomSource playerRandom = new RandomSource(5);
+        Map<Long, Expected> states = new HashMap<>();
+        for (long i = 0; i < ticks && !simulation.isGameOver(); i++) {
+            policy.act(simulation.getLevel(), simulation.playerLines, playerRandom, i);
+            simulation.tick();
+            encoder.record(simulation);
+            states.put(simulation.getTick(), capture(simulation));
+            ballTicks[0] += simulation.getLevel().balls.size();
+        }
+        return states;
+    }
+
+    @Test
+    void testEveryTickDecodes() throws Exception {
+        SnapshotEncoder encoder = new SnapshotEncoder(120, SnapshotEncoder.DEFAULT_TOLERANCE);
+        Map<Long, Expected> states = play(encoder, 1500, new long[1]);
+        SnapshotDecoder decoder = new SnapshotDecoder(encoder.toByteArray());
+
+        assertEquals(1, decoder.getFirstTick());
+        for (long tick = decoder.getFirstTick(); tick <= states.size(); tick++) {
+            assertMatches(states.get(tick), decoder.seek(tick));
+        }
+    }
+
+    @Test
+    void testSeekJumpsBackAndForth() throws Exception {
+        SnapshotEncoder encoder = new SnapshotEncoder();
+        Map<Long, Expected> states = play(encoder, 3000, new long[1]);
+        SnapshotDecoder decoder = new SnapshotDecoder(encoder.toByteArray());
+
+        for (long tick : new long[]{2500, 10, 1234, 1233, 2999, 600, 601, 1}) {
+            Snapshot snapshot = decoder.seek(tick);
+            assertEquals(tick, snapshot.tick);
+            assertMatches(states.get(tick), snapshot);
+        }
+        assertThrows(IllegalArgumentException.class, () -> decoder.seek(0));
+    }
+
+    @Test
+    void testBytesPerBallSecondStayLow() throws Exception {
+        SnapshotEncoder encoder = new SnapshotEncoder();
+        long[] ballTicks = new long[1];
+        play(encoder, 60 * Simulation.TICKS_PER_SECOND, ballTicks);
+        double ballSeconds = ballTicks[0] / (double) Simulation.TICKS_PER_SECOND;
+
+        assertTrue(ballSeconds > 100, "Balls should have been in play");
+        double bytesPerBallSecond = encoder.size() / ballSeconds;
+        assertTrue(bytesPerBallSecond < 20, "Snapshots took " + bytesPerBallSecond + " bytes per ball per second");
+    }
+
+    @Test
+    void testTimerPrediction() {
+        assertEquals(90, SnapshotEncoder.predictTimer(100, 10));
+        assertEquals(0, SnapshotEncoder.predictTimer(5, 10));
+        assertEquals(0, SnapshotEncoder.predictTimer(0, 10));
+        assertEquals(-11, SnapshotEncoder.predictTimer(-1, 10));
+    }
+
+    @Test
+    void testRejectsOtherData() {
+        assertThrows(IllegalArgumentException.class, () -> new SnapshotDecoder(new byte[]{1, 2, 3, 4, 5}));
+        SnapshotEncoder empty = new SnapshotEncoder();
+        assertThrows(IllegalArgumentException.class, () -> new SnapshotDecoder(empty.toByteArray()));
+        assertThrows(IllegalArgumentException.class, () -> new SnapshotEncoder(0, 0.25f));
+    }
+}
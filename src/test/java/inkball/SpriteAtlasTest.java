@@ -0,0 +1,91 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+import processing.core.PImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpriteAtlasTest {
+    class TestApp extends App {
+        boolean missingHole = false;
+
+        @Override
+        public PImage getSprite(String s) {
+            if (s.startsWith("hole")) {
+                return missingHole ? null : new PImage(64, 64, PApplet.ARGB);
+            }
+            return new PImage(32, 32, PApplet.ARGB);
+        }
+    }
+
+    @Test
+    void testRegionsDoNotOverlap() {
+        SpriteAtlas atlas = SpriteAtlas.pack(new TestApp());
+        assertNotNull(atlas);
+
+        int count = SpriteAtlas.SPRITE_NAMES.length;
+        for (int a = 0; a < count; a++) {
+            for (int b = a + 1; b < count; b++) {
+                int[] first = bounds(atlas, a);
+                int[] second = bounds(atlas, b);
+                boolean apart = first[2] <= second[0] || second[2] <= first[0]
+                        || first[3] <= second[1] || second[3] <= first[1];
+                assertTrue(apart, SpriteAtlas.SPRITE_NAMES[a] + " overlaps " + SpriteAtlas.SPRITE_NAMES[b]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(bounds(atlas, i)[2] <= atlas.getImage().width);
+            assertTrue(bounds(atlas, i)[3] <= atlas.getImage().height);
+        }
+    }
+
+    private int[] bounds(SpriteAtlas atlas, int region) {
+        // Recover each region's rectangle by drawing it into a recording target
+        int[] rect = new int[4];
+        App recorder = new App() {
+            @Override
+            public void image(PImage img, float x, float y, float w, float h, int u1, int v1, int u2, int v2) {
+                rect[0] = u1;
+                rect[1] = v1;
+                rect[2] = u2;
+                rect[3] = v2;
+            }
+        };
+        atlas.draw(recorder, region, 0, 0, 1, 1);
+        return rect;
+    }
+
+    @Test
+    void testRegionSizesMatchSprites() {
+        SpriteAtlas atlas = SpriteAtlas.pack(new TestApp());
+        assertEquals(64, atlas.getWidth(SpriteAtlas.HOLE + 3));
+        assertEquals(32, atlas.getHeight(SpriteAtlas.ball('4')));
+    }
+
+    @Test
+    void testIndicesMatchNames() {
+        assertEquals(SpriteAtlas.ball('2'), SpriteAtlas.indexOf("ball2"));
+        assertEquals(SpriteAtlas.WALL + 3, SpriteAtlas.indexOf("wall3"));
+        assertEquals(SpriteAtlas.TILE, SpriteAtlas.indexOf("tile"));
+        assertEquals(SpriteAtlas.ENTRYPOINT, SpriteAtlas.indexOf("entrypoint"));
+        assertEquals(-1, SpriteAtlas.indexOf("missing"));
+    }
+
+    @Test
+    void testMissingSpriteGivesNoAtlas() {
+        TestApp app = new TestApp();
+        app.missingHole = true;
+        assertNull(SpriteAtlas.pack(app));
+    }
+
+    @Test
+    void testTileSpriteNames() {
+        Level level = null;
+        assertEquals("tile", new Tile(0, 0, level).getSpriteName());
+        assertEquals("wall2", new Wall(0, 0, '2', level).getSpriteName());
+        assertEquals("hole1", new Hole(0, 0, '1', level).getSpriteName());
+        assertEquals("entrypoint", new Spawner(0, 0, level).getSpriteName());
+        assertEquals("left", new AccelerationTiles(0, 0, 'L', level).getSpriteName());
+    }
+}
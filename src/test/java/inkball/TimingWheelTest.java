@@ -0,0 +1,82 @@
+package inkball;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    @Test
+    void testItemsComeDueAtTheirDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 10, 0);
+        wheel.schedule("early", 15);
+        wheel.schedule("late", 45);
+        List<String> due = new ArrayList<>();
+
+        assertEquals(0, wheel.advance(10, due));
+        assertEquals(1, wheel.advance(20, due));
+        assertEquals(List.of("early"), due);
+        assertEquals(1, wheel.size());
+
+        due.clear();
+        wheel.advance(50, due);
+        assertEquals(List.of("late"), due);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testItemsMoreThanOneTurnAheadWaitForTheirTurn() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(4, 10, 0);
+        wheel.schedule(1, 30);
+        wheel.schedule(2, 70);
+        List<Integer> due = new ArrayList<>();
+
+        wheel.advance(30, due);
+        assertEquals(List.of(1), due);
+        due.clear();
+        wheel.advance(60, due);
+        assertTrue(due.isEmpty(), "An item in the same slot one turn later should not come due yet");
+        wheel.advance(70, due);
+        assertEquals(List.of(2), due);
+    }
+
+    @Test
+    void testPastDeadlinesComeDueOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(16, 10, 0);
+        List<String> due = new ArrayList<>();
+        wheel.advance(100, due);
+        wheel.schedule("overdue", 5);
+
+        wheel.advance(100, due);
+        assertTrue(due.isEmpty());
+        wheel.advance(110, due);
+        assertEquals(List.of("overdue"), due);
+    }
+
+    @Test
+    void testWheelThatFellBehindHandsOutEverything() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(8, 10, 0);
+        for (int i = 0; i < 100; i++) {
+            wheel.schedule(i, i * 7L);
+        }
+        List<Integer> due = new ArrayList<>();
+        assertEquals(100, wheel.advance(10_000, due));
+        assertEquals(100, due.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testSlotCountIsRoundedToPowerOfTwo() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(5, 10, 0);
+        wheel.schedule(1, 80);
+        List<Integer> due = new ArrayList<>();
+        wheel.advance(50, due);
+        assertTrue(due.isEmpty(), "Tick 8 shares a slot with tick 0 on an 8-slot wheel, one turn later");
+        wheel.advance(80, due);
+        assertEquals(List.of(1), due);
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<Integer>(0, 10, 0));
+    }
+}
@@ -82,6 +82,22 @@ public class YellowTileTest {
         assertEquals(App.BOARD_HEIGHT - 3, yellowTile.getY(), "Expected y to remain App.BOARD_HEIGHT - 3");
     }
 
+    @Test
+    void testGoesRoundBoardOfGivenSize() {
+        yellowTile = new YellowTile(0, 0, 40, 25);
+        int steps = 2 * (40 - 1) + 2 * (25 - 1);
+        for (int i = 0; i < 40 - 1; i++) {
+            yellowTile.move();
+        }
+        assertEquals(39, yellowTile.getX());
+        assertEquals(0, yellowTile.getY());
+        for (int i = 40 - 1; i < steps; i++) {
+            yellowTile.move();
+        }
+        assertEquals(0, yellowTile.getX());
+        assertEquals(0, yellowTile.getY());
+    }
+
     @Test
     void testMoveUp() {
         // Move to (0, 1) to set up for moving up